@@ -0,0 +1,104 @@
+package benchmarks;
+
+import classes.DocumentManager;
+import classes.LatencyHistogram;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Load test for DocumentManager: client threads keep a bounded number of single-character
+ * inserts in flight against randomly chosen documents, and the run reports edits/second and
+ * latency percentiles (submit to completion) for each document count.
+ * <p>
+ * Usage: {@code java -cp benchmarks.jar benchmarks.DocumentServiceLoadTest
+ * [documentCounts=1,10,100,1000,10000] [seconds=5] [idleMillis=1000] [workerThreads=cores]}
+ */
+public class DocumentServiceLoadTest {
+    private static final int IN_FLIGHT_PER_CLIENT = 32;
+
+    public static void main(String[] args) throws Exception {
+        String[] counts = (args.length > 0 ? args[0] : "1,10,100,1000,10000").split(",");
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        long idleMillis = args.length > 2 ? Long.parseLong(args[2]) : 1000;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        int clients = Math.max(2, threads * 2);
+
+        System.out.printf("workers=%d clients=%d seconds=%d idleMillis=%d%n", threads, clients, seconds, idleMillis);
+        System.out.printf("%10s %14s %10s %10s %10s %10s %10s%n",
+                "documents", "edits/s", "p50 us", "p99 us", "p99.9 us", "max us", "resident");
+        for (String count : counts) {
+            run(Integer.parseInt(count.trim()), seconds, idleMillis, threads, clients);
+        }
+    }
+
+    private static void run(int documents, int seconds, long idleMillis, int threads, int clients)
+            throws IOException, InterruptedException {
+        Path storage = Files.createTempDirectory("documents");
+        LatencyHistogram latency = new LatencyHistogram();
+        try (DocumentManager manager = new DocumentManager(storage, idleMillis, threads)) {
+            List<CompletableFuture<Void>> opening = new ArrayList<>();
+            for (int i = 0; i < documents; i++) {
+                opening.add(manager.open("doc-" + i));
+            }
+            CompletableFuture.allOf(opening.toArray(new CompletableFuture<?>[0])).join();
+
+            // Warm up for a second, then measure
+            drive(manager, documents, clients, TimeUnit.SECONDS.toNanos(1), new LatencyHistogram());
+            long elapsed = drive(manager, documents, clients, TimeUnit.SECONDS.toNanos(seconds), latency);
+
+            System.out.printf("%10d %14.0f %10.1f %10.1f %10.1f %10.1f %10d%n", documents,
+                    latency.getCount() / (elapsed / 1e9),
+                    latency.getPercentile(50) / 1e3, latency.getPercentile(99) / 1e3,
+                    latency.getPercentile(99.9) / 1e3, latency.getMax() / 1e3,
+                    manager.getResidentCount());
+        } finally {
+            try (Stream<Path> files = Files.walk(storage)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    /**
+     * Run the clients for the given time; returns the nanoseconds actually spent.
+     */
+    private static long drive(DocumentManager manager, int documents, int clients, long nanos,
+                              LatencyHistogram latency) throws InterruptedException {
+        long start = System.nanoTime();
+        long deadline = start + nanos;
+        List<Thread> threads = new ArrayList<>();
+        for (int c = 0; c < clients; c++) {
+            long seed = c;
+            Thread client = new Thread(() -> {
+                SplittableRandom random = new SplittableRandom(seed);
+                Semaphore inFlight = new Semaphore(IN_FLIGHT_PER_CLIENT);
+                while (System.nanoTime() < deadline) {
+                    inFlight.acquireUninterruptibly();
+                    String id = "doc-" + random.nextInt(documents);
+                    long submitted = System.nanoTime();
+                    manager.execute(id, editor -> editor.insert("x", editor.getLength() / 2))
+                            .whenComplete((ignored, error) -> {
+                                latency.record(System.nanoTime() - submitted);
+                                inFlight.release();
+                            });
+                }
+                inFlight.acquireUninterruptibly(IN_FLIGHT_PER_CLIENT); // Wait for the stragglers
+            }, "load-client-" + c);
+            client.start();
+            threads.add(client);
+        }
+        for (Thread client : threads) {
+            client.join();
+        }
+        return System.nanoTime() - start;
+    }
+}
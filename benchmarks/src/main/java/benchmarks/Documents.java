@@ -0,0 +1,50 @@
+package benchmarks;
+
+import java.util.SplittableRandom;
+
+/**
+ * Generates deterministic word-like documents for the benchmarks.
+ */
+final class Documents {
+    private static final String[] WORDS = {
+            "the", "editor", "keeps", "a", "piece", "table", "of", "text", "and", "observers",
+            "undo", "redo", "command", "state", "memento", "subject", "line", "word", "count", "log"
+    };
+
+    private Documents() {
+    }
+
+    /**
+     * Text of exactly size chars: words separated by spaces, a newline roughly every 80 chars.
+     */
+    static String words(int size, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        StringBuilder sb = new StringBuilder(size + 16);
+        int lineLength = 0;
+        while (sb.length() < size) {
+            String word = WORDS[random.nextInt(WORDS.length)];
+            sb.append(word);
+            lineLength += word.length() + 1;
+            if (lineLength > 80) {
+                sb.append('\n');
+                lineLength = 0;
+            } else {
+                sb.append(' ');
+            }
+        }
+        sb.setLength(size);
+        return sb.toString();
+    }
+
+    /**
+     * Pre-computed random positions in [0, bound], so the benchmark loop does not pay for the RNG.
+     */
+    static int[] positions(int count, int bound, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        int[] positions = new int[count];
+        for (int i = 0; i < count; i++) {
+            positions[i] = random.nextInt(bound + 1);
+        }
+        return positions;
+    }
+}
@@ -0,0 +1,74 @@
+package benchmarks;
+
+import classes.Editor;
+import classes.HistoryPolicy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Editor.insert / Editor.delete at random positions for document sizes from 1 KB to 100 MB.
+ * History is capped so the measurement is about the edit path, not an ever-growing undo stack.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Thread)
+public class EditBenchmark {
+    private static final int POSITIONS = 1 << 16;
+
+    @Param({"1024", "1048576", "104857600"})
+    public int documentSize;
+
+    private Editor editor;
+    private int[] positions;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        editor = new Editor();
+        editor.setCoalesceWindow(0);
+        editor.setHistoryPolicy(new HistoryPolicy(1000, 0));
+        editor.setContent(Documents.words(documentSize, 42));
+        positions = Documents.positions(POSITIONS, documentSize - 1, 7);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        editor.close();
+    }
+
+    @Benchmark
+    public void insertRandom() {
+        editor.insert("x", positions[next++ & (POSITIONS - 1)]);
+    }
+
+    /**
+     * Delete one char and put one back, so the document size stays stable across iterations.
+     */
+    @Benchmark
+    public void deleteRandom() {
+        int position = positions[next++ & (POSITIONS - 1)];
+        editor.delete(1, position);
+        editor.insert("y", position);
+    }
+
+    @Benchmark
+    public int charAtRandom() {
+        return editor.getBuffer().charAt(positions[next++ & (POSITIONS - 1)]);
+    }
+}
@@ -0,0 +1,69 @@
+package benchmarks;
+
+import classes.CharacterCountView;
+import classes.Editor;
+import classes.HistoryPolicy;
+import classes.WordCountView;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.swing.JLabel;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of an insert as the number of attached observers grows (notifyObservers fan-out),
+ * with synchronous and asynchronous dispatch.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Djava.awt.headless=true"})
+@State(Scope.Thread)
+public class ObserverBenchmark {
+    private static final int POSITIONS = 1 << 16;
+
+    @Param({"0", "1", "10", "100"})
+    public int observers;
+
+    @Param({"false", "true"})
+    public boolean async;
+
+    private Editor editor;
+    private int[] positions;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        editor = new Editor();
+        editor.setCoalesceWindow(0);
+        editor.setHistoryPolicy(new HistoryPolicy(1000, 0));
+        editor.setContent(Documents.words(1 << 20, 42));
+        for (int i = 0; i < observers; i++) {
+            editor.attach((i & 1) == 0 ? new WordCountView(new JLabel()) : new CharacterCountView(new JLabel()));
+        }
+        editor.setAsyncNotifications(async);
+        positions = Documents.positions(POSITIONS, 1 << 20, 7);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        editor.close();
+    }
+
+    @Benchmark
+    public void insertWithObservers() {
+        editor.insert("x", positions[next++ & (POSITIONS - 1)]);
+    }
+}
@@ -0,0 +1,59 @@
+package benchmarks;
+
+import classes.Editor;
+import classes.TextSearch;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Literal and regex findAll, and replace-all followed by its undo, over whole documents.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Thread)
+public class SearchBenchmark {
+    @Param({"1048576", "104857600"})
+    public int documentSize;
+
+    private Editor editor;
+    private final TextSearch literal = TextSearch.literal("observers");
+    private final TextSearch regex = TextSearch.regex("un(do|redo)");
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        editor = new Editor();
+        editor.setContent(Documents.words(documentSize, 42));
+    }
+
+    @Benchmark
+    public int findAllLiteral() {
+        return editor.findAll(literal).size();
+    }
+
+    @Benchmark
+    public int findAllRegex() {
+        return editor.findAll(regex).size();
+    }
+
+    @Benchmark
+    public int replaceAllAndUndo() {
+        int count = editor.replaceAll(literal, "watchers");
+        editor.undo();
+        return count;
+    }
+}
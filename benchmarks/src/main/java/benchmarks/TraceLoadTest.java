@@ -0,0 +1,257 @@
+package benchmarks;
+
+import classes.CharacterCountView;
+import classes.DocumentStatistics;
+import classes.EditStep;
+import classes.Editor;
+import classes.LatencyHistogram;
+import classes.TraceRecorder;
+import classes.WordCountView;
+
+import javax.swing.JLabel;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Load test replaying a recorded editing session (a timed edit script, see TraceRecorder;
+ * record one with {@code java -Dtexteditor.trace=session.txt -jar text-editor.jar}) against
+ * a fresh Editor for every combination of document size and observer set. Each step runs
+ * through the editor's public API exactly as in the GUI: it is published and observers are
+ * notified, synchronously unless --async is given, so observer work counts as latency.
+ * The report has p50/p99/p99.9/max latency and bytes allocated by the replaying thread per
+ * step, for each step kind.
+ * <p>
+ * The document is generated filler of the given size and the session is replayed in its
+ * middle: every recorded position is shifted by half the size. Steps run flat out unless
+ * --real-time is given, which waits for each step's recorded time and also reports how late
+ * steps started. Every run is preceded by unmeasured flat-out warm-up passes.
+ * With --max-p99 or --max-p999 (microseconds over all steps) the test exits with status 1
+ * when any run is slower, so it can gate a release.
+ * <p>
+ * Usage: {@code java -cp benchmarks.jar benchmarks.TraceLoadTest <trace>
+ * [--sizes 0,65536,1048576] [--observers none,counts,statistics,all] [--real-time] [--async]
+ * [--warmup 1] [--max-p99 us] [--max-p999 us]}
+ */
+public class TraceLoadTest {
+    private static final int TOP_WORDS = 10;
+
+    enum Observers { NONE, COUNTS, STATISTICS, ALL }
+
+    private static final com.sun.management.ThreadMXBean THREADS = allocationCounter();
+
+    public static void main(String[] args) throws IOException {
+        Path trace = null;
+        String sizes = "0,65536,1048576";
+        String observerSets = "none,counts,statistics,all";
+        boolean realTime = false;
+        boolean async = false;
+        int warmup = 1;
+        double maxP99 = Double.MAX_VALUE;
+        double maxP999 = Double.MAX_VALUE;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--sizes": sizes = args[++i]; break;
+                    case "--observers": observerSets = args[++i]; break;
+                    case "--real-time": realTime = true; break;
+                    case "--async": async = true; break;
+                    case "--warmup": warmup = Integer.parseInt(args[++i]); break;
+                    case "--max-p99": maxP99 = Double.parseDouble(args[++i]); break;
+                    case "--max-p999": maxP999 = Double.parseDouble(args[++i]); break;
+                    default:
+                        if (trace != null || args[i].startsWith("--")) throw new IllegalArgumentException(args[i]);
+                        trace = Paths.get(args[i]);
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            trace = null;
+        }
+        if (trace == null) {
+            System.err.println("Usage: java -cp benchmarks.jar benchmarks.TraceLoadTest <trace> [--sizes n,...]"
+                    + " [--observers none,counts,statistics,all] [--real-time] [--async] [--warmup n]"
+                    + " [--max-p99 us] [--max-p999 us]");
+            System.exit(2);
+            return;
+        }
+
+        List<EditStep> steps = load(trace);
+        System.out.printf("%d steps recorded over %.1f s%n", steps.size(),
+                steps.isEmpty() ? 0 : steps.get(steps.size() - 1).getTime() / 1e3);
+        boolean passed = true;
+        for (String size : sizes.split(",")) {
+            for (String set : observerSets.split(",")) {
+                Observers observers = Observers.valueOf(set.trim().toUpperCase(Locale.ROOT));
+                int documentSize = Integer.parseInt(size.trim());
+                for (int i = 0; i < warmup; i++) {
+                    new Run(documentSize, observers, async).replay(steps, false);
+                }
+                Run run = new Run(documentSize, observers, async);
+                run.replay(steps, realTime);
+                System.out.print(run.report());
+                passed &= run.check(maxP99, maxP999);
+            }
+        }
+        if (!passed) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * The steps of a trace. Traces are short enough to hold in memory, so reading the file
+     * is not part of any measured latency.
+     */
+    static List<EditStep> load(Path trace) throws IOException {
+        List<EditStep> steps = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(trace, StandardCharsets.UTF_8)) {
+            long lineNumber = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                try {
+                    EditStep step = EditStep.parse(line);
+                    if (step != null) steps.add(step);
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Line " + lineNumber + ": " + e.getMessage(), e);
+                }
+            }
+        }
+        return steps;
+    }
+
+    /**
+     * One replay of the trace on a new editor.
+     */
+    private static final class Run {
+        private final int documentSize;
+        private final Observers observers;
+        private final boolean async;
+        private final Map<EditStep.Kind, LatencyHistogram> latency = new EnumMap<>(EditStep.Kind.class);
+        private final Map<EditStep.Kind, Long> allocated = new EnumMap<>(EditStep.Kind.class);
+        private final LatencyHistogram all = new LatencyHistogram();
+        private final LatencyHistogram lag = new LatencyHistogram();
+        private long elapsedNanos;
+
+        Run(int documentSize, Observers observers, boolean async) {
+            this.documentSize = documentSize;
+            this.observers = observers;
+            this.async = async;
+            for (EditStep.Kind kind : EditStep.Kind.values()) {
+                latency.put(kind, new LatencyHistogram());
+                allocated.put(kind, 0L);
+            }
+        }
+
+        void replay(List<EditStep> steps, boolean realTime) {
+            try (Editor editor = new Editor()) {
+                editor.setContent(Documents.words(documentSize, 42));
+                if (observers == Observers.COUNTS || observers == Observers.ALL) {
+                    editor.attach(new WordCountView(new JLabel()));
+                    editor.attach(new CharacterCountView(new JLabel()));
+                }
+                if (observers == Observers.STATISTICS || observers == Observers.ALL) {
+                    editor.attach(new DocumentStatistics(TOP_WORDS));
+                }
+                editor.setAsyncNotifications(async);
+
+                int shift = documentSize / 2;
+                long start = System.nanoTime();
+                for (EditStep step : steps) {
+                    if (realTime) {
+                        long due = start + step.getTime() * 1_000_000;
+                        long now;
+                        while ((now = System.nanoTime()) < due) {
+                            LockSupport.parkNanos(due - now);
+                        }
+                        lag.record(now - due);
+                    }
+                    if (step.getKind() == EditStep.Kind.INSERT) {
+                        step = EditStep.insert(step.getPosition() + shift, step.getText());
+                    } else if (step.getKind() == EditStep.Kind.DELETE) {
+                        step = EditStep.delete(step.getPosition() + shift, step.getLength());
+                    }
+                    long bytes = allocatedBytes();
+                    long before = System.nanoTime();
+                    step.applyTo(editor);
+                    long nanos = System.nanoTime() - before;
+                    allocated.merge(step.getKind(), allocatedBytes() - bytes, Long::sum);
+                    latency.get(step.getKind()).record(nanos);
+                    all.record(nanos);
+                }
+                editor.flushNotifications();
+                elapsedNanos = System.nanoTime() - start;
+            }
+        }
+
+        String report() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format("%ndocument %d chars, observers %s%s: %d steps in %.1f ms%n", documentSize,
+                    observers.name().toLowerCase(Locale.ROOT), async ? " (async)" : "", all.getCount(),
+                    elapsedNanos / 1e6));
+            sb.append(String.format("%-8s %10s %10s %10s %10s %10s %12s%n",
+                    "step", "count", "p50 us", "p99 us", "p99.9 us", "max us", "bytes/step"));
+            long allBytes = 0;
+            for (EditStep.Kind kind : EditStep.Kind.values()) {
+                allBytes += allocated.get(kind);
+                appendRow(sb, kind.name().toLowerCase(Locale.ROOT), latency.get(kind), allocated.get(kind));
+            }
+            appendRow(sb, "all", all, allBytes);
+            if (lag.getCount() > 0) {
+                appendRow(sb, "lag", lag, -1);
+            }
+            return sb.toString();
+        }
+
+        private static void appendRow(StringBuilder sb, String name, LatencyHistogram histogram, long bytes) {
+            if (histogram.getCount() == 0) return;
+            String perStep = bytes < 0 || THREADS == null ? "-" : String.valueOf(bytes / histogram.getCount());
+            sb.append(String.format("%-8s %10d %10.1f %10.1f %10.1f %10.1f %12s%n", name, histogram.getCount(),
+                    histogram.getPercentile(50) / 1e3, histogram.getPercentile(99) / 1e3,
+                    histogram.getPercentile(99.9) / 1e3, histogram.getMax() / 1e3, perStep));
+        }
+
+        boolean check(double maxP99, double maxP999) {
+            double p99 = all.getPercentile(99) / 1e3;
+            double p999 = all.getPercentile(99.9) / 1e3;
+            boolean passed = p99 <= maxP99 && p999 <= maxP999;
+            if (!passed) {
+                System.out.printf("FAILED: p99 %.1f us (limit %s), p99.9 %.1f us (limit %s)%n", p99, limit(maxP99),
+                        p999, limit(maxP999));
+            }
+            return passed;
+        }
+
+        private static String limit(double micros) {
+            return micros == Double.MAX_VALUE ? "none" : String.valueOf(micros);
+        }
+    }
+
+    // ===========================================================================================
+    // ALLOCATION: Bytes allocated by the replaying thread, where the JVM can count them
+    // ===========================================================================================
+
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            if (threads.isThreadAllocatedMemorySupported()) {
+                threads.setThreadAllocatedMemoryEnabled(true);
+                return threads;
+            }
+        }
+        return null;
+    }
+
+    private static long allocatedBytes() {
+        return THREADS == null ? 0 : THREADS.getCurrentThreadAllocatedBytes();
+    }
+}
@@ -0,0 +1,65 @@
+package benchmarks;
+
+import classes.Editor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Undoing and redoing a whole chain of edits on documents of different sizes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Thread)
+public class UndoRedoBenchmark {
+    @Param({"1024", "1048576"})
+    public int documentSize;
+
+    @Param({"100", "10000"})
+    public int chainLength;
+
+    private Editor editor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        editor = new Editor();
+        editor.setCoalesceWindow(0);
+        editor.setContent(Documents.words(documentSize, 42));
+        int[] positions = Documents.positions(chainLength, documentSize, 11);
+        for (int i = 0; i < chainLength; i++) {
+            if ((i & 1) == 0) {
+                editor.insert("edit", positions[i]);
+            } else {
+                editor.delete(3, positions[i]);
+            }
+        }
+    }
+
+    /**
+     * Undo the whole chain, then redo it, leaving the editor as it was.
+     */
+    @Benchmark
+    public long undoThenRedoChain() {
+        while (editor.canUndo()) {
+            editor.undo();
+        }
+        while (editor.canRedo()) {
+            editor.redo();
+        }
+        return editor.getVersion();
+    }
+}
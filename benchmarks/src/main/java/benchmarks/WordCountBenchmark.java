@@ -0,0 +1,76 @@
+package benchmarks;
+
+import classes.DocumentChange;
+import classes.Editor;
+import classes.WordCountView;
+import interfaces.Observer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.swing.JLabel;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * WordCountView.update throughput: a full recount of the document versus the incremental
+ * update from a single-character DocumentChange.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Djava.awt.headless=true"})
+@State(Scope.Thread)
+public class WordCountBenchmark {
+    @Param({"1024", "1048576", "104857600"})
+    public int documentSize;
+
+    private WordCountView view;
+    private String content;
+    private DocumentChange change;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Editor editor = new Editor();
+        editor.setContent(Documents.words(documentSize, 42));
+        editor.attach(new Observer() {
+            @Override
+            public void update(String content) {
+            }
+
+            @Override
+            public void update(DocumentChange change) {
+                WordCountBenchmark.this.change = change;
+            }
+        });
+        editor.insert(" ", documentSize / 2);
+        content = editor.getContent();
+        view = new WordCountView(new JLabel());
+        view.update(content);
+    }
+
+    @Benchmark
+    public int fullRecount() {
+        view.update(content);
+        return view.getWordCount();
+    }
+
+    /**
+     * Applying the same event repeatedly drifts the running total, which does not matter here:
+     * only the cost of the update is measured.
+     */
+    @Benchmark
+    public int incrementalUpdate() {
+        view.update(change);
+        return view.getWordCount();
+    }
+}
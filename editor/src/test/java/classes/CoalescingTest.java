@@ -0,0 +1,137 @@
+package classes;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Runs of typed characters and of backspaces are undone in one step; pastes, newlines,
+ * jumps and compound edits are undo steps of their own.
+ */
+class CoalescingTest {
+    @Test
+    void typingRunIsOneUndoStep() {
+        try (Editor editor = new Editor()) {
+            type(editor, "hello", 0);
+            editor.insert(" ", 5);
+            type(editor, "world", 6);
+            editor.undo();
+            assertEquals("", editor.getContent());
+        }
+    }
+
+    @Test
+    void newlineStartsANewStep() {
+        try (Editor editor = new Editor()) {
+            type(editor, "ab", 0);
+            type(editor, "\ncd", 2);
+            editor.undo();
+            assertEquals("ab", editor.getContent());
+            editor.undo();
+            assertEquals("", editor.getContent());
+        }
+    }
+
+    @Test
+    void pastesAreNeitherMergedNorMergedInto() {
+        try (Editor editor = new Editor()) {
+            type(editor, "ab", 0);
+            editor.insert("PASTE", 2);
+            type(editor, "cd", 7);
+            editor.undo();
+            assertEquals("abPASTE", editor.getContent());
+            editor.undo();
+            assertEquals("ab", editor.getContent());
+        }
+    }
+
+    @Test
+    void jumpingElsewhereStartsANewStep() {
+        try (Editor editor = new Editor()) {
+            type(editor, "abc", 0);
+            editor.insert("x", 0);
+            editor.undo();
+            assertEquals("abc", editor.getContent());
+        }
+    }
+
+    @Test
+    void backspaceAndDeleteRunsAreOneStep() {
+        try (Editor editor = new Editor()) {
+            editor.setContent("0123456789");
+            editor.delete(1, 9);
+            editor.delete(1, 8);
+            editor.delete(1, 7);
+            editor.delete(1, 2);
+            editor.delete(1, 2);
+            assertEquals("01456", editor.getContent());
+            editor.undo();
+            assertEquals("0123456", editor.getContent());
+            editor.undo();
+            assertEquals("0123456789", editor.getContent());
+        }
+    }
+
+    @Test
+    void bulkDeletesAreNotMerged() {
+        try (Editor editor = new Editor()) {
+            editor.setContent("0123456789");
+            editor.delete(1, 9);
+            editor.delete(3, 6);
+            editor.undo();
+            assertEquals("012345678", editor.getContent());
+        }
+    }
+
+    @Test
+    void zeroWindowDisablesMerging() {
+        try (Editor editor = new Editor()) {
+            editor.setCoalesceWindow(0);
+            type(editor, "abc", 0);
+            editor.undo();
+            assertEquals("ab", editor.getContent());
+        }
+    }
+
+    @Test
+    void compoundEditIsOneStep() {
+        try (Editor editor = new Editor()) {
+            editor.setContent("a b c");
+            editor.batch(() -> {
+                editor.delete(1, 0);
+                editor.insert("A", 0);
+                editor.beginCompoundEdit(); // Nested: still part of the outer step
+                editor.delete(1, 4);
+                editor.insert("C", 4);
+                editor.endCompoundEdit();
+            });
+            assertEquals("A b C", editor.getContent());
+            editor.undo();
+            assertEquals("a b c", editor.getContent());
+            editor.redo();
+            assertEquals("A b C", editor.getContent());
+        }
+    }
+
+    @Test
+    void undoIsRejectedInsideACompoundEdit() {
+        try (Editor editor = new Editor()) {
+            editor.beginCompoundEdit();
+            try {
+                assertThrows(IllegalStateException.class, editor::undo);
+            } finally {
+                editor.endCompoundEdit();
+            }
+            assertFalse(editor.canUndo());
+            assertThrows(IllegalStateException.class, editor::endCompoundEdit);
+        }
+    }
+
+    private static void type(Editor editor, String text, int position) {
+        for (int i = 0; i < text.length(); i++) {
+            editor.insert(text.substring(i, i + 1), position + i);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package classes;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Editors connected through a server converge on the same text whatever order messages
+ * arrive in, and undo only ever reverts the editor's own changes.
+ */
+class CollaborationTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void editorsConvergeUnderRandomInterleavings() {
+        for (int seed = 0; seed < 30; seed++) {
+            Random random = new Random(seed);
+            CollaborationServer server = new CollaborationServer("shared text\n");
+            LoopbackTransport transport = new LoopbackTransport(server);
+            List<Editor> editors = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                Editor editor = new Editor();
+                editor.setCoalesceWindow(random.nextBoolean() ? 0 : 1000);
+                transport.connect(editor);
+                editors.add(editor);
+            }
+            for (int step = 0; step < 400; step++) {
+                if (random.nextInt(3) == 0) {
+                    transport.deliverNext(random);
+                } else {
+                    randomEdit(editors.get(random.nextInt(editors.size())), random);
+                }
+            }
+            transport.deliverAll();
+            for (Editor editor : editors) {
+                assertEquals(server.getContent(), editor.getContent(), "seed " + seed);
+                editor.close();
+            }
+        }
+    }
+
+    @Test
+    void undoRevertsOnlyOwnChanges() {
+        CollaborationServer server = new CollaborationServer("");
+        LoopbackTransport transport = new LoopbackTransport(server);
+        Editor alice = new Editor();
+        Editor bob = new Editor();
+        alice.setCoalesceWindow(0);
+        transport.connect(alice);
+        transport.connect(bob);
+
+        alice.insert("abc", 0);
+        transport.deliverAll();
+        bob.insert("X", 0);
+        bob.insert("Y", 3); // Inside alice's text
+        transport.deliverAll();
+        assertEquals("XabYc", alice.getContent());
+
+        alice.undo();
+        transport.deliverAll();
+        assertEquals("XY", alice.getContent());
+        assertEquals("XY", bob.getContent());
+        alice.redo();
+        transport.deliverAll();
+        assertEquals(server.getContent(), bob.getContent());
+        assertTrue(alice.getContent().contains("ab") && alice.getContent().startsWith("X"));
+    }
+
+    @Test
+    void textDeletedRemotelyIsNotRestoredByUndo() {
+        CollaborationServer server = new CollaborationServer("");
+        LoopbackTransport transport = new LoopbackTransport(server);
+        Editor alice = new Editor();
+        Editor bob = new Editor();
+        transport.connect(alice);
+        transport.connect(bob);
+
+        alice.insert("abc", 0);
+        transport.deliverAll();
+        bob.delete(1, 1);
+        transport.deliverAll();
+        alice.undo();
+        transport.deliverAll();
+        assertEquals("", alice.getContent());
+        assertEquals("", bob.getContent());
+    }
+
+    @Test
+    void remoteEditsKeepSpilledHistory() {
+        CollaborationServer server = new CollaborationServer("");
+        LoopbackTransport transport = new LoopbackTransport(server);
+        Editor alice = new Editor();
+        Editor bob = new Editor();
+        alice.setCoalesceWindow(0);
+        alice.setHistoryPolicy(new HistoryPolicy(2, 0, directory.resolve("spill.bin")));
+        transport.connect(alice);
+        transport.connect(bob);
+
+        for (int i = 0; i < 10; i++) {
+            alice.insert("a" + i + " ", alice.getLength());
+            if (i % 3 == 0) undoAndRedo(alice);
+        }
+        transport.deliverAll();
+        // Far more remote edits than the queue keeps apart, interleaved with alice's undo/redo
+        for (int i = 0; i < 300; i++) {
+            bob.insert("b", i % 2 == 0 ? 0 : bob.getLength());
+            transport.deliverAll();
+            if (i % 97 == 0) undoAndRedo(alice);
+        }
+        for (int i = 0; i < 10; i++) {
+            alice.undo();
+        }
+        assertFalse(alice.canUndo());
+        transport.deliverAll();
+        assertEquals("b".repeat(300), alice.getContent());
+        assertEquals("b".repeat(300), bob.getContent());
+
+        for (int i = 0; i < 10; i++) {
+            alice.redo();
+        }
+        transport.deliverAll();
+        assertEquals(bob.getContent(), alice.getContent());
+        assertEquals("b".repeat(150) + "a0 a1 a2 a3 a4 a5 a6 a7 a8 a9 " + "b".repeat(150), alice.getContent());
+    }
+
+    private static void undoAndRedo(Editor editor) {
+        editor.undo();
+        editor.redo();
+    }
+
+    private static void randomEdit(Editor editor, Random random) {
+        int length = editor.getLength();
+        int kind = random.nextInt(12);
+        if (kind < 4) {
+            editor.insert(random.nextBoolean() ? "x" : "yz\n", random.nextInt(length + 1));
+        } else if (kind < 6 && length > 0) {
+            int position = random.nextInt(length);
+            editor.delete(1 + random.nextInt(Math.min(5, length - position)), position);
+        } else if (kind < 8) {
+            editor.undo();
+        } else if (kind < 9) {
+            editor.redo();
+        } else if (kind < 10) {
+            editor.replaceAll(TextSearch.literal("x"), "X");
+        } else if (kind < 11 && length > 2) {
+            editor.applyEdits(List.of(TextEdit.insert(0, "<"), TextEdit.delete(length / 2, 1), TextEdit.insert(length, ">")));
+        } else {
+            editor.batch(() -> {
+                editor.insert("[", 0);
+                editor.insert("]", editor.getLength());
+            });
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package classes;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * History limits evict the oldest undo entries, to disk when a spill file is given, and
+ * never cost a redo step.
+ */
+class CommandHistoryTest {
+    @Test
+    void discardsTheOldestUndoEntries() {
+        try (Editor editor = typed(new HistoryPolicy(3, 0), 10)) {
+            for (int i = 0; i < 3; i++) editor.undo();
+            assertEquals("0123456", editor.getContent());
+            assertFalse(editor.canUndo());
+        }
+    }
+
+    @Test
+    void undoingPastTheLimitKeepsEveryRedoStep(@TempDir Path directory) {
+        try (Editor editor = typed(new HistoryPolicy(3, 0, directory.resolve("spill.bin")), 10)) {
+            while (editor.canUndo()) editor.undo();
+            assertEquals("", editor.getContent());
+            for (int i = 0; i < 10; i++) editor.redo();
+            assertEquals("0123456789", editor.getContent());
+            assertFalse(editor.canRedo());
+
+            // And back down through the spill again
+            for (int i = 0; i < 10; i++) editor.undo();
+            assertEquals("", editor.getContent());
+        }
+    }
+
+    @Test
+    void byteBudgetCountsOnlyUndoEntries(@TempDir Path directory) {
+        HistoryPolicy policy = new HistoryPolicy(0, 1024, directory.resolve("spill.bin"));
+        try (Editor editor = new Editor()) {
+            editor.setCoalesceWindow(0);
+            editor.setHistoryPolicy(policy);
+            String block = "x".repeat(300);
+            for (int i = 0; i < 20; i++) editor.insert(block, editor.getLength());
+            for (int i = 0; i < 20; i++) editor.undo();
+            assertEquals(0, editor.getLength());
+            for (int i = 0; i < 20; i++) editor.redo();
+            assertEquals(6000, editor.getLength());
+        }
+    }
+
+    @Test
+    void aNewEditClearsRedo() {
+        try (Editor editor = typed(HistoryPolicy.unbounded(), 3)) {
+            editor.undo();
+            assertTrue(editor.canRedo());
+            editor.insert("x", 0);
+            assertFalse(editor.canRedo());
+            editor.undo();
+            editor.undo();
+            assertEquals("0", editor.getContent());
+        }
+    }
+
+    private static Editor typed(HistoryPolicy policy, int characters) {
+        Editor editor = new Editor();
+        editor.setCoalesceWindow(0);
+        editor.setHistoryPolicy(policy);
+        for (int i = 0; i < characters; i++) editor.insert(String.valueOf(i), i);
+        return editor;
+    }
+}
@@ -0,0 +1,105 @@
+package classes;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Documents keep their text across hibernation and close/open cycles, and operations on one
+ * document run in order.
+ */
+class DocumentManagerTest {
+    @TempDir
+    Path storage;
+
+    @Test
+    void operationsOnADocumentRunInOrder() throws IOException {
+        try (DocumentManager manager = new DocumentManager(storage, 60_000, 4)) {
+            manager.open("doc").join();
+            List<CompletableFuture<Void>> edits = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                String text = i % 10 + "";
+                edits.add(manager.execute("doc", editor -> editor.insert(text, editor.getLength())));
+            }
+            CompletableFuture.allOf(edits.toArray(new CompletableFuture<?>[0])).join();
+            StringBuilder expected = new StringBuilder();
+            for (int i = 0; i < 1000; i++) expected.append(i % 10);
+            assertEquals(expected.toString(), manager.submit("doc", Editor::getContent).join());
+        }
+    }
+
+    @Test
+    void evictedDocumentsWakeWithTheirText() throws IOException {
+        try (DocumentManager manager = new DocumentManager(storage, 60_000, 2)) {
+            manager.open("a/b c").join(); // Ids need not be valid file names
+            manager.execute("a/b c", editor -> editor.insert("héllo", 0)).join();
+            manager.evict("a/b c").join();
+            assertEquals(0, manager.getResidentCount());
+            assertEquals(1, manager.getOpenCount());
+            assertEquals("héllo", manager.snapshot("a/b c").toString());
+            assertEquals(1, manager.getResidentCount());
+        }
+    }
+
+    @Test
+    void idleDocumentsAreHibernated() throws IOException, InterruptedException {
+        try (DocumentManager manager = new DocumentManager(storage, 20, 2)) {
+            for (int i = 0; i < 20; i++) {
+                int n = i;
+                manager.open("doc" + i).join();
+                manager.execute("doc" + i, editor -> editor.insert("text " + n, 0)).join();
+            }
+            long deadline = System.nanoTime() + 10_000_000_000L;
+            while (manager.getResidentCount() > 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(0, manager.getResidentCount());
+            for (int i = 0; i < 20; i++) {
+                assertEquals("text " + i, manager.submit("doc" + i, Editor::getContent).join());
+            }
+        }
+    }
+
+    @Test
+    void reopeningWhileClosingReadsTheWrittenFile() throws IOException {
+        try (DocumentManager manager = new DocumentManager(storage, 60_000, 4)) {
+            String large = "x".repeat(1 << 20);
+            for (int round = 0; round < 20; round++) {
+                manager.open("doc").join();
+                String expected = round + large;
+                manager.execute("doc", editor -> editor.setContent(expected));
+                CompletableFuture<Void> closed = manager.close("doc");
+                assertSame(closed, manager.close("doc"));
+                CompletableFuture<Void> reopened = manager.open("doc"); // Before the close has finished
+                closed.join();
+                reopened.join();
+                assertEquals(expected, manager.submit("doc", Editor::getContent).join());
+                manager.close("doc").join();
+            }
+            assertEquals(0, manager.getOpenCount());
+        }
+    }
+
+    @Test
+    void closedDocumentsRejectOperations() throws IOException {
+        try (DocumentManager manager = new DocumentManager(storage, 60_000, 2)) {
+            manager.open("doc").join();
+            manager.close("doc").join();
+            CompletionException failure = assertThrows(CompletionException.class,
+                    () -> manager.execute("doc", editor -> editor.insert("x", 0)).join());
+            assertTrue(failure.getCause() instanceof IllegalStateException);
+            assertThrows(CompletionException.class, () -> manager.close("doc").join());
+        }
+    }
+}
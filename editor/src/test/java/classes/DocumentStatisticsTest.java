@@ -0,0 +1,153 @@
+package classes;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The incremental path (one chunk re-summarized per edit) must always agree with summarizing
+ * the whole document again.
+ */
+class DocumentStatisticsTest {
+    private static final String[] VOCABULARY = {"the", "The,", "a", "Cat", "dog.", "x", "(hello)", "world", "é", "--"};
+    private static final int TOP_WORDS = 5;
+
+    @Test
+    void incrementalUpdatesMatchAFullSummary() {
+        Random random = new Random(9);
+        Editor editor = new Editor();
+        editor.setCoalesceWindow(0);
+        DocumentStatistics statistics = new DocumentStatistics(TOP_WORDS);
+        editor.attach(statistics);
+        editor.setContent(words(random, 5000));
+        for (int step = 0; step < 1500; step++) {
+            int length = editor.getLength();
+            int kind = random.nextInt(10);
+            if (kind < 5) {
+                editor.insert(random.nextBoolean() ? words(random, 1 + random.nextInt(3))
+                        : VOCABULARY[random.nextInt(VOCABULARY.length)], random.nextInt(length + 1));
+            } else if (kind < 8 && length > 0) {
+                int position = random.nextInt(length);
+                int removed = random.nextInt(20) == 0 ? 1 + random.nextInt(10000) : 1 + random.nextInt(6);
+                editor.delete(Math.min(length - position, removed), position);
+            } else if (kind < 9) {
+                editor.undo();
+            } else {
+                editor.replaceAll(TextSearch.literal(VOCABULARY[random.nextInt(VOCABULARY.length)]),
+                        VOCABULARY[random.nextInt(VOCABULARY.length)]);
+            }
+            if (step % 25 == 0) {
+                assertMatchesFullSummary(editor, statistics);
+            }
+        }
+        assertMatchesFullSummary(editor, statistics);
+    }
+
+    @Test
+    void wordsLongerThanAChunkAreCountedWhole() {
+        Random random = new Random(21);
+        // Past the size one fork-join leaf summarizes, with words that straddle every cut
+        StringBuilder text = new StringBuilder();
+        while (text.length() < 3 << 20) {
+            text.append(longWord(random)).append(random.nextBoolean() ? " " : "\n").append(words(random, 20));
+        }
+        String document = text.toString();
+        Map<String, Integer> expected = naiveFrequencies(document);
+        assertEquals(expected, frequencies(document));
+    }
+
+    @Test
+    void editsAroundLongWordsMatchAFullSummary() {
+        Random random = new Random(22);
+        Editor editor = new Editor();
+        editor.setCoalesceWindow(0);
+        DocumentStatistics statistics = new DocumentStatistics(Integer.MAX_VALUE);
+        editor.attach(statistics);
+        editor.setContent(words(random, 2000) + longWord(random) + " " + words(random, 2000));
+        for (int step = 0; step < 150; step++) {
+            int length = editor.getLength();
+            int position = random.nextInt(length + 1);
+            int kind = random.nextInt(4);
+            if (kind == 0) {
+                editor.insert(longWord(random), position);
+            } else if (kind == 1) {
+                editor.insert(random.nextBoolean() ? " " : "x", position);
+            } else if (kind == 2 && position < length) {
+                editor.delete(Math.min(length - position, 1 + random.nextInt(3)), position);
+            } else {
+                editor.insert(words(random, 3), position);
+            }
+            String document = editor.getContent();
+            assertEquals(naiveFrequencies(document), frequencies(document));
+            TextStatistics incremental = statistics.getStatistics();
+            assertEquals(DocumentStatistics.of(document, 0).getWords(), incremental.getWords());
+            assertEquals(naiveFrequencies(document), Map.ofEntries(incremental.getTopWords().toArray(Map.Entry[]::new)));
+        }
+    }
+
+    @Test
+    void countsWordsLinesAndFrequencies() {
+        TextStatistics statistics = DocumentStatistics.of("The cat, the dog.\n(the) CAT\n", 2);
+        assertEquals(28, statistics.getCharacters());
+        assertEquals(3, statistics.getLines());
+        assertEquals(6, statistics.getWords());
+        assertEquals(3, statistics.getUniqueWords());
+        assertEquals(List.of(Map.entry("the", 3), Map.entry("cat", 2)), statistics.getTopWords());
+    }
+
+    private static void assertMatchesFullSummary(Editor editor, DocumentStatistics statistics) {
+        String document = editor.getContent();
+        TextStatistics incremental = statistics.getStatistics();
+        TextStatistics full = DocumentStatistics.of(document, TOP_WORDS);
+        assertEquals(editor.getVersion(), incremental.getVersion());
+        assertEquals(full.getCharacters(), incremental.getCharacters());
+        assertEquals(full.getLines(), incremental.getLines());
+        assertEquals(full.getWords(), incremental.getWords());
+        assertEquals(full.getUniqueWords(), incremental.getUniqueWords());
+        assertEquals(full.getTopWords(), incremental.getTopWords());
+        assertEquals(naiveFrequencies(document).size(), incremental.getUniqueWords());
+    }
+
+    // Every frequency the engine finds, listed in full
+    private static Map<String, Integer> frequencies(String document) {
+        TextStatistics statistics = DocumentStatistics.of(document, Integer.MAX_VALUE);
+        return Map.ofEntries(statistics.getTopWords().toArray(Map.Entry[]::new));
+    }
+
+    // Words split on whitespace, trimmed of punctuation and lower-cased, as the engine counts them
+    private static Map<String, Integer> naiveFrequencies(String document) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (String token : document.split("[ \t\n\u000B\f\r]+")) {
+            int start = 0;
+            int end = token.length();
+            while (start < end && !Character.isLetterOrDigit(token.charAt(start))) start++;
+            while (end > start && !Character.isLetterOrDigit(token.charAt(end - 1))) end--;
+            if (start < end) counts.merge(token.substring(start, end).toLowerCase(Locale.ROOT), 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    // Several chunks long, from a few letters so that equal long words come up
+    private static String longWord(Random random) {
+        StringBuilder word = new StringBuilder();
+        int length = 4096 + random.nextInt(3) * 3000;
+        char letter = (char) ('a' + random.nextInt(3));
+        while (word.length() < length) word.append(letter);
+        return word.toString();
+    }
+
+    private static String words(Random random, int count) {
+        List<String> words = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            words.add(VOCABULARY[random.nextInt(VOCABULARY.length)] + (random.nextInt(8) == 0 ? "\n" : " "));
+        }
+        return String.join("", words);
+    }
+}
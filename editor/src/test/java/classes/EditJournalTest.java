@@ -0,0 +1,207 @@
+package classes;
+
+import interfaces.Observer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Recovery rebuilds the document from the last snapshot and the journal, drops a torn tail,
+ * and never replays past a reset whose snapshot is missing; a failing journal leaves the
+ * document untouched.
+ */
+class EditJournalTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void recoversEditsAndResets() throws IOException {
+        Path snapshot = directory.resolve("doc.snapshot");
+        Path journal = directory.resolve("doc.journal");
+        Random random = new Random(8);
+        String expected;
+        long version;
+        try (Editor editor = new Editor()) {
+            editor.setContent("start\n");
+            editor.enableJournal(snapshot, journal);
+            for (int step = 0; step < 2000; step++) {
+                int length = editor.getLength();
+                int kind = random.nextInt(20);
+                if (kind < 10) {
+                    editor.insert(random.nextBoolean() ? "é" : "word €\n", random.nextInt(length + 1));
+                } else if (kind < 16 && length > 0) {
+                    editor.delete(1 + random.nextInt(Math.min(length, 8)), random.nextInt(length));
+                } else if (kind < 18) {
+                    editor.undo();
+                } else if (kind < 19) {
+                    editor.replaceAll(TextSearch.literal("word"), "w");
+                } else {
+                    editor.setContent(editor.getContent() + "reset " + step + "\n");
+                }
+            }
+            expected = editor.getContent();
+            version = editor.getVersion();
+            editor.disableJournal();
+        }
+
+        try (Editor recovered = new Editor()) {
+            recovered.recover(snapshot, journal);
+            assertEquals(expected, recovered.getContent());
+            assertEquals(version, recovered.getVersion());
+            assertFalse(recovered.canUndo());
+
+            // Journaling continues on the same files
+            recovered.insert("after recovery", 0);
+            recovered.disableJournal();
+        }
+        try (Editor again = new Editor()) {
+            again.recover(snapshot, journal);
+            assertEquals("after recovery" + expected, again.getContent());
+            again.disableJournal();
+        }
+    }
+
+    @Test
+    void dropsATornTail() throws IOException {
+        Path snapshot = directory.resolve("doc.snapshot");
+        Path journal = directory.resolve("doc.journal");
+        try (Editor editor = new Editor()) {
+            editor.enableJournal(snapshot, journal);
+            editor.insert("one ", 0);
+            editor.insert("two ", 4);
+            editor.insert("three", 8);
+            editor.disableJournal();
+        }
+        long intact = Files.size(journal);
+        try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.WRITE)) {
+            channel.truncate(intact - 3); // The last record was only partly written
+        }
+
+        try (Editor recovered = new Editor()) {
+            recovered.recover(snapshot, journal);
+            assertEquals("one two ", recovered.getContent());
+            recovered.insert("2", 8);
+            recovered.disableJournal();
+        }
+        try (Editor again = new Editor()) {
+            again.recover(snapshot, journal);
+            assertEquals("one two 2", again.getContent());
+            again.disableJournal();
+        }
+    }
+
+    @Test
+    void stopsAtACorruptRecord() throws IOException {
+        Path snapshot = directory.resolve("doc.snapshot");
+        Path journal = directory.resolve("doc.journal");
+        try (Editor editor = new Editor()) {
+            editor.enableJournal(snapshot, journal);
+            editor.insert("aaaa", 0);
+            editor.insert("bbbb", 4);
+            editor.disableJournal();
+        }
+        byte[] bytes = Files.readAllBytes(journal);
+        bytes[bytes.length - 1] ^= 1; // Inside the second record's text
+        Files.write(journal, bytes);
+
+        try (Editor recovered = new Editor()) {
+            recovered.recover(snapshot, journal);
+            assertEquals("aaaa", recovered.getContent());
+            recovered.disableJournal();
+        }
+    }
+
+    @Test
+    void stopsAtAResetWhoseSnapshotIsMissing() throws IOException {
+        Path snapshot = directory.resolve("doc.snapshot");
+        Path journal = directory.resolve("doc.journal");
+        PieceTableBuffer text = new PieceTableBuffer();
+        text.setText("abc");
+        EditJournal writer = new EditJournal(snapshot, journal);
+        EditJournal.await(writer.checkpoint(text.snapshot(), 4));
+        writer.append(5, List.of(TextEdit.insert(3, "d")));
+        writer.appendReset(6); // The crash came before the snapshot of version 6 was written
+        writer.append(7, List.of(TextEdit.insert(0, "new document")));
+        writer.close();
+
+        try (Editor recovered = new Editor()) {
+            recovered.recover(snapshot, journal);
+            assertEquals("abcd", recovered.getContent());
+            assertEquals(5, recovered.getVersion());
+            recovered.disableJournal();
+        }
+    }
+
+    @Test
+    void keepsEditsMadeWhileACheckpointIsWritten() throws IOException {
+        Path snapshot = directory.resolve("doc.snapshot");
+        Path journal = directory.resolve("doc.journal");
+        try (Editor editor = new Editor()) {
+            editor.enableJournal(snapshot, journal);
+            for (int i = 0; i < 200; i++) {
+                editor.setContent("reset " + i + "\n" + "x".repeat(100000)); // Each starts a background checkpoint
+                editor.insert("edit " + i, 0);
+            }
+            editor.checkpoint();
+            editor.insert("last ", 0);
+            String expected = editor.getContent();
+            editor.disableJournal();
+
+            try (Editor recovered = new Editor()) {
+                recovered.recover(snapshot, journal);
+                assertEquals(expected, recovered.getContent());
+                recovered.disableJournal();
+            }
+        }
+    }
+
+    @Test
+    void aFailingJournalLeavesTheDocumentUnchanged() throws IOException {
+        Path snapshots = Files.createDirectory(directory.resolve("snapshots"));
+        Path snapshot = snapshots.resolve("doc.snapshot");
+        Path journal = directory.resolve("doc.journal");
+        try (Editor editor = new Editor()) {
+            AtomicInteger notified = new AtomicInteger();
+            editor.attach(new Observer() {
+                @Override
+                public void update(String content) {
+                    notified.incrementAndGet();
+                }
+            });
+            editor.enableJournal(snapshot, journal);
+            Files.delete(snapshot);
+            Files.delete(snapshots); // Snapshots can no longer be written
+            editor.setContent("kept");
+            assertThrows(IOException.class, editor::checkpoint);
+
+            long version = editor.getVersion();
+            int notifications = notified.get();
+            assertThrows(UncheckedIOException.class, () -> editor.insert("lost", 0));
+            assertThrows(UncheckedIOException.class, () -> editor.delete(2, 0));
+            assertEquals("kept", editor.getContent());
+            assertEquals(version, editor.getVersion());
+            assertEquals(notifications, notified.get());
+            assertFalse(editor.canRedo());
+
+            editor.undo(); // The setContent cleared the history, so there is nothing to undo
+            assertEquals("kept", editor.getContent());
+            assertThrows(IOException.class, editor::disableJournal);
+            editor.insert("ok ", 0); // Without the journal, editing works again
+            assertTrue(editor.getContent().startsWith("ok "));
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package classes;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Undo and redo through the commands' own deltas must walk back and forth through exactly
+ * the documents the edits produced.
+ */
+class EditorUndoTest {
+    @Test
+    void undoAndRedoRetraceEveryDocument() {
+        Random random = new Random(2);
+        try (Editor editor = new Editor()) {
+            editor.setCoalesceWindow(0);
+            List<String> versions = new ArrayList<>();
+            versions.add("");
+            int current = 0;
+            for (int step = 0; step < 3000; step++) {
+                int kind = random.nextInt(10);
+                int length = editor.getLength();
+                if (kind < 4) {
+                    // Out-of-range positions are clamped, and undo must remove what actually landed
+                    editor.insert(random.nextBoolean() ? "a" : "xyz\n", random.nextInt(length + 3) - 1);
+                } else if (kind < 6) {
+                    editor.delete(random.nextInt(5), random.nextInt(length + 2));
+                } else if (kind < 8) {
+                    if (current > 0) {
+                        editor.undo();
+                        current--;
+                        assertEquals(versions.get(current), editor.getContent());
+                    }
+                    continue;
+                } else {
+                    if (current < versions.size() - 1) {
+                        editor.redo();
+                        current++;
+                        assertEquals(versions.get(current), editor.getContent());
+                    }
+                    continue;
+                }
+                // A new edit drops every redo step
+                versions.subList(current + 1, versions.size()).clear();
+                versions.add(editor.getContent());
+                current++;
+            }
+            while (current > 0) {
+                editor.undo();
+                current--;
+            }
+            assertEquals("", editor.getContent());
+            assertFalse(editor.canUndo());
+        }
+    }
+
+    @Test
+    void undoRestoresDeletedText() {
+        try (Editor editor = new Editor()) {
+            editor.setContent("hello, world");
+            editor.delete(7, 5);
+            assertEquals("hello", editor.getContent());
+            editor.undo();
+            assertEquals("hello, world", editor.getContent());
+            editor.redo();
+            assertEquals("hello", editor.getContent());
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package classes;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Mapped files decode like a String, and saving an opened, edited file writes exactly the
+ * document without changing who can read the file.
+ */
+class MappedTextFileTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void decodesUtf8OnDemand() throws IOException {
+        Random random = new Random(7);
+        String text = randomText(random, 50000, "ab\né€😀");
+        Path file = write("utf8.txt", text, StandardCharsets.UTF_8);
+        try (MappedTextFile mapped = MappedTextFile.open(file, StandardCharsets.UTF_8)) {
+            assertDecodes(text, mapped, random);
+        }
+    }
+
+    @Test
+    void decodesLatin1AndSkipsHeaders() throws IOException {
+        Random random = new Random(8);
+        String text = randomText(random, 5000, "ab\né");
+        Path file = directory.resolve("latin1.txt");
+        byte[] body = text.getBytes(StandardCharsets.ISO_8859_1);
+        byte[] bytes = new byte[body.length + 16];
+        System.arraycopy(body, 0, bytes, 16, body.length);
+        Files.write(file, bytes);
+        try (MappedTextFile mapped = MappedTextFile.open(file, StandardCharsets.ISO_8859_1, 16)) {
+            assertDecodes(text, mapped, random);
+        }
+    }
+
+    @Test
+    void rejectsOtherCharsets() throws IOException {
+        Path file = write("utf16.txt", "x", StandardCharsets.UTF_16);
+        assertThrows(IllegalArgumentException.class, () -> MappedTextFile.open(file, StandardCharsets.UTF_16));
+    }
+
+    @Test
+    void savesEditsOverTheOpenedFile() throws IOException {
+        Random random = new Random(9);
+        String text = randomText(random, 200000, "ab\né😀");
+        Path file = write("doc.txt", text, StandardCharsets.UTF_8);
+        try (Editor editor = new Editor()) {
+            editor.openFile(file);
+            StringBuilder expected = new StringBuilder(text);
+            for (int i = 0; i < 200; i++) {
+                // Never split a surrogate pair: a lone surrogate cannot be encoded
+                int position = codePointStart(expected, random.nextInt(expected.length()));
+                if (random.nextBoolean()) {
+                    editor.insert("€x", position);
+                    expected.insert(position, "€x");
+                } else {
+                    int end = codePointStart(expected, Math.min(position + 1 + random.nextInt(50), expected.length()));
+                    int length = end - position;
+                    editor.delete(length, position);
+                    expected.delete(position, position + length);
+                }
+            }
+            editor.saveFile(file);
+            assertEquals(expected.toString(), Files.readString(file, StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void keepsTheTargetsPermissions() throws IOException {
+        Path file = write("private.txt", "secret", StandardCharsets.UTF_8);
+        assumeTrue(Files.getFileAttributeView(file, java.nio.file.attribute.PosixFileAttributeView.class) != null);
+        Set<PosixFilePermission> permissions = PosixFilePermissions.fromString("rw-r-----");
+        Files.setPosixFilePermissions(file, permissions);
+        try (Editor editor = new Editor()) {
+            editor.openFile(file);
+            editor.insert("top ", 0);
+            editor.saveFile(file);
+        }
+        assertEquals(permissions, Files.getPosixFilePermissions(file));
+        assertEquals("top secret", Files.readString(file));
+    }
+
+    @Test
+    void newFilesGetTheDefaultPermissions() throws IOException {
+        Path reference = Files.createFile(directory.resolve("reference.txt"));
+        assumeTrue(Files.getFileAttributeView(reference, java.nio.file.attribute.PosixFileAttributeView.class) != null);
+        Path file = directory.resolve("new.txt");
+        try (Editor editor = new Editor()) {
+            editor.setContent("new");
+            editor.saveFile(file);
+        }
+        assertEquals(Files.getPosixFilePermissions(reference), Files.getPosixFilePermissions(file));
+        try (var listing = Files.list(directory)) {
+            assertEquals(2, listing.count(), "no temporary file left behind");
+        }
+    }
+
+    private Path write(String name, String text, Charset charset) throws IOException {
+        return Files.write(directory.resolve(name), text.getBytes(charset));
+    }
+
+    private static void assertDecodes(String text, MappedTextFile mapped, Random random) {
+        assertEquals(text.length(), mapped.length());
+        assertEquals(text, mapped.toString());
+        for (int i = 0; i < 2000; i++) {
+            int start = random.nextInt(text.length() + 1);
+            int end = start + random.nextInt(Math.min(3000, text.length() - start) + 1);
+            assertEquals(text.substring(start, end), mapped.subSequence(start, end).toString());
+            if (start < text.length()) assertEquals(text.charAt(start), mapped.charAt(start));
+        }
+        assertThrows(IndexOutOfBoundsException.class, () -> mapped.charAt(text.length()));
+    }
+
+    private static int codePointStart(CharSequence text, int index) {
+        return index > 0 && index < text.length() && Character.isLowSurrogate(text.charAt(index)) ? index - 1 : index;
+    }
+
+    // Random text whose surrogate pairs are never split
+    private static String randomText(Random random, int length, String alphabet) {
+        int[] codePoints = alphabet.codePoints().toArray();
+        StringBuilder sb = new StringBuilder(length + 1);
+        while (sb.length() < length) {
+            sb.appendCodePoint(codePoints[random.nextInt(codePoints.length)]);
+        }
+        return sb.toString();
+    }
+}
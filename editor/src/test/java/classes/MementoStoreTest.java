@@ -0,0 +1,65 @@
+package classes;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Mementos beyond the hot limit are compressed whatever holds their text, and come back
+ * exactly as they were saved.
+ */
+class MementoStoreTest {
+    @Test
+    void coldSnapshotMementosAreCompressed() {
+        Random random = new Random(20);
+        try (Editor editor = new Editor()) {
+            editor.getMementoStore().setHotLimit(2);
+            // Longer than one compression chunk, with pairs that a chunk boundary may split
+            editor.setContent(randomText(random, 100000, "ab \n😀"));
+            List<EditorMemento> saved = new ArrayList<>();
+            List<String> contents = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                editor.insert("edit " + i, random.nextInt(editor.getLength() + 1));
+                saved.add(editor.save()); // Outside the lock: backed by the published snapshot
+                contents.add(editor.getContent());
+            }
+            MementoStore store = editor.getMementoStore();
+            assertEquals(4, store.getCompressions());
+            assertTrue(store.getCompressionRatio() < 1);
+            for (int i = 0; i < 6; i++) {
+                assertEquals(i < 4, saved.get(i).isCold(), "memento " + i);
+            }
+
+            // Reading a cold memento inflates it and cools the oldest hot one
+            assertEquals(contents.get(0), saved.get(0).getContent());
+            assertFalse(saved.get(0).isCold());
+            assertTrue(saved.get(4).isCold());
+            editor.restore(saved.get(1));
+            assertEquals(contents.get(1), editor.getContent());
+        }
+    }
+
+    @Test
+    void stringMementosAreCompressedToo() {
+        EditorMemento memento = new EditorMemento("plain text ".repeat(1000));
+        MementoStore store = new MementoStore(0);
+        store.add(memento);
+        assertTrue(memento.isCold());
+        assertEquals("plain text ".repeat(1000), memento.getContent());
+    }
+
+    private static String randomText(Random random, int length, String alphabet) {
+        StringBuilder sb = new StringBuilder(length);
+        int[] codePoints = alphabet.codePoints().toArray();
+        while (sb.length() < length) {
+            sb.appendCodePoint(codePoints[random.nextInt(codePoints.length)]);
+        }
+        return sb.toString();
+    }
+}
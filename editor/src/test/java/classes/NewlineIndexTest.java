@@ -0,0 +1,97 @@
+package classes;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Newline counts and positions against a plain scan, for growing text, frozen copies and
+ * mapped files.
+ */
+class NewlineIndexTest {
+    @Test
+    void followsAppendedText() {
+        Random random = new Random(6);
+        StringBuilder text = new StringBuilder();
+        NewlineIndex index = new NewlineIndex(text);
+        for (int round = 0; round < 40; round++) {
+            text.append(randomLines(random, random.nextInt(3000)));
+            index.extend(text.length());
+            assertMatchesScan(text.toString(), index, random);
+        }
+    }
+
+    @Test
+    void frozenCopyIgnoresLaterAppends() {
+        Random random = new Random(7);
+        StringBuilder text = new StringBuilder(randomLines(random, 10000));
+        NewlineIndex index = new NewlineIndex(text);
+        String frozenText = text.toString();
+        NewlineIndex frozen = index.freeze(frozenText);
+        text.append(randomLines(random, 5000));
+        index.extend(text.length());
+        assertMatchesScan(frozenText, frozen, random);
+        assertMatchesScan(text.toString(), index, random);
+    }
+
+    @Test
+    void countsMappedFilesWithoutDecodingThem(@TempDir Path directory) throws IOException {
+        Random random = new Random(8);
+        String content = randomLines(random, 20000).replace('b', 'é');
+        Path file = directory.resolve("lines.txt");
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        try (MappedTextFile mapped = MappedTextFile.open(file, StandardCharsets.UTF_8)) {
+            assertMatchesScan(content, new NewlineIndex(mapped), random);
+        }
+    }
+
+    private static void assertMatchesScan(String text, NewlineIndex index, Random random) {
+        for (int i = 0; i < 200; i++) {
+            int start = random.nextInt(text.length() + 1);
+            int end = start + random.nextInt(text.length() - start + 1);
+            assertEquals(scan(text, start, end), index.count(start, end), "newlines in [" + start + ", " + end + ")");
+
+            int available = scan(text, start, text.length());
+            if (available > 0) {
+                int k = 1 + random.nextInt(available);
+                assertEquals(nth(text, start, k), index.find(start, k), "newline " + k + " after " + start);
+            }
+        }
+    }
+
+    private static int scan(String text, int start, int end) {
+        int count = 0;
+        for (int i = start; i < end; i++) {
+            if (text.charAt(i) == '\n') count++;
+        }
+        return count;
+    }
+
+    private static int nth(String text, int start, int k) {
+        int position = start - 1;
+        for (int i = 0; i < k; i++) {
+            position = text.indexOf('\n', position + 1);
+        }
+        return position;
+    }
+
+    // Lines of random length, some of them far longer than an index block
+    private static String randomLines(Random random, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        while (sb.length() < length) {
+            int line = random.nextInt(20) == 0 ? random.nextInt(3000) : random.nextInt(40);
+            for (int i = 0; i < line; i++) {
+                sb.append((char) ('a' + random.nextInt(3)));
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,117 @@
+package classes;
+
+import interfaces.TextView;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * The piece table against a StringBuilder doing the same edits, including text beyond
+ * Latin-1 (kept in the add buffer's wide chunks) and the line index on top of it.
+ */
+class PieceTableBufferTest {
+    private static final String ALPHABET = "ab \né€😀";
+
+    @Test
+    void randomEditsMatchAStringBuilder() {
+        Random random = new Random(4);
+        String original = randomText(random, 5000);
+        PieceTableBuffer buffer = new PieceTableBuffer(original);
+        StringBuilder expected = new StringBuilder(original);
+        for (int i = 0; i < 5000; i++) {
+            int position = random.nextInt(expected.length() + 1);
+            if (random.nextInt(3) > 0 || expected.length() == position) {
+                String text = randomText(random, 1 + random.nextInt(random.nextInt(50) == 0 ? 3000 : 8));
+                buffer.insert(position, text);
+                expected.insert(position, text);
+            } else {
+                int length = 1 + random.nextInt(Math.min(expected.length() - position, 20));
+                buffer.delete(position, length);
+                expected.delete(position, position + length);
+            }
+            if (i % 250 == 0) {
+                assertSameText(expected.toString(), buffer);
+            }
+        }
+        assertSameText(expected.toString(), buffer);
+    }
+
+    @Test
+    void snapshotsKeepTheirContentAndCanBeRestored() {
+        Random random = new Random(5);
+        PieceTableBuffer buffer = new PieceTableBuffer("start\n");
+        List<TextView> snapshots = new ArrayList<>();
+        List<String> contents = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            buffer.insert(random.nextInt(buffer.length() + 1), randomText(random, 1 + random.nextInt(6)));
+            if (random.nextBoolean() && buffer.length() > 1) {
+                buffer.delete(random.nextInt(buffer.length() - 1), 1);
+            }
+            snapshots.add(buffer.snapshot());
+            contents.add(buffer.toString());
+        }
+        for (int i = 0; i < snapshots.size(); i++) {
+            assertSameText(contents.get(i), snapshots.get(i));
+        }
+        buffer.restore(snapshots.get(50));
+        assertSameText(contents.get(50), buffer);
+        buffer.insert(0, "after restore ");
+        assertSameText(contents.get(51), snapshots.get(51));
+        assertEquals("after restore " + contents.get(50), buffer.toString());
+    }
+
+    @Test
+    void setTextReplacesEverything() {
+        PieceTableBuffer buffer = new PieceTableBuffer("old text");
+        buffer.insert(3, "er");
+        buffer.setText("new\ntext");
+        assertSameText("new\ntext", buffer);
+    }
+
+    @Test
+    void rejectsPositionsOutsideTheDocument() {
+        PieceTableBuffer buffer = new PieceTableBuffer("abc");
+        assertThrows(IndexOutOfBoundsException.class, () -> buffer.insert(4, "x"));
+        assertThrows(IndexOutOfBoundsException.class, () -> buffer.delete(2, 2));
+        assertThrows(IndexOutOfBoundsException.class, () -> buffer.insert(-1, "x"));
+    }
+
+    // Content, ranges and every line lookup of a view against the expected text
+    static void assertSameText(String expected, TextView view) {
+        assertEquals(expected.length(), view.length());
+        assertEquals(expected, view.toString());
+        for (int start = 0; start < expected.length(); start += 997) {
+            int end = Math.min(expected.length(), start + 1500);
+            assertEquals(expected.substring(start, end), view.getText(start, end));
+            assertEquals(expected.charAt(start), view.charAt(start));
+        }
+
+        int line = 0;
+        int lineStart = 0;
+        for (int offset = 0; offset <= expected.length(); offset++) {
+            if (offset == lineStart) {
+                assertEquals(lineStart, view.getLineStartOffset(line));
+            }
+            assertEquals(line, view.getLineOfOffset(offset), "line of offset " + offset);
+            if (offset < expected.length() && expected.charAt(offset) == '\n') {
+                line++;
+                lineStart = offset + 1;
+            }
+        }
+        assertEquals(line + 1, view.getLineCount());
+    }
+
+    private static String randomText(Random random, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        while (sb.length() < length) {
+            int i = random.nextInt(ALPHABET.length() - 1);
+            sb.append(ALPHABET, i, Character.isHighSurrogate(ALPHABET.charAt(i)) ? i + 2 : i + 1);
+        }
+        return sb.toString();
+    }
+}
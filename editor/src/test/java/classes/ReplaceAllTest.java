@@ -0,0 +1,150 @@
+package classes;
+
+import interfaces.Observer;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Replace-all must agree with String's own replace, be one undo step, and reach observers as
+ * one edit event per match.
+ */
+class ReplaceAllTest {
+    @Test
+    void literalReplaceMatchesString() {
+        Random random = new Random(11);
+        // Large enough to be searched in parallel chunks
+        String text = randomText(random, 3 * TextSearch.CHUNK_SIZE, "ab \n");
+        try (Editor editor = new Editor()) {
+            editor.setContent(text);
+            int count = editor.replaceAll(TextSearch.literal("aab"), "X");
+            assertEquals(text.replace("aab", "X"), editor.getContent());
+            assertEquals(count, (text.length() - text.replace("aab", "").length()) / 3);
+            editor.undo();
+            assertEquals(text, editor.getContent());
+            editor.redo();
+            assertEquals(text.replace("aab", "X"), editor.getContent());
+        }
+    }
+
+    @Test
+    void overlappingOccurrencesAreReplacedLeftToRight() {
+        try (Editor editor = new Editor()) {
+            editor.setContent("aaaaa");
+            assertEquals(2, editor.replaceAll(TextSearch.literal("aa"), "b"));
+            assertEquals("bba", editor.getContent());
+            assertEquals(List.of(new SearchMatch(0, 1), new SearchMatch(1, 2)), editor.findAll(TextSearch.literal("b")));
+        }
+    }
+
+    @Test
+    void regexReplaceExpandsGroups() {
+        Random random = new Random(12);
+        String text = randomText(random, 20000, "ab1 \n");
+        Pattern pattern = Pattern.compile("(a+)(\\d)?b");
+        try (Editor editor = new Editor()) {
+            editor.setContent(text);
+            editor.replaceAll(TextSearch.regex(pattern), "<$2$1>");
+            assertEquals(pattern.matcher(text).replaceAll("<$2$1>"), editor.getContent());
+            editor.undo();
+            assertEquals(text, editor.getContent());
+        }
+    }
+
+    @Test
+    void oneUndoStepAndEditEventsForTheMatches() {
+        try (Editor editor = new Editor()) {
+            editor.setCoalesceWindow(0);
+            String gap = "-".repeat(10000);
+            editor.setContent("one two one" + gap + "one");
+            editor.insert("!", 0);
+            List<DocumentChange> changes = new ArrayList<>();
+            editor.attach(new Observer() {
+                @Override
+                public void update(String content) {
+                }
+
+                @Override
+                public void update(DocumentChange change) {
+                    changes.add(change);
+                }
+            });
+            assertEquals(3, editor.replaceAll(TextSearch.literal("one"), "1"));
+            assertEquals("!1 two 1" + gap + "1", editor.getContent());
+
+            // Applied from the last match to the first: distant matches arrive as edits of their
+            // own, nearby ones combined into one edit
+            assertEquals(2, changes.size());
+            assertEquals(new DocumentChangeSummary(12 + gap.length(), "one", "1"), summary(changes.get(0)));
+            assertEquals(new DocumentChangeSummary(1, "one two one", "1 two 1"), summary(changes.get(1)));
+
+            editor.undo();
+            assertEquals("!one two one" + gap + "one", editor.getContent());
+            editor.undo();
+            assertEquals("one two one" + gap + "one", editor.getContent());
+        }
+    }
+
+    @Test
+    void noMatchRecordsNothing() {
+        try (Editor editor = new Editor()) {
+            editor.setContent("text");
+            assertEquals(0, editor.replaceAll(TextSearch.literal("missing"), "x"));
+            assertFalse(editor.canUndo());
+            assertEquals(0, editor.replaceAll(TextSearch.regex("z+"), "x"));
+            assertFalse(editor.canUndo());
+        }
+    }
+
+    @Test
+    void readOnlyDocumentsAreNotChanged() {
+        try (Editor editor = new Editor()) {
+            editor.setContent("a a a");
+            editor.setState(new ReadOnlyState());
+            assertThrows(IllegalStateException.class, () -> editor.replaceAll(TextSearch.literal("a"), "b"));
+            assertEquals("a a a", editor.getContent());
+            assertFalse(editor.canUndo());
+        }
+    }
+
+    @Test
+    void findAllMatchesAPlainScan() {
+        Random random = new Random(13);
+        String text = randomText(random, 3 * TextSearch.CHUNK_SIZE + 17, "abc");
+        try (Editor editor = new Editor()) {
+            editor.setContent(text);
+            List<SearchMatch> expected = new ArrayList<>();
+            for (int i = text.indexOf("abca"); i >= 0; i = text.indexOf("abca", i + 4)) {
+                expected.add(new SearchMatch(i, i + 4));
+            }
+            assertEquals(expected, editor.findAll(TextSearch.literal("abca")));
+            Matcher matcher = Pattern.compile("c+a").matcher(text);
+            assertEquals(matcher.find(5000) ? new SearchMatch(matcher.start(), matcher.end()) : null,
+                    editor.find(TextSearch.regex("c+a"), 5000));
+        }
+    }
+
+    private static DocumentChangeSummary summary(DocumentChange change) {
+        assertFalse(change.isReset());
+        return new DocumentChangeSummary(change.getOffset(), change.getRemovedText(), change.getInsertedText());
+    }
+
+    private record DocumentChangeSummary(int offset, String removed, String inserted) {
+    }
+
+    private static String randomText(Random random, int length, String alphabet) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = alphabet.charAt(random.nextInt(alphabet.length()));
+        }
+        return new String(chars);
+    }
+}
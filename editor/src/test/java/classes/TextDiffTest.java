@@ -0,0 +1,114 @@
+package classes;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Diffs must turn the old text into the new one with sorted, non-overlapping, merged edits,
+ * and on small inputs (compared char by char) with a shortest edit script.
+ */
+class TextDiffTest {
+    @Test
+    void smallDiffsAreShortestEditScripts() {
+        Random random = new Random(10);
+        for (int i = 0; i < 3000; i++) {
+            String before = randomText(random, random.nextInt(40), "ab");
+            String after = random.nextBoolean() ? randomText(random, random.nextInt(40), "ab") : mutate(random, before, "ab");
+            List<TextEdit> edits = TextDiff.diff(before, after);
+            assertEquals(after, apply(before, edits));
+            assertEquals(before.length() + after.length() - 2 * longestCommonSubsequence(before, after), cost(edits));
+        }
+    }
+
+    @Test
+    void largeDocumentsDiffLineByLine() {
+        Random random = new Random(11);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            sb.append("line ").append(i % 97).append(" of the document ").append(i).append('\n');
+        }
+        String before = sb.toString();
+        for (int change = 0; change < 30; change++) {
+            int position = random.nextInt(sb.length() - 5);
+            sb.replace(position, position + 5, change % 2 == 0 ? "XYZ" : "\nnew line\n");
+        }
+        String after = sb.toString();
+        List<TextEdit> edits = TextDiff.diff(before, after);
+        assertEquals(after, apply(before, edits));
+        assertTrue(edits.size() <= 60, "edits: " + edits.size());
+        assertTrue(cost(edits) < 1000, "cost: " + cost(edits));
+    }
+
+    @Test
+    void equalTextsHaveNoEdits() {
+        assertEquals(List.of(), TextDiff.diff("same\ntext", "same\ntext"));
+        assertEquals(List.of(), TextDiff.diff("", ""));
+        assertEquals("TextEdit[0, -0, +\"new\"]", TextDiff.diff("", "new").get(0).toString());
+    }
+
+    @Test
+    void formatsChangedLinesAsHunks() {
+        String before = "a\nb\nc\n";
+        String after = "a\nB\nc\nd\n";
+        // The appended "\nd" starts on line 3, so that line is shown as replaced
+        assertEquals("@@ -2,1 +2,1 @@\n-b\n+B\n@@ -3,1 +3,2 @@\n-c\n+c\n+d\n", TextDiff.format(before, TextDiff.diff(before, after)));
+    }
+
+    // Applies edits in order, checking they are sorted, do not overlap and are merged
+    private static String apply(String text, List<TextEdit> edits) {
+        StringBuilder sb = new StringBuilder();
+        int copied = 0;
+        for (TextEdit edit : edits) {
+            assertTrue(edit.getPosition() > copied || (copied == 0 && sb.length() == 0), "unsorted or unmerged: " + edits);
+            sb.append(text, copied, edit.getPosition()).append(edit.getInsertText());
+            copied = edit.getPosition() + edit.getDeleteLength();
+        }
+        return sb.append(text, copied, text.length()).toString();
+    }
+
+    private static int cost(List<TextEdit> edits) {
+        int cost = 0;
+        for (TextEdit edit : edits) {
+            cost += edit.getDeleteLength() + edit.getInsertText().length();
+        }
+        return cost;
+    }
+
+    private static int longestCommonSubsequence(String a, String b) {
+        int[][] lengths = new int[a.length() + 1][b.length() + 1];
+        for (int i = 1; i <= a.length(); i++) {
+            for (int j = 1; j <= b.length(); j++) {
+                lengths[i][j] = a.charAt(i - 1) == b.charAt(j - 1)
+                        ? lengths[i - 1][j - 1] + 1
+                        : Math.max(lengths[i - 1][j], lengths[i][j - 1]);
+            }
+        }
+        return lengths[a.length()][b.length()];
+    }
+
+    private static String mutate(Random random, String text, String alphabet) {
+        StringBuilder sb = new StringBuilder(text);
+        for (int k = random.nextInt(4); k >= 0; k--) {
+            int position = random.nextInt(sb.length() + 1);
+            if (random.nextBoolean() && position < sb.length()) {
+                sb.delete(position, Math.min(sb.length(), position + 1 + random.nextInt(4)));
+            } else {
+                sb.insert(position, randomText(random, 1 + random.nextInt(4), alphabet));
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String randomText(Random random, int length, String alphabet) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return sb.toString();
+    }
+}
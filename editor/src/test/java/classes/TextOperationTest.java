@@ -0,0 +1,116 @@
+package classes;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compose, transform and invert against the documents the operations actually produce.
+ */
+class TextOperationTest {
+    private static final String ALPHABET = "abc\n";
+
+    @Test
+    void appliesRetainInsertDelete() {
+        TextOperation operation = new TextOperation().retain(6).delete("world").insert("there").retain(1);
+        assertEquals("hello there!", apply("hello world!", operation));
+        assertEquals(12, operation.getBaseLength());
+        assertEquals(12, operation.getTargetLength());
+    }
+
+    @Test
+    void composeHasTheEffectOfBothOperations() {
+        Random random = new Random(1);
+        for (int i = 0; i < 2000; i++) {
+            String document = randomText(random, random.nextInt(30));
+            TextOperation first = randomOperation(random, document);
+            String middle = apply(document, first);
+            TextOperation second = randomOperation(random, middle);
+            assertEquals(apply(middle, second), apply(document, first.compose(second)));
+        }
+    }
+
+    @Test
+    void transformedOperationsConverge() {
+        Random random = new Random(2);
+        for (int i = 0; i < 2000; i++) {
+            String document = randomText(random, random.nextInt(30));
+            TextOperation a = randomOperation(random, document);
+            TextOperation b = randomOperation(random, document);
+            TextOperation[] pair = TextOperation.transform(a, b);
+            assertEquals(apply(apply(document, a), pair[1]), apply(apply(document, b), pair[0]));
+        }
+    }
+
+    @Test
+    void concurrentInsertsAtOnePositionPutTheFirstOperationFirst() {
+        TextOperation a = new TextOperation().retain(2).insert("A").retain(1);
+        TextOperation b = new TextOperation().retain(2).insert("B").retain(1);
+        TextOperation[] pair = TextOperation.transform(a, b);
+        assertEquals("abABc", apply(apply("abc", a), pair[1]));
+        assertEquals("abABc", apply(apply("abc", b), pair[0]));
+    }
+
+    @Test
+    void invertUndoesTheOperation() {
+        Random random = new Random(3);
+        for (int i = 0; i < 500; i++) {
+            String document = randomText(random, random.nextInt(30));
+            TextOperation operation = randomOperation(random, document);
+            assertEquals(document, apply(apply(document, operation), operation.invert()));
+        }
+    }
+
+    @Test
+    void rejectsOperationsOnDifferentDocuments() {
+        TextOperation shorter = new TextOperation().retain(3);
+        TextOperation longer = new TextOperation().retain(4);
+        assertThrows(IllegalArgumentException.class, () -> shorter.compose(longer));
+        assertThrows(IllegalArgumentException.class, () -> TextOperation.transform(shorter, longer));
+        assertThrows(IllegalArgumentException.class, () -> longer.retainRest(3));
+        assertTrue(shorter.isNoop());
+    }
+
+    private static String apply(String document, TextOperation operation) {
+        PieceTableBuffer buffer = new PieceTableBuffer();
+        buffer.setText(document);
+        operation.applyTo(buffer);
+        return buffer.toString();
+    }
+
+    // Deletes keep their text, so every generated operation can be inverted
+    private static TextOperation randomOperation(Random random, String document) {
+        int length = document.length();
+        TextOperation operation = new TextOperation();
+        int position = 0;
+        while (position < length) {
+            int n = 1 + random.nextInt(Math.min(4, length - position));
+            switch (random.nextInt(3)) {
+                case 0:
+                    operation.retain(n);
+                    position += n;
+                    break;
+                case 1:
+                    operation.delete(document.substring(position, position + n));
+                    position += n;
+                    break;
+                default:
+                    operation.insert(randomText(random, n));
+            }
+        }
+        if (random.nextBoolean()) operation.insert(randomText(random, 1 + random.nextInt(3)));
+        return operation;
+    }
+
+    private static String randomText(Random random, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        return sb.toString();
+    }
+}
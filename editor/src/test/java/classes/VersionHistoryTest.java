@@ -0,0 +1,157 @@
+package classes;
+
+import interfaces.Observer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Every kept version can be jumped back to in one step, the jump is undoable and tells
+ * observers once, and versions older than the limit are refused.
+ */
+class VersionHistoryTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void restoresEveryKeptVersion() {
+        Random random = new Random(19);
+        try (Editor editor = new Editor()) {
+            editor.setContent("start\n");
+            editor.enableVersionHistory(16, 10000);
+            Map<Long, String> contents = new HashMap<>();
+            contents.put(editor.getVersion(), editor.getContent());
+            for (int i = 0; i < 1000; i++) {
+                randomEdit(editor, random);
+                contents.put(editor.getVersion(), editor.getContent());
+            }
+            List<Long> versions = new ArrayList<>(contents.keySet());
+            for (int i = 0; i < 100; i++) {
+                long target = versions.get(random.nextInt(versions.size()));
+                editor.restoreVersion(target);
+                assertEquals(contents.get(target), editor.getContent(), "version " + target);
+                contents.put(editor.getVersion(), editor.getContent());
+            }
+        }
+    }
+
+    @Test
+    void jumpIsOneEventAndOneUndoStep() {
+        try (Editor editor = new Editor()) {
+            editor.setCoalesceWindow(0);
+            editor.enableVersionHistory(8, 1000);
+            long empty = editor.getVersion();
+            for (int i = 0; i < 100; i++) {
+                editor.insert("line " + i + "\n", editor.getLength());
+            }
+            String latest = editor.getContent();
+            List<DocumentChange> changes = new ArrayList<>();
+            editor.attach(new Observer() {
+                @Override
+                public void update(String content) {
+                }
+
+                @Override
+                public void update(DocumentChange change) {
+                    changes.add(change);
+                }
+            });
+
+            editor.restoreVersion(empty);
+            editor.flushNotifications();
+            assertEquals("", editor.getContent());
+            assertEquals(1, changes.size());
+
+            editor.undo();
+            assertEquals(latest, editor.getContent());
+            editor.redo();
+            assertEquals("", editor.getContent());
+        }
+    }
+
+    @Test
+    void diffTurnsOneVersionIntoTheOther() {
+        Random random = new Random(20);
+        try (Editor editor = new Editor()) {
+            editor.setContent("alpha\nbeta\ngamma\n");
+            editor.enableVersionHistory(4, 1000);
+            long from = editor.getVersion();
+            String before = editor.getContent();
+            for (int i = 0; i < 50; i++) {
+                randomEdit(editor, random);
+            }
+            long to = editor.getVersion();
+            List<TextEdit> edits = editor.diffVersions(from, to);
+            StringBuilder text = new StringBuilder(before);
+            for (int i = edits.size() - 1; i >= 0; i--) { // Positions refer to the old text
+                TextEdit edit = edits.get(i);
+                text.replace(edit.getPosition(), edit.getPosition() + edit.getDeleteLength(), edit.getInsertText());
+            }
+            assertEquals(editor.getContent(), text.toString());
+            assertEquals("", editor.compareVersions(to, to));
+        }
+    }
+
+    @Test
+    void refusesVersionsBeyondTheLimit() {
+        try (Editor editor = new Editor()) {
+            assertThrows(IllegalStateException.class, () -> editor.restoreVersion(0));
+            editor.setCoalesceWindow(0);
+            editor.enableVersionHistory(4, 20);
+            long first = editor.getVersion();
+            for (int i = 0; i < 100; i++) {
+                editor.insert("x", 0);
+            }
+            // At most one checkpoint interval more than the limit is kept
+            long oldest = editor.getOldestVersion();
+            assertTrue(editor.getVersion() - oldest >= 20 && editor.getVersion() - oldest <= 24);
+            assertThrows(IllegalArgumentException.class, () -> editor.restoreVersion(first));
+            assertThrows(IllegalArgumentException.class, () -> editor.restoreVersion(editor.getVersion() + 1));
+            editor.restoreVersion(oldest);
+            assertEquals("x".repeat((int) (oldest - first)), editor.getContent());
+        }
+    }
+
+    @Test
+    void savesARestoredVersionOfAClosedFile() throws IOException {
+        Path a = directory.resolve("a.txt");
+        Path b = directory.resolve("b.txt");
+        String text = "first file é\n".repeat(2000);
+        Files.writeString(a, text, StandardCharsets.UTF_8);
+        Files.writeString(b, "second file\n", StandardCharsets.UTF_8);
+        try (Editor editor = new Editor()) {
+            editor.enableVersionHistory(4, 1000);
+            editor.openFile(a);
+            editor.insert("edited ", 100);
+            long edited = editor.getVersion();
+            editor.openFile(b); // Closes a's channel, the versions still refer to its mapping
+            editor.restoreVersion(edited);
+            Path out = directory.resolve("out.txt");
+            editor.saveFile(out);
+            assertEquals(text.substring(0, 100) + "edited " + text.substring(100), Files.readString(out, StandardCharsets.UTF_8));
+        }
+    }
+
+    private static void randomEdit(Editor editor, Random random) {
+        int length = editor.getLength();
+        if (length == 0 || random.nextInt(3) > 0) {
+            editor.insert(random.nextBoolean() ? "word " : "\n", random.nextInt(length + 1));
+        } else {
+            int position = random.nextInt(length);
+            editor.delete(1 + random.nextInt(Math.min(10, length - position)), position);
+        }
+    }
+}
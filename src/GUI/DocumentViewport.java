@@ -0,0 +1,311 @@
+package GUI;
+
+import classes.DocumentChange;
+import classes.DocumentSnapshot;
+import classes.Editor;
+import interfaces.Observer;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.FocusAdapter;
+import java.awt.event.FocusEvent;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+
+/**
+ * ===========================================================================================
+ * GUI CLASS: GUI.DocumentViewport
+ * ===========================================================================================
+ * A text view for documents too large for JTextArea. Nothing is laid out up front: the
+ * component's height is the line count times the line height, and painting reads only the
+ * lines (and, on long lines, only the columns) inside the visible rectangle from the editor's
+ * latest snapshot through its line index. Memory use is the same for any document size.
+ * Lines are not wrapped and the font is monospaced, so a column is a fixed number of pixels;
+ * the width grows to the longest line painted so far.
+ * Supports a caret, typing, Backspace/Delete, arrow/Home/End/Page keys and clicking. All
+ * edits must come from the Event Dispatch Thread, like every other edit in this GUI.
+ */
+class DocumentViewport extends JComponent implements Scrollable, Observer {
+    private static final long serialVersionUID = 1L;
+    private static final int MARGIN = 4;
+
+    private final transient Editor editor;
+    private int caret;        // Caret offset in the document
+    private int widestLine;   // Longest line (in chars) painted so far, for the preferred width
+    private int lineHeight;
+    private int charWidth;
+    private int ascent;
+
+    DocumentViewport(Editor editor) {
+        this.editor = editor;
+        setFont(new Font("Monospaced", Font.PLAIN, 14));
+        setBackground(Color.WHITE);
+        setOpaque(true);
+        setFocusable(true);
+        setCursor(Cursor.getPredefinedCursor(Cursor.TEXT_CURSOR));
+
+        addMouseListener(new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                requestFocusInWindow();
+                DocumentSnapshot text = editor.snapshot();
+                int line = Math.max(0, Math.min(e.getY() / lineHeight, text.getLineCount() - 1));
+                int column = Math.max(0, Math.round((e.getX() - MARGIN) / (float) charWidth));
+                moveCaret(offsetOf(text, line, column));
+            }
+        });
+        addFocusListener(new FocusAdapter() {
+            @Override
+            public void focusGained(FocusEvent e) {
+                repaint(); // Show the caret
+            }
+
+            @Override
+            public void focusLost(FocusEvent e) {
+                repaint();
+            }
+        });
+        addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent e) {
+                handleKey(e);
+            }
+
+            @Override
+            public void keyTyped(KeyEvent e) {
+                char c = e.getKeyChar();
+                if (c == '\n' || c == '\t' || (c >= ' ' && c != KeyEvent.VK_DELETE && !e.isControlDown())) {
+                    edit(() -> editor.insert(String.valueOf(c), caret));
+                }
+            }
+        });
+    }
+
+    /**
+     * Start following the editor, with the caret at the start of the document. The viewport is
+     * a synchronous observer, so it is only attached while it is the view being shown.
+     */
+    void attach() {
+        caret = 0;
+        editor.attachSynchronous(this);
+        documentChanged();
+    }
+
+    void detach() {
+        editor.detach(this);
+    }
+
+    /**
+     * Caret offset in the document.
+     */
+    int getCaret() {
+        return caret;
+    }
+
+    @Override
+    public void setFont(Font font) {
+        super.setFont(font);
+        FontMetrics metrics = getFontMetrics(font);
+        lineHeight = metrics.getHeight();
+        charWidth = Math.max(1, metrics.charWidth('m'));
+        ascent = metrics.getAscent();
+        revalidate();
+    }
+
+    // ===========================================================================================
+    // OBSERVER PATTERN: Follow every editor change
+    // ===========================================================================================
+
+    @Override
+    public void update(String content) {
+        caret = Math.min(caret, content.length());
+        documentChanged();
+    }
+
+    /**
+     * Shift the caret like a text component would: edits before it move it, and text inserted
+     * right at it ends up before it.
+     */
+    @Override
+    public void update(DocumentChange change) {
+        if (change.isReset()) {
+            caret = Math.min(caret, change.getDocument().length());
+        } else {
+            int offset = change.getOffset();
+            int removedEnd = offset + change.getRemovedLength();
+            int inserted = change.getInsertedText().length();
+            if (caret >= removedEnd) {
+                caret += inserted - change.getRemovedLength();
+            } else if (caret > offset) {
+                caret = offset + inserted;
+            }
+        }
+        documentChanged();
+    }
+
+    private void documentChanged() {
+        revalidate(); // The line count, and with it the height, may have changed
+        repaint();
+    }
+
+    // ===========================================================================================
+    // PAINTING: Only the visible lines and columns
+    // ===========================================================================================
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        Rectangle clip = g.getClipBounds();
+        g.setColor(getBackground());
+        g.fillRect(clip.x, clip.y, clip.width, clip.height);
+        g.setFont(getFont());
+        g.setColor(getForeground());
+
+        DocumentSnapshot text = editor.snapshot();
+        int lineCount = text.getLineCount();
+        int firstLine = Math.max(0, clip.y / lineHeight);
+        int lastLine = Math.min(lineCount - 1, (clip.y + clip.height) / lineHeight);
+        int firstColumn = Math.max(0, (clip.x - MARGIN) / charWidth);
+        int columns = clip.width / charWidth + 2;
+        int widest = widestLine;
+
+        for (int line = firstLine; line <= lastLine; line++) {
+            int start = text.getLineStartOffset(line);
+            int end = lineEnd(text, line);
+            widest = Math.max(widest, end - start);
+            int from = start + firstColumn;
+            if (from >= end) continue;
+            String visible = text.getText(from, Math.min(end, from + columns)).replace('\t', ' ');
+            g.drawString(visible, MARGIN + firstColumn * charWidth, line * lineHeight + ascent);
+        }
+
+        if (hasFocus()) {
+            int line = text.getLineOfOffset(Math.min(caret, text.length()));
+            int column = caret - text.getLineStartOffset(line);
+            g.fillRect(MARGIN + column * charWidth, line * lineHeight, 1, lineHeight);
+        }
+
+        if (widest > widestLine) {
+            widestLine = widest;
+            SwingUtilities.invokeLater(this::revalidate); // Not while painting
+        }
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        long height = (long) editor.snapshot().getLineCount() * lineHeight;
+        long width = 2L * MARGIN + (long) (widestLine + 1) * charWidth;
+        return new Dimension((int) Math.min(width, Integer.MAX_VALUE), (int) Math.min(height, Integer.MAX_VALUE));
+    }
+
+    // ===========================================================================================
+    // SCROLLABLE: Scroll by lines and columns
+    // ===========================================================================================
+
+    @Override
+    public Dimension getPreferredScrollableViewportSize() {
+        return new Dimension(80 * charWidth, 25 * lineHeight);
+    }
+
+    @Override
+    public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return orientation == SwingConstants.VERTICAL ? lineHeight : charWidth;
+    }
+
+    @Override
+    public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return orientation == SwingConstants.VERTICAL
+                ? Math.max(lineHeight, visibleRect.height - lineHeight)
+                : Math.max(charWidth, visibleRect.width - charWidth);
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportWidth() {
+        return getParent() instanceof JViewport && getParent().getWidth() > getPreferredSize().width;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportHeight() {
+        return getParent() instanceof JViewport && getParent().getHeight() > getPreferredSize().height;
+    }
+
+    // ===========================================================================================
+    // EDITING: Caret movement and keys
+    // ===========================================================================================
+
+    private void handleKey(KeyEvent e) {
+        DocumentSnapshot text = editor.snapshot();
+        int line = text.getLineOfOffset(caret);
+        int column = caret - text.getLineStartOffset(line);
+        int page = Math.max(1, getVisibleRect().height / lineHeight - 1);
+        switch (e.getKeyCode()) {
+            case KeyEvent.VK_LEFT:
+                moveCaret(Math.max(0, caret - 1));
+                break;
+            case KeyEvent.VK_RIGHT:
+                moveCaret(Math.min(text.length(), caret + 1));
+                break;
+            case KeyEvent.VK_UP:
+                moveCaret(offsetOf(text, Math.max(0, line - 1), column));
+                break;
+            case KeyEvent.VK_DOWN:
+                moveCaret(offsetOf(text, Math.min(text.getLineCount() - 1, line + 1), column));
+                break;
+            case KeyEvent.VK_PAGE_UP:
+                moveCaret(offsetOf(text, Math.max(0, line - page), column));
+                break;
+            case KeyEvent.VK_PAGE_DOWN:
+                moveCaret(offsetOf(text, Math.min(text.getLineCount() - 1, line + page), column));
+                break;
+            case KeyEvent.VK_HOME:
+                moveCaret(e.isControlDown() ? 0 : text.getLineStartOffset(line));
+                break;
+            case KeyEvent.VK_END:
+                moveCaret(e.isControlDown() ? text.length() : lineEnd(text, line));
+                break;
+            case KeyEvent.VK_BACK_SPACE:
+                if (caret > 0) edit(() -> editor.delete(1, caret - 1));
+                break;
+            case KeyEvent.VK_DELETE:
+                if (caret < text.length()) edit(() -> editor.delete(1, caret));
+                break;
+            default:
+                return;
+        }
+        e.consume();
+    }
+
+    private void edit(Runnable change) {
+        try {
+            change.run();
+        } catch (IllegalStateException e) {
+            Toolkit.getDefaultToolkit().beep(); // Read-only mode
+        }
+        scrollToCaret();
+    }
+
+    private void moveCaret(int offset) {
+        caret = offset;
+        repaint();
+        scrollToCaret();
+    }
+
+    private void scrollToCaret() {
+        DocumentSnapshot text = editor.snapshot();
+        int line = text.getLineOfOffset(Math.min(caret, text.length()));
+        int column = caret - text.getLineStartOffset(line);
+        scrollRectToVisible(new Rectangle(MARGIN + column * charWidth - charWidth, line * lineHeight,
+                3 * charWidth, lineHeight));
+    }
+
+    private static int offsetOf(DocumentSnapshot text, int line, int column) {
+        int start = text.getLineStartOffset(line);
+        return start + Math.min(column, lineEnd(text, line) - start);
+    }
+
+    // Offset just past the last character of the line, not counting its '\n'
+    private static int lineEnd(DocumentSnapshot text, int line) {
+        return line + 1 < text.getLineCount() ? text.getLineStartOffset(line + 1) - 1 : text.length();
+    }
+}
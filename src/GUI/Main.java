@@ -1,10 +1,19 @@
 package GUI;
 
 import classes.*;
+import interfaces.Observer;
 
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.AbstractDocument;
+import javax.swing.text.BadLocationException;
 import java.awt.*;
-import java.awt.event.*;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
 
 /**
  * ===========================================================================================
@@ -14,20 +23,55 @@ import java.awt.event.*;
  * Demonstrates all four design patterns in action.
  */
 class TextEditorGUI {
+    // Files at least this large are shown in the virtualized viewport instead of the text area
+    private static final long LARGE_FILE_BYTES = 8L << 20;
+
     private Editor editor;
     private JTextArea textArea;
+    private DocumentViewport viewport;
+    private JScrollPane scrollPane;
+    private boolean virtualized; // The viewport, not the text area, is showing the document
+    private boolean opening;     // A file is being loaded; the view is chosen once that succeeds
     private JLabel wordCountLabel;
     private JLabel charCountLabel;
     private JLabel stateLabel;
     private JButton stateButton;
     private JButton undoButton;
     private JButton redoButton;
+    private boolean updatingEditor;   // The text area is pushing a change into the editor
+    private boolean updatingTextArea; // The editor is pushing a change into the text area
+    private DocumentSnapshot baseline; // The document as last opened, for the Changes listing
 
     public TextEditorGUI() {
         editor = new Editor();
+        baseline = editor.snapshot();
+        recordTrace();
         createAndShowGUI();
     }
 
+    /**
+     * With -Dtexteditor.trace=file, record the session as a timed edit script for
+     * benchmarks.TraceLoadTest. The file is completed when the application exits.
+     */
+    private void recordTrace() {
+        String file = System.getProperty("texteditor.trace");
+        if (file == null) return;
+        try {
+            TraceRecorder recorder = new TraceRecorder(Path.of(file), editor.getLength());
+            editor.setTraceRecorder(recorder);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    recorder.close();
+                } catch (IOException e) {
+                    System.err.println("Trace " + file + " is incomplete: " + e.getMessage());
+                }
+            }, "trace-recorder"));
+        } catch (IOException | RuntimeException ex) {
+            JOptionPane.showMessageDialog(null, "Could not record a trace to " + file + ": " + ex.getMessage(),
+                    "Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
     private void createAndShowGUI() {
         // Create main frame
         JFrame frame = new JFrame("Text classes.Editor - Design Patterns Demo");
@@ -44,11 +88,16 @@ class TextEditorGUI {
         redoButton = new JButton("Redo");
         stateButton = new JButton("Switch to Read-Only");
 
+        JButton openButton = new JButton("Open File...");
+        JButton changesButton = new JButton("Changes");
         JButton insertButton = new JButton("Insert 'Hello' at cursor");
         JButton deleteButton = new JButton("Delete 5 chars at cursor");
 
+        topPanel.add(openButton);
+        topPanel.add(new JSeparator(SwingConstants.VERTICAL));
         topPanel.add(undoButton);
         topPanel.add(redoButton);
+        topPanel.add(changesButton);
         topPanel.add(new JSeparator(SwingConstants.VERTICAL));
         topPanel.add(stateButton);
         topPanel.add(new JSeparator(SwingConstants.VERTICAL));
@@ -65,7 +114,11 @@ class TextEditorGUI {
         textArea.setLineWrap(true);
         textArea.setWrapStyleWord(true);
 
-        JScrollPane scrollPane = new JScrollPane(textArea);
+        // Large files are shown in a viewport that only ever reads the visible lines; it is
+        // attached to the editor only while it is shown
+        viewport = new DocumentViewport(editor);
+
+        scrollPane = new JScrollPane(textArea);
         scrollPane.setBorder(BorderFactory.createTitledBorder("classes.Editor Content"));
         frame.add(scrollPane, BorderLayout.CENTER);
 
@@ -100,24 +153,61 @@ class TextEditorGUI {
         editor.attach(wordCountView);
         editor.attach(charCountView);
 
+        // Observers run on a background worker so counting never slows down typing
+        editor.setAsyncNotifications(true);
+
         // ===========================================================================================
         // EVENT LISTENERS
         // ===========================================================================================
 
+        // Keep the text area a mirror of the editor: every change the editor makes that did not
+        // come from the text area (undo, redo, the buttons) is applied to it as a targeted edit,
+        // so the caret and scroll position survive and nothing copies the whole document
+        editor.attachSynchronous(new Observer() {
+            @Override
+            public void update(String content) {
+                if (!updatingEditor && !virtualized && !opening) {
+                    syncTextAreaWithEditor();
+                }
+            }
+
+            @Override
+            public void update(DocumentChange change) {
+                if (!updatingEditor && !virtualized && !opening) {
+                    applyToTextArea(change);
+                }
+            }
+        });
+
+        // Open button - memory-maps the file; large ones go to the virtualized viewport
+        openButton.addActionListener(e -> {
+            JFileChooser chooser = new JFileChooser();
+            if (chooser.showOpenDialog(frame) == JFileChooser.APPROVE_OPTION) {
+                openFile(frame, chooser.getSelectedFile().toPath());
+            }
+        });
+
         // Undo button - COMMAND PATTERN
         undoButton.addActionListener(e -> {
             editor.undo();
-            syncTextAreaWithEditor();
             updateButtonStates();
         });
 
         // Redo button - COMMAND PATTERN
         redoButton.addActionListener(e -> {
             editor.redo();
-            syncTextAreaWithEditor();
             updateButtonStates();
         });
 
+        // Changes button - what changed since the document was opened, found by TextDiff
+        changesButton.addActionListener(e -> {
+            String listing = TextDiff.format(baseline, TextDiff.diff(baseline, editor.snapshot()));
+            JTextArea changes = new JTextArea(listing.isEmpty() ? "No changes" : listing, 20, 70);
+            changes.setFont(new Font("Monospaced", Font.PLAIN, 12));
+            changes.setEditable(false);
+            JOptionPane.showMessageDialog(frame, new JScrollPane(changes), "Changes", JOptionPane.PLAIN_MESSAGE);
+        });
+
         // State toggle button - STATE PATTERN
         stateButton.addActionListener(e -> {
             if (editor.getState() instanceof InsertState) {
@@ -138,9 +228,7 @@ class TextEditorGUI {
         // Insert button - Demonstrates COMMAND pattern with specific operation
         insertButton.addActionListener(e -> {
             try {
-                int position = textArea.getCaretPosition();
-                editor.insert("Hello", position);
-                syncTextAreaWithEditor();
+                editor.insert("Hello", caretPosition());
                 updateButtonStates();
             } catch (IllegalStateException ex) {
                 JOptionPane.showMessageDialog(frame, ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
@@ -150,57 +238,54 @@ class TextEditorGUI {
         // Delete button - Demonstrates COMMAND pattern with specific operation
         deleteButton.addActionListener(e -> {
             try {
-                int position = textArea.getCaretPosition();
-                editor.delete(5, position);
-                syncTextAreaWithEditor();
+                editor.delete(5, caretPosition());
                 updateButtonStates();
             } catch (IllegalStateException ex) {
                 JOptionPane.showMessageDialog(frame, ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
             }
         });
 
-        // Text area document listener - Sync changes to editor via COMMAND pattern
-        textArea.addKeyListener(new KeyAdapter() {
-            private String previousContent = "";
-
+        // Text area document listener - Sync changes to editor via COMMAND pattern.
+        // The events carry the edited range, so a keystroke costs the same in any document size
+        textArea.getDocument().addDocumentListener(new DocumentListener() {
             @Override
-            public void keyReleased(KeyEvent e) {
-                String currentContent = textArea.getText();
-
-                // Only process if content actually changed
-                if (!currentContent.equals(previousContent)) {
-                    try {
-                        // Determine what changed and create appropriate command
-                        if (currentContent.length() > previousContent.length()) {
-                            // Text was inserted
-                            int position = findChangePosition(previousContent, currentContent);
-                            String insertedText = currentContent.substring(position, position + (currentContent.length() - previousContent.length()));
-                            editor.insert(insertedText, position);
-                        } else if (currentContent.length() < previousContent.length()) {
-                            // Text was deleted
-                            int position = findChangePosition(currentContent, previousContent);
-                            int length = previousContent.length() - currentContent.length();
-                            editor.delete(length, position);
-                        }
-
-                        previousContent = currentContent;
-                        updateButtonStates();
-                    } catch (IllegalStateException ex) {
-                        // If in read-only mode, this shouldn't happen due to textArea.setEditable(false)
-                        // but we handle it just in case
-                        JOptionPane.showMessageDialog(frame, ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-                        syncTextAreaWithEditor();
-                    }
+            public void insertUpdate(DocumentEvent e) {
+                if (updatingTextArea) return;
+                try {
+                    String insertedText = e.getDocument().getText(e.getOffset(), e.getLength());
+                    updateEditor(() -> editor.insert(insertedText, e.getOffset()));
+                } catch (BadLocationException ex) {
+                    throw new IllegalStateException("Inserted range is outside the text area", ex);
                 }
             }
 
-            private int findChangePosition(String shorter, String longer) {
-                for (int i = 0; i < shorter.length(); i++) {
-                    if (shorter.charAt(i) != longer.charAt(i)) {
-                        return i;
-                    }
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                if (updatingTextArea) return;
+                updateEditor(() -> editor.delete(e.getLength(), e.getOffset()));
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                // Attribute changes only; a plain text area has none
+            }
+
+            private void updateEditor(Runnable edit) {
+                updatingEditor = true;
+                try {
+                    edit.run();
+                    updateButtonStates();
+                } catch (IllegalStateException ex) {
+                    // If in read-only mode, this shouldn't happen due to textArea.setEditable(false)
+                    // but we handle it just in case. The text area cannot be changed inside its own
+                    // listener, so it is reset to the editor's content afterwards
+                    SwingUtilities.invokeLater(() -> {
+                        JOptionPane.showMessageDialog(frame, ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                        syncTextAreaWithEditor();
+                    });
+                } finally {
+                    updatingEditor = false;
                 }
-                return shorter.length();
             }
         });
 
@@ -213,20 +298,84 @@ class TextEditorGUI {
     }
 
     /**
-     * Sync the text area display with the editor's actual content.
-     * Used after undo/redo operations.
+     * Open a file into the editor. The text area does not follow the editor while the file
+     * loads, so a large file never passes through it; the view is switched only once the
+     * file has opened, and a failed open leaves the current view as it was.
      */
-    private void syncTextAreaWithEditor() {
-        String editorContent = editor.getContent();
-        if (!textArea.getText().equals(editorContent)) {
-            int caretPosition = textArea.getCaretPosition();
-            textArea.setText(editorContent);
-            // Try to maintain caret position
+    private void openFile(JFrame frame, Path file) {
+        try {
+            boolean large = Files.size(file) >= LARGE_FILE_BYTES;
+            opening = true;
             try {
-                textArea.setCaretPosition(Math.min(caretPosition, editorContent.length()));
-            } catch (IllegalArgumentException e) {
-                textArea.setCaretPosition(editorContent.length());
+                editor.openFile(file);
+            } finally {
+                opening = false;
+            }
+            baseline = editor.snapshot();
+            showDocument(large);
+            updateButtonStates();
+        } catch (IOException | UncheckedIOException ex) {
+            JOptionPane.showMessageDialog(frame, "Could not open " + file + ": " + ex.getMessage(),
+                    "Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    // Show the viewport or the text area; only the one shown follows the editor
+    private void showDocument(boolean large) {
+        if (large) {
+            virtualized = true;
+            viewport.attach();
+            scrollPane.setViewportView(viewport);
+            viewport.requestFocusInWindow();
+        } else {
+            viewport.detach();
+            virtualized = false;
+            syncTextAreaWithEditor();
+            scrollPane.setViewportView(textArea);
+        }
+    }
+
+    private int caretPosition() {
+        return virtualized ? viewport.getCaret() : textArea.getCaretPosition();
+    }
+
+    /**
+     * Apply one editor change to the text area. Must run on the Event Dispatch Thread, which is
+     * where this GUI makes all of its edits.
+     */
+    private void applyToTextArea(DocumentChange change) {
+        if (change.isReset()) {
+            syncTextAreaWithEditor();
+            return;
+        }
+        updatingTextArea = true;
+        try {
+            ((AbstractDocument) textArea.getDocument()).replace(
+                    change.getOffset(), change.getRemovedLength(), change.getInsertedText(), null);
+        } catch (BadLocationException e) {
+            throw new IllegalStateException("Text area is out of sync with the editor", e);
+        } finally {
+            updatingTextArea = false;
+        }
+    }
+
+    /**
+     * Bring the text area up to date after whole-document changes. Only the ranges that differ
+     * (see TextDiff) are replaced, so the caret and the scroll position stay where they were.
+     */
+    private void syncTextAreaWithEditor() {
+        List<TextEdit> edits = TextDiff.diff(textArea.getText(), editor.getContent());
+        AbstractDocument document = (AbstractDocument) textArea.getDocument();
+        updatingTextArea = true;
+        try {
+            for (int i = edits.size() - 1; i >= 0; i--) { // Back to front, so positions stay valid
+                TextEdit edit = edits.get(i);
+                document.replace(edit.getPosition(), edit.getDeleteLength(), edit.getInsertText(), null);
             }
+        } catch (BadLocationException e) {
+            throw new IllegalStateException("Text area is out of sync with the editor", e);
+        } finally {
+            updatingTextArea = false;
         }
     }
 
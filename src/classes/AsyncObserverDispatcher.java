@@ -0,0 +1,80 @@
+package classes;
+
+import interfaces.Observer;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * ===========================================================================================
+ * OBSERVER PATTERN: AsyncObserverDispatcher
+ * ===========================================================================================
+ * Delivers change events on a single background worker instead of the editing thread.
+ * Queuing an event is O(1); the worker combines every event queued since its last run into
+ * one change at the latest version, so a burst of edits costs observers a single update.
+ * Edits far apart fold into a reset (see DocumentChange.then) rather than one edit copying
+ * everything between them.
+ * Events must carry immutable document snapshots, since the editor keeps changing meanwhile.
+ */
+class AsyncObserverDispatcher {
+    private final List<Observer> observers;
+    private final Supplier<EditorMetrics> metrics;
+    private final Queue<DocumentChange> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "editor-observers");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    AsyncObserverDispatcher(List<Observer> observers, Supplier<EditorMetrics> metrics) {
+        this.observers = observers;
+        this.metrics = metrics;
+    }
+
+    void dispatch(DocumentChange change) {
+        queue.add(change);
+        if (scheduled.compareAndSet(false, true)) {
+            worker.execute(this::drain);
+        }
+    }
+
+    /**
+     * Block until every event queued so far has been delivered.
+     */
+    void flush() {
+        try {
+            worker.submit(() -> { }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Observer dispatch failed", e.getCause());
+        }
+    }
+
+    void shutdown() {
+        worker.shutdown();
+    }
+
+    private void drain() {
+        // Cleared before polling: an event queued from now on schedules another run
+        scheduled.set(false);
+        DocumentChange combined = null;
+        DocumentChange next;
+        while ((next = queue.poll()) != null) {
+            combined = combined == null ? next : combined.then(next);
+        }
+        if (combined != null) {
+            EditorMetrics timing = metrics.get();
+            for (Observer observer : observers) {
+                EditorMetrics.notify(timing, observer, combined);
+            }
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package classes;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * ===========================================================================================
+ * BATCH: BatchReplay
+ * ===========================================================================================
+ * Headless replay of an edit script (see EditStep) through an Editor at full speed. The
+ * script is streamed line by line, so it may be far larger than memory. The whole replay
+ * runs under one acquisition of the editor's writer lock with notifications suspended: no
+ * snapshot is published and no observer runs per edit; at the end observers get one reset
+ * event. Every step still goes through the command history, so undo/redo in the script
+ * behave as they would interactively. Each step's latency is recorded per step kind.
+ * <p>
+ * Usage: {@code java -cp text-editor.jar classes.BatchReplay <script> [--in file] [--out file]}
+ */
+public final class BatchReplay {
+    private static final int DEFAULT_HISTORY_ENTRIES = 100_000;
+
+    private final Editor editor;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final Map<EditStep.Kind, LatencyHistogram> latencyByKind = new EnumMap<>(EditStep.Kind.class);
+    private long elapsedNanos;
+
+    public BatchReplay(Editor editor) {
+        this.editor = editor;
+        for (EditStep.Kind kind : EditStep.Kind.values()) {
+            latencyByKind.put(kind, new LatencyHistogram());
+        }
+    }
+
+    public void run(Path script) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(script, StandardCharsets.UTF_8)) {
+            run(reader);
+        }
+    }
+
+    /**
+     * Apply every step of the script. A malformed line stops the replay with an
+     * IllegalArgumentException naming the line; the steps before it stay applied.
+     */
+    public void run(BufferedReader script) throws IOException {
+        long start = System.nanoTime();
+        try {
+            editor.runLocked(() -> {
+                editor.suspendNotifications();
+                try {
+                    replay(script);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } finally {
+                    editor.resumeNotifications();
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            elapsedNanos += System.nanoTime() - start;
+        }
+    }
+
+    private void replay(BufferedReader script) throws IOException {
+        long lineNumber = 0;
+        String line;
+        while ((line = script.readLine()) != null) {
+            lineNumber++;
+            EditStep step;
+            try {
+                step = EditStep.parse(line);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Line " + lineNumber + ": " + e.getMessage(), e);
+            }
+            if (step == null) continue;
+
+            long before = System.nanoTime();
+            step.applyTo(editor);
+            long nanos = System.nanoTime() - before;
+            latency.record(nanos);
+            latencyByKind.get(step.getKind()).record(nanos);
+        }
+    }
+
+    public long getStepCount() {
+        return latency.getCount();
+    }
+
+    /**
+     * Wall-clock time of all runs, including reading and parsing the script.
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Time spent applying each step, over all kinds.
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    public LatencyHistogram getLatency(EditStep.Kind kind) {
+        return latencyByKind.get(kind);
+    }
+
+    /**
+     * Throughput and latency percentiles, one row per step kind that occurred.
+     */
+    public String report() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%d steps in %.1f ms: %.0f steps/s; document %d chars, version %d%n",
+                getStepCount(), elapsedNanos / 1e6, getStepCount() / Math.max(elapsedNanos / 1e9, 1e-9),
+                editor.getLength(), editor.getVersion()));
+        sb.append(String.format("%-8s %12s %10s %10s %10s %10s %10s%n",
+                "step", "count", "mean us", "p50 us", "p99 us", "p99.9 us", "max us"));
+        for (EditStep.Kind kind : EditStep.Kind.values()) {
+            appendRow(sb, kind.name().toLowerCase(), latencyByKind.get(kind));
+        }
+        appendRow(sb, "all", latency);
+        return sb.toString();
+    }
+
+    private static void appendRow(StringBuilder sb, String name, LatencyHistogram histogram) {
+        if (histogram.getCount() == 0) return;
+        sb.append(String.format("%-8s %12d %10.2f %10.2f %10.2f %10.2f %10.2f%n", name, histogram.getCount(),
+                histogram.getMean() / 1e3, histogram.getPercentile(50) / 1e3, histogram.getPercentile(99) / 1e3,
+                histogram.getPercentile(99.9) / 1e3, histogram.getMax() / 1e3));
+    }
+
+    // ===========================================================================================
+    // COMMAND LINE
+    // ===========================================================================================
+
+    public static void main(String[] args) throws IOException {
+        Path script = null;
+        Path input = null;
+        Path output = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--in") && i + 1 < args.length) {
+                input = Paths.get(args[++i]);
+            } else if (args[i].equals("--out") && i + 1 < args.length) {
+                output = Paths.get(args[++i]);
+            } else if (script == null && !args[i].startsWith("--")) {
+                script = Paths.get(args[i]);
+            } else {
+                script = null;
+                break;
+            }
+        }
+        if (script == null) {
+            System.err.println("Usage: java -cp text-editor.jar classes.BatchReplay <script> [--in file] [--out file]");
+            System.exit(2);
+            return;
+        }
+
+        try (Editor editor = new Editor()) {
+            editor.setCoalesceWindow(0); // Every script step is its own undo step
+            editor.setHistoryPolicy(new HistoryPolicy(DEFAULT_HISTORY_ENTRIES, 0));
+            if (input != null) {
+                editor.openFile(input);
+            }
+            BatchReplay replay = new BatchReplay(editor);
+            replay.run(script);
+            if (output != null) {
+                editor.saveFile(output);
+            }
+            System.out.print(replay.report());
+        }
+    }
+}
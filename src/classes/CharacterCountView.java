@@ -8,9 +8,11 @@ import interfaces.Observer;
  * OBSERVER PATTERN: Concrete Observer - CharacterCountView
  * ===========================================================================================
  * Automatically updates to display the current character count whenever the editor content changes.
+ * Keeps a running total that each change adjusts by its inserted and removed lengths.
  */
 public class CharacterCountView implements Observer {
     private JLabel label;
+    private int charCount;
 
     public CharacterCountView(JLabel label) {
         this.label = label;
@@ -18,7 +20,31 @@ public class CharacterCountView implements Observer {
 
     @Override
     public void update(String content) {
-        int charCount = (content != null) ? content.length() : 0;
-        label.setText("Character Count: " + charCount);
+        charCount = (content != null) ? content.length() : 0;
+        showCount();
+    }
+
+    @Override
+    public void update(DocumentChange change) {
+        if (change.isReset()) {
+            charCount = change.getDocument().length();
+        } else {
+            charCount += change.getInsertedText().length() - change.getRemovedLength();
+        }
+        showCount();
+    }
+
+    // Observers may run on the async dispatcher thread; Swing labels are only touched on the EDT
+    private void showCount() {
+        String text = "Character Count: " + charCount;
+        if (SwingUtilities.isEventDispatchThread()) {
+            label.setText(text);
+        } else {
+            SwingUtilities.invokeLater(() -> label.setText(text));
+        }
+    }
+
+    public int getCharCount() {
+        return charCount;
     }
 }
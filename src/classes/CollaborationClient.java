@@ -0,0 +1,199 @@
+package classes;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * ===========================================================================================
+ * COLLABORATION: CollaborationClient
+ * ===========================================================================================
+ * Connects one Editor to a CollaborationServer. Local changes are turned into text operations
+ * and sent to the server one at a time: while an operation waits for its acknowledgement,
+ * further local changes are composed into a single buffered operation. Operations from other
+ * clients are transformed over the unacknowledged local ones and applied to the editor.
+ * The edits of one step (a replace-all, a multi-cursor edit, a compound edit) are sent as a
+ * single operation built from their ranges.
+ * All work is proportional to the size of the edits, never to the size of the document.
+ */
+public final class CollaborationClient {
+    static final byte ACK = 1;
+    static final byte OPERATION = 2;
+
+    private final Editor editor;
+    private final Consumer<byte[]> outbox;
+    private int revision;             // Server operations seen so far
+    private TextOperation outstanding; // Sent and not yet acknowledged, or null
+    private TextOperation buffered;    // Local changes made while waiting, or null
+    private final List<DocumentChange> held = new ArrayList<>(); // Changes of the current step, see localChange
+
+    /**
+     * Join at the given server revision; the editor's content becomes the shared content.
+     */
+    CollaborationClient(Editor editor, Consumer<byte[]> outbox, int revision, String content) {
+        this.editor = editor;
+        this.outbox = outbox;
+        this.revision = revision;
+        editor.startCollaboration(this, content);
+    }
+
+    public Editor getEditor() {
+        return editor;
+    }
+
+    public int getRevision() {
+        return revision;
+    }
+
+    /**
+     * Whether every local change has been acknowledged by the server.
+     */
+    public boolean isSynchronized() {
+        return outstanding == null;
+    }
+
+    /**
+     * Handle a message from the server: the acknowledgement of the outstanding operation, or
+     * an operation made by another client.
+     */
+    public void receive(byte[] message) {
+        editor.runLocked(() -> {
+            try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(message))) {
+                byte type = in.readByte();
+                if (type == ACK) {
+                    acknowledged();
+                } else if (type == OPERATION) {
+                    remote(TextOperation.read(in));
+                } else {
+                    throw new IOException("Unknown message type " + type);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Malformed collaboration message", e);
+            }
+        });
+    }
+
+    /**
+     * Stop reporting local changes; the editor keeps its content.
+     */
+    void close() {
+        editor.stopCollaboration();
+    }
+
+    /**
+     * Called by the editor, under its writer lock, for every change it makes itself.
+     * Changes made while the editor holds notifications are kept until flushChanges(); their
+     * events then carry their own document snapshots.
+     */
+    void localChange(DocumentChange change, int lengthAfter, boolean holding) {
+        if (holding) {
+            held.add(change);
+        } else {
+            submit(toOperation(change, lengthAfter));
+        }
+    }
+
+    /**
+     * Called by the editor when it releases notifications: send the held changes as one
+     * operation. Edits applied from last to first (replace-all, applyEdits, restoring a
+     * version) all refer to the document before the first one, so the operation is built
+     * from their ranges directly; any other sequence is composed change by change.
+     */
+    void flushChanges() {
+        if (held.isEmpty()) return;
+        TextOperation operation = descending(held);
+        if (operation == null) {
+            for (DocumentChange change : held) {
+                TextOperation next = toOperation(change, change.getDocument().length());
+                operation = operation == null ? next : operation.compose(next);
+            }
+        }
+        held.clear();
+        submit(operation);
+    }
+
+    private static TextOperation toOperation(DocumentChange change, int lengthAfter) {
+        TextOperation operation = new TextOperation();
+        if (change.isReset()) {
+            operation.delete(change.getRemovedLength()).insert(change.getInsertedText());
+        } else {
+            operation.retain(change.getOffset()).delete(change.getRemovedLength()).insert(change.getInsertedText());
+        }
+        return operation.retainRest(lengthAfter - operation.getTargetLength() + operation.getBaseLength());
+    }
+
+    // One operation for edits that each end at or before the start of the previous one, or null
+    private static TextOperation descending(List<DocumentChange> changes) {
+        for (int i = 0; i < changes.size(); i++) {
+            DocumentChange change = changes.get(i);
+            if (change.isReset()) return null;
+            if (i > 0 && change.getOffset() + change.getRemovedLength() > changes.get(i - 1).getOffset()) return null;
+        }
+        DocumentChange first = changes.get(0);
+        int lengthBefore = first.getDocument().length() - first.getInsertedText().length() + first.getRemovedLength();
+        TextOperation operation = new TextOperation();
+        int copied = 0;
+        for (int i = changes.size() - 1; i >= 0; i--) {
+            DocumentChange change = changes.get(i);
+            operation.retain(change.getOffset() - copied).delete(change.getRemovedLength()).insert(change.getInsertedText());
+            copied = change.getOffset() + change.getRemovedLength();
+        }
+        return operation.retainRest(lengthBefore);
+    }
+
+    private void submit(TextOperation operation) {
+        if (outstanding == null) {
+            send(operation);
+        } else {
+            buffered = buffered == null ? operation : buffered.compose(operation);
+        }
+    }
+
+    private void acknowledged() {
+        if (outstanding == null) {
+            throw new IllegalStateException("Acknowledgement without an outstanding operation");
+        }
+        revision++;
+        outstanding = null;
+        if (buffered != null) {
+            TextOperation next = buffered;
+            buffered = null;
+            send(next);
+        }
+    }
+
+    private void remote(TextOperation operation) {
+        editor.checkNoCompoundEdit("apply a remote edit"); // Fail before any state changes
+        revision++;
+        // Bring the server's operation past the local changes it has not seen yet
+        if (outstanding != null) {
+            TextOperation[] pair = TextOperation.transform(outstanding, operation);
+            outstanding = pair[0];
+            operation = pair[1];
+        }
+        if (buffered != null) {
+            TextOperation[] pair = TextOperation.transform(buffered, operation);
+            buffered = pair[0];
+            operation = pair[1];
+        }
+        editor.applyRemote(operation);
+    }
+
+    private void send(TextOperation operation) {
+        outstanding = operation;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(revision);
+            operation.write(out, false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        outbox.accept(bytes.toByteArray());
+    }
+}
@@ -0,0 +1,97 @@
+package classes;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * ===========================================================================================
+ * COLLABORATION: CollaborationServer
+ * ===========================================================================================
+ * Central ordering point for a shared document. Each client sends operations tagged with
+ * the server revision they were made on; the server transforms an operation over everything
+ * it accepted since that revision, applies it to its own copy of the document, acknowledges
+ * it to the sender and forwards it to every other client. Since all clients see the accepted
+ * operations in the same order, they converge on the same text.
+ * The server keeps every accepted operation, so a client may lag any number of revisions.
+ */
+public final class CollaborationServer {
+    private final PieceTableBuffer document = new PieceTableBuffer();
+    private final List<TextOperation> operations = new ArrayList<>(); // operations[r] turns revision r into r + 1
+    private final Map<Integer, Consumer<byte[]>> clients = new LinkedHashMap<>();
+    private int nextClientId;
+
+    public CollaborationServer(String content) {
+        document.setText(content);
+    }
+
+    /**
+     * Register a client that receives messages through outbox; returns its id.
+     */
+    public synchronized int connect(Consumer<byte[]> outbox) {
+        clients.put(nextClientId, outbox);
+        return nextClientId++;
+    }
+
+    public synchronized void disconnect(int clientId) {
+        clients.remove(clientId);
+    }
+
+    /**
+     * Accept an operation from a client. Costs one transform per operation the client had not
+     * seen yet; nothing here depends on the size of the document.
+     */
+    public synchronized void receive(int clientId, byte[] message) {
+        int revision;
+        TextOperation operation;
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(message))) {
+            revision = in.readInt();
+            operation = TextOperation.read(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Malformed collaboration message", e);
+        }
+        if (revision < 0 || revision > operations.size()) {
+            throw new IllegalStateException("Client " + clientId + " sent an operation for unknown revision " + revision);
+        }
+        for (TextOperation concurrent : operations.subList(revision, operations.size())) {
+            operation = TextOperation.transform(operation, concurrent)[0];
+        }
+        operation.applyTo(document);
+        operations.add(operation);
+
+        byte[] forward = encode(operation);
+        for (Map.Entry<Integer, Consumer<byte[]>> client : clients.entrySet()) {
+            client.getValue().accept(client.getKey() == clientId ? new byte[]{CollaborationClient.ACK} : forward);
+        }
+    }
+
+    /**
+     * Number of operations accepted so far.
+     */
+    public synchronized int getRevision() {
+        return operations.size();
+    }
+
+    public synchronized String getContent() {
+        return document.toString();
+    }
+
+    private static byte[] encode(TextOperation operation) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(CollaborationClient.OPERATION);
+            operation.write(out, false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+}
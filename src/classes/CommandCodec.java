@@ -0,0 +1,120 @@
+package classes;
+
+import interfaces.Command;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * ===========================================================================================
+ * COMMAND PATTERN: CommandCodec
+ * ===========================================================================================
+ * Writes executed commands as compact binary records (their undo deltas only) and reads
+ * them back bound to an editor. Used to move history entries out of the heap.
+ */
+final class CommandCodec {
+    private static final byte INSERT = 1;
+    private static final byte DELETE = 2;
+    private static final byte COMPOSITE = 3;
+    private static final byte REPLACE_ALL = 4;
+    private static final byte OPERATION = 5;
+
+    private CommandCodec() {
+    }
+
+    /**
+     * Whether the command can be written; unknown command types stay in memory only.
+     */
+    static boolean canEncode(Command command) {
+        if (command instanceof CompositeCommand) {
+            for (Command child : ((CompositeCommand) command).getCommands()) {
+                if (!canEncode(child)) return false;
+            }
+            return true;
+        }
+        return command instanceof InsertCommand || command instanceof DeleteCommand
+                || command instanceof ReplaceAllCommand || command instanceof OperationCommand;
+    }
+
+    static void write(DataOutput out, Command command) throws IOException {
+        if (command instanceof InsertCommand) {
+            InsertCommand insert = (InsertCommand) command;
+            out.writeByte(INSERT);
+            out.writeInt(insert.getAppliedPosition());
+            writeText(out, insert.getText());
+        } else if (command instanceof DeleteCommand) {
+            DeleteCommand delete = (DeleteCommand) command;
+            out.writeByte(DELETE);
+            out.writeInt(delete.getAppliedPosition());
+            writeText(out, delete.getRemovedText());
+        } else if (command instanceof CompositeCommand) {
+            CompositeCommand composite = (CompositeCommand) command;
+            out.writeByte(COMPOSITE);
+            out.writeInt(composite.getCommands().size());
+            for (Command child : composite.getCommands()) {
+                write(out, child);
+            }
+        } else if (command instanceof ReplaceAllCommand) {
+            ReplaceAllCommand replace = (ReplaceAllCommand) command;
+            out.writeByte(REPLACE_ALL);
+            out.writeInt(replace.getStarts().length);
+            for (int i = 0; i < replace.getStarts().length; i++) {
+                out.writeInt(replace.getStarts()[i]);
+                writeText(out, replace.getRemoved()[i]);
+                writeText(out, replace.getInserted()[i]);
+            }
+        } else if (command instanceof OperationCommand) {
+            out.writeByte(OPERATION);
+            command.toOperation().write(out, true); // Starts with the component count
+        } else {
+            throw new IllegalArgumentException("Cannot encode " + command.getClass().getName());
+        }
+    }
+
+    static Command read(DataInput in, Editor editor) throws IOException {
+        byte type = in.readByte();
+        int header = in.readInt(); // Position, or the child / match / component count
+        switch (type) {
+            case INSERT:
+                return InsertCommand.executed(editor, readText(in), header);
+            case DELETE:
+                return DeleteCommand.executed(editor, readText(in), header);
+            case COMPOSITE:
+                CompositeCommand composite = new CompositeCommand(editor);
+                for (int i = 0; i < header; i++) {
+                    composite.add(read(in, editor));
+                }
+                return composite;
+            case REPLACE_ALL:
+                int[] starts = new int[header];
+                String[] removed = new String[header];
+                String[] inserted = new String[header];
+                for (int i = 0; i < header; i++) {
+                    starts[i] = in.readInt();
+                    removed[i] = readText(in);
+                    inserted[i] = readText(in);
+                }
+                return ReplaceAllCommand.executed(editor, starts, removed, inserted);
+            case OPERATION:
+                return new OperationCommand(editor, TextOperation.read(in, header));
+            default:
+                throw new IOException("Unknown command record type " + type);
+        }
+    }
+
+    // Text is written as a char count plus raw UTF-16 units: writeUTF is limited to 64 KB
+    private static void writeText(DataOutput out, String text) throws IOException {
+        out.writeInt(text.length());
+        out.writeChars(text);
+    }
+
+    private static String readText(DataInput in) throws IOException {
+        int length = in.readInt();
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = in.readChar();
+        }
+        return new String(chars);
+    }
+}
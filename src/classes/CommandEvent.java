@@ -0,0 +1,41 @@
+package classes;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * ===========================================================================================
+ * METRICS: CommandEvent
+ * ===========================================================================================
+ * Java Flight Recorder event for one executed, undone or redone command. Emitted while
+ * editor metrics are enabled; a recording still has to enable "texteditor.Command" for the
+ * events to be written.
+ */
+@Name("texteditor.Command")
+@Label("Editor Command")
+@Category("Text Editor")
+@Description("A command executed, undone or redone by an Editor")
+final class CommandEvent extends Event {
+    @Label("Command")
+    String command;
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Document Length")
+    @Description("Characters in the document after the command")
+    int documentLength;
+
+    @Label("Undo Depth")
+    int undoDepth;
+
+    @Label("History Size")
+    @DataAmount
+    long historyBytes;
+
+    transient long startNanos; // Not recorded: used for the in-process histograms
+}
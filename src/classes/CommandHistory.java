@@ -2,22 +2,69 @@ package classes;
 
 import interfaces.Command;
 
-import java.util.Stack;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * ===========================================================================================
  * COMMAND PATTERN: CommandHistory (Caretaker)
  * ===========================================================================================
  * Purpose: Manage the history of executed commands to support undo/redo operations.
- * Acts as the Caretaker in the Memento pattern by managing command objects that contain mementos.
+ * Acts as the Caretaker by managing command objects that carry their own undo deltas.
+ * A HistoryPolicy bounds the number of undo entries and the bytes they retain; the oldest undo
+ * entries are spilled to disk (or discarded) when the budget is exceeded. Redo entries are
+ * never evicted: they only exist after an undo and the next new edit clears them.
+ * Single-character edits that follow each other within the coalescing window are merged
+ * into the previous command, so a run of typing is undone in one step.
+ * Edits from other collaborators are rebased over lazily: they are only queued on the entries
+ * that undo and redo would take next, and an entry is transformed over its queue when it is
+ * actually undone or redone, which passes the queue on to the entry behind it.
  */
 class CommandHistory {
-    private Stack<Command> undoStack;
-    private Stack<Command> redoStack;
+    private static final int MAX_QUEUED_REMOTE = 64; // Queued remote edits composed into one beyond this
 
-    public CommandHistory() {
-        undoStack = new Stack<>();
-        redoStack = new Stack<>();
+    private final Editor editor;
+    private final Deque<Command> undoStack; // Most recent command first
+    private final Deque<Command> redoStack; // Most recently undone command first
+    private HistoryPolicy policy;
+    private HistorySpill spill;
+    private long retainedBytes;
+    private long redoBytes; // Part of retainedBytes held by the redo stack
+    private long coalesceWindowNanos = 1_000_000_000L;
+    private Command lastExecuted; // Merge candidate, reset by anything other than a new edit
+    private long lastExecutedAt;
+    // Remote edits applied since an entry was last applied (undo entries) or undone (redo
+    // entries), oldest first; each is expressed against the document it was applied to
+    private final Map<Command, List<TextOperation>> remoteSince = new IdentityHashMap<>();
+
+    public CommandHistory(Editor editor) {
+        this.editor = editor;
+        this.undoStack = new ArrayDeque<>();
+        this.redoStack = new ArrayDeque<>();
+        this.policy = HistoryPolicy.unbounded();
+    }
+
+    /**
+     * Replace the history policy. Entries already spilled under the previous policy are dropped.
+     */
+    public void setPolicy(HistoryPolicy policy) {
+        if (spill != null) {
+            spill.close();
+            spill = null;
+        }
+        this.policy = policy;
+        if (policy.getSpillFile() != null) {
+            spill = new HistorySpill(policy.getSpillFile(), editor);
+        }
+        enforcePolicy();
+    }
+
+    public HistoryPolicy getPolicy() {
+        return policy;
     }
 
     /**
@@ -26,37 +73,268 @@ class CommandHistory {
      */
     public void executeCommand(Command command) {
         command.execute();
-        undoStack.push(command);
-        redoStack.clear(); // New command clears redo history
+        long now = System.nanoTime();
+        Command top = undoStack.peek();
+        if (top != null && top == lastExecuted && now - lastExecutedAt <= coalesceWindowNanos) {
+            long sizeBefore = top.getPayloadSize();
+            if (top.mergeWith(command)) {
+                retainedBytes += top.getPayloadSize() - sizeBefore;
+                lastExecutedAt = now;
+                enforcePolicy();
+                return;
+            }
+        }
+        record(command);
+        lastExecuted = command;
+        lastExecutedAt = now;
+    }
+
+    /**
+     * Add a command that has already been executed (e.g. a finished compound edit).
+     */
+    public void record(Command command) {
+        push(command);
+        clearRedo(); // New command clears redo history
+        lastExecuted = null;
+        enforcePolicy();
+    }
+
+    /**
+     * Set how close together (in milliseconds) single-character edits must be to merge.
+     * 0 disables merging.
+     */
+    public void setCoalesceWindow(long millis) {
+        coalesceWindowNanos = millis * 1_000_000L;
+        if (millis <= 0) lastExecuted = null;
     }
 
     /**
-     * Undo the most recent command.
+     * Undo the most recent command; returns it, or null when there was nothing to undo.
      */
-    public void undo() {
-        if (!undoStack.isEmpty()) {
+    public Command undo() {
+        lastExecuted = null;
+        while (pageIn() != null) {
             Command command = undoStack.pop();
+            retainedBytes -= command.getPayloadSize();
+            List<TextOperation> remote = remoteSince.remove(command);
+            if (remote != null) {
+                command = rebaseUndo(command, remote);
+                if (command == null) continue; // Nothing of it is left in the document
+            }
             command.undo();
             redoStack.push(command);
+            redoBytes += command.getPayloadSize();
+            retainedBytes += command.getPayloadSize();
+            return command;
         }
+        return null;
     }
 
     /**
-     * Redo the most recently undone command.
+     * Redo the most recently undone command; returns it, or null when there was nothing to redo.
      */
-    public void redo() {
-        if (!redoStack.isEmpty()) {
+    public Command redo() {
+        lastExecuted = null;
+        while (!redoStack.isEmpty()) {
             Command command = redoStack.pop();
+            redoBytes -= command.getPayloadSize();
+            retainedBytes -= command.getPayloadSize();
+            List<TextOperation> remote = remoteSince.remove(command);
+            if (remote != null) {
+                command = rebaseRedo(command, remote);
+                if (command == null) continue;
+            }
             command.execute();
-            undoStack.push(command);
+            push(command);
+            enforcePolicy();
+            return command;
         }
+        return null;
     }
 
     public boolean canUndo() {
-        return !undoStack.isEmpty();
+        return !undoStack.isEmpty() || (spill != null && !spill.isEmpty());
     }
 
     public boolean canRedo() {
         return !redoStack.isEmpty();
     }
+
+    /**
+     * Bytes retained by the in-memory undo and redo entries.
+     */
+    public long getRetainedBytes() {
+        return retainedBytes;
+    }
+
+    public int getUndoDepth() {
+        return undoStack.size() + (spill == null ? 0 : spill.size());
+    }
+
+    public int getRedoDepth() {
+        return redoStack.size();
+    }
+
+    /**
+     * Record an edit from another collaborator that has just been applied to the document
+     * (remote is expressed against the document before it). Undo then reverts only this
+     * editor's own changes and keeps the remote text. The edit is only queued on the next undo
+     * and redo entries, so receiving it costs O(edit size) whatever the history holds; the
+     * transforms happen in undo() and redo(), one entry at a time. A long queue is composed
+     * into one operation, so it costs a transform per 64 edits. Spilled entries keep their
+     * queues on disk.
+     */
+    public void rebase(TextOperation remote) {
+        lastExecuted = null;
+        Command undoTop = pageIn();
+        if (undoTop != null) queueRemote(undoTop, List.of(remote));
+        Command redoTop = redoStack.peek();
+        if (redoTop != null) queueRemote(redoTop, List.of(remote));
+    }
+
+    private void queueRemote(Command command, List<TextOperation> remote) {
+        List<TextOperation> queue = remoteSince.computeIfAbsent(command, key -> new ArrayList<>());
+        queue.addAll(remote);
+        if (queue.size() > MAX_QUEUED_REMOTE) {
+            TextOperation composed = queue.get(0);
+            for (int i = 1; i < queue.size(); i++) {
+                composed = composed.compose(queue.get(i));
+            }
+            queue.clear();
+            queue.add(composed);
+        }
+    }
+
+    // Page the next-oldest entry back in from disk when memory holds no undo entry; returns the top
+    private Command pageIn() {
+        if (undoStack.isEmpty() && spill != null && !spill.isEmpty()) {
+            List<TextOperation> remote = new ArrayList<>();
+            push(spill.pop(remote));
+            if (!remote.isEmpty()) remoteSince.put(undoStack.peek(), remote);
+        }
+        return undoStack.peek();
+    }
+
+    /**
+     * Transform an undo entry's inverse over the remote edits applied since it, and pass those
+     * edits, carried back to the document before the entry, on to the entry below. Returns the
+     * rebased entry, or null when nothing of it is left. An entry that cannot be expressed as a
+     * text operation is dropped together with everything behind it.
+     */
+    private Command rebaseUndo(Command command, List<TextOperation> remote) {
+        TextOperation forward = command.toOperation();
+        if (forward == null) {
+            discardUndo();
+            return null;
+        }
+        int length = remote.get(0).getBaseLength(); // The document right after the entry
+        forward.retainRest(length - forward.getTargetLength() + forward.getBaseLength());
+        TextOperation inverse = forward.invert();
+        List<TextOperation> carried = new ArrayList<>(remote.size());
+        for (TextOperation change : remote) {
+            TextOperation[] pair = TextOperation.transform(inverse, change);
+            inverse = pair[0];
+            carried.add(pair[1]);
+        }
+        Command below = pageIn();
+        if (below != null) queueRemote(below, carried);
+        return inverse.isNoop() ? null : new OperationCommand(editor, inverse.invert());
+    }
+
+    /**
+     * Transform a redo entry over the remote edits applied since it was undone, and pass them,
+     * carried past the entry, on to the next redo entry.
+     */
+    private Command rebaseRedo(Command command, List<TextOperation> remote) {
+        TextOperation forward = command.toOperation();
+        if (forward == null) {
+            clearRedo();
+            return null;
+        }
+        forward.retainRest(remote.get(0).getBaseLength()); // The document the entry starts from
+        List<TextOperation> carried = new ArrayList<>(remote.size());
+        for (TextOperation change : remote) {
+            TextOperation[] pair = TextOperation.transform(forward, change);
+            forward = pair[0];
+            carried.add(pair[1]);
+        }
+        Command next = redoStack.peek();
+        if (next != null) queueRemote(next, carried);
+        return forward.isNoop() ? null : new OperationCommand(editor, forward);
+    }
+
+    private void discardUndo() {
+        for (Command command : undoStack) {
+            retainedBytes -= command.getPayloadSize();
+            remoteSince.remove(command);
+        }
+        undoStack.clear();
+        if (spill != null) {
+            spill.clear();
+        }
+    }
+
+    /**
+     * Drop all history, keeping the policy and spill file for new entries.
+     */
+    public void clear() {
+        lastExecuted = null;
+        remoteSince.clear();
+        undoStack.clear();
+        redoStack.clear();
+        retainedBytes = 0;
+        redoBytes = 0;
+        if (spill != null) {
+            spill.clear();
+        }
+    }
+
+    /**
+     * Drop all history and release the spill file.
+     */
+    public void close() {
+        lastExecuted = null;
+        remoteSince.clear();
+        undoStack.clear();
+        redoStack.clear();
+        retainedBytes = 0;
+        redoBytes = 0;
+        if (spill != null) {
+            spill.close();
+            spill = null;
+        }
+    }
+
+    private void push(Command command) {
+        undoStack.push(command);
+        retainedBytes += command.getPayloadSize();
+    }
+
+    private void clearRedo() {
+        for (Command command : redoStack) {
+            remoteSince.remove(command);
+        }
+        retainedBytes -= redoBytes;
+        redoBytes = 0;
+        redoStack.clear();
+    }
+
+    /**
+     * Evict the oldest undo entries until the undo stack fits the policy. Redo entries are
+     * not counted, so undoing never costs a redo step.
+     */
+    private void enforcePolicy() {
+        while (!undoStack.isEmpty() && policy.isExceeded(undoStack.size(), retainedBytes - redoBytes)) {
+            Command oldest = undoStack.removeLast();
+            if (oldest == lastExecuted) lastExecuted = null;
+            retainedBytes -= oldest.getPayloadSize();
+            List<TextOperation> remote = remoteSince.remove(oldest);
+            if (spill != null && CommandCodec.canEncode(oldest)) {
+                spill.push(oldest, remote != null ? remote : List.of());
+            } else if (spill != null) {
+                // A gap in the chain would make older spilled deltas unsafe to apply
+                spill.clear();
+            }
+        }
+    }
 }
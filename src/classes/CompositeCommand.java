@@ -0,0 +1,87 @@
+package classes;
+
+import interfaces.Command;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * ===========================================================================================
+ * COMMAND PATTERN: Composite Command - CompositeCommand
+ * ===========================================================================================
+ * Groups several commands into one undo step. Observers are held back while the children
+ * run, so executing or undoing the whole group sends a single notification.
+ */
+class CompositeCommand implements Command {
+    private Editor editor;
+    private List<Command> commands;
+
+    public CompositeCommand(Editor editor) {
+        this.editor = editor;
+        this.commands = new ArrayList<>();
+    }
+
+    /**
+     * Add a child that has already been executed as part of a compound edit.
+     */
+    void add(Command command) {
+        commands.add(command);
+    }
+
+    boolean isEmpty() {
+        return commands.isEmpty();
+    }
+
+    List<Command> getCommands() {
+        return Collections.unmodifiableList(commands);
+    }
+
+    @Override
+    public void execute() {
+        editor.holdNotifications();
+        try {
+            for (Command command : commands) {
+                command.execute();
+            }
+        } finally {
+            editor.releaseNotifications();
+        }
+    }
+
+    @Override
+    public void undo() {
+        // Children are undone newest first so every inverse delta sees the document it produced
+        editor.holdNotifications();
+        try {
+            for (int i = commands.size() - 1; i >= 0; i--) {
+                commands.get(i).undo();
+            }
+        } finally {
+            editor.releaseNotifications();
+        }
+    }
+
+    @Override
+    public TextOperation toOperation() {
+        TextOperation combined = new TextOperation();
+        for (Command command : commands) {
+            TextOperation next = command.toOperation();
+            if (next == null) return null;
+            // Children stop after their last change; pad both sides to the longer of the two
+            int length = Math.max(combined.getTargetLength(), next.getBaseLength());
+            combined.retainRest(length - combined.getTargetLength() + combined.getBaseLength());
+            combined = combined.compose(next.retainRest(length));
+        }
+        return combined;
+    }
+
+    @Override
+    public long getPayloadSize() {
+        long size = 16;
+        for (Command command : commands) {
+            size += command.getPayloadSize();
+        }
+        return size;
+    }
+}
@@ -6,34 +6,97 @@ import interfaces.Command;
  * ===========================================================================================
  * COMMAND PATTERN: Concrete Command - DeleteCommand
  * ===========================================================================================
- * Encapsulates a delete operation. Uses Memento pattern to save state before execution.
+ * Encapsulates a delete operation. Keeps only its own delta (position and removed text),
+ * so undo re-inserts exactly what was removed instead of restoring a whole-document snapshot.
  */
 class DeleteCommand implements Command {
     private Editor editor;
     private int length;
     private int position;
-    private EditorMemento memento; // Memento pattern: stores state before execution
+    private int appliedPosition;
+    private String removedText; // Inverse delta, null until executed
+    private boolean typing;     // Built only from single-character deletes
 
     public DeleteCommand(Editor editor, int length, int position) {
         this.editor = editor;
         this.length = length;
         this.position = position;
+        this.typing = length == 1;
+    }
+
+    /**
+     * Rebuild a command that has already been executed (used when paging history back in).
+     */
+    static DeleteCommand executed(Editor editor, String removedText, int appliedPosition) {
+        DeleteCommand command = new DeleteCommand(editor, removedText.length(), appliedPosition);
+        command.appliedPosition = appliedPosition;
+        command.removedText = removedText;
+        return command;
     }
 
     @Override
     public void execute() {
-        // MEMENTO PATTERN: Save the current state before making changes
-        memento = editor.save();
+        // Capture the text that is about to disappear, using the same clamping as the state
+        int contentLength = editor.getLength();
+        int start = Math.max(position, 0);
+        String removed = "";
+        if (start < contentLength && length > 0) {
+            removed = editor.getText(start, Math.min(start + length, contentLength));
+        }
 
         // Delegate to the current state to perform the deletion
         editor.getState().deleteText(editor, length, position);
+        appliedPosition = start;
+        removedText = removed;
     }
 
     @Override
     public void undo() {
-        // MEMENTO PATTERN: Restore the previous state
-        if (memento != null) {
-            editor.restore(memento);
+        // Inverse delta: put the removed text back where it was
+        if (removedText != null && !removedText.isEmpty()) {
+            editor.applyInsert(removedText, appliedPosition);
         }
     }
+
+    /**
+     * Absorb a single-character delete that is adjacent to this one:
+     * backspace (just before the deleted range) or forward delete (at the same position).
+     * Only a run of such deletes absorbs more; deleting a selection is an undo step of its own.
+     */
+    @Override
+    public boolean mergeWith(Command next) {
+        if (!(next instanceof DeleteCommand) || !typing || removedText == null || removedText.isEmpty()) return false;
+        DeleteCommand delete = (DeleteCommand) next;
+        if (delete.removedText == null || delete.removedText.length() != 1) return false;
+
+        if (delete.appliedPosition + 1 == appliedPosition) {
+            removedText = delete.removedText + removedText;
+            appliedPosition = delete.appliedPosition;
+        } else if (delete.appliedPosition == appliedPosition) {
+            removedText = removedText + delete.removedText;
+        } else {
+            return false;
+        }
+        position = appliedPosition;
+        length = removedText.length();
+        return true;
+    }
+
+    @Override
+    public TextOperation toOperation() {
+        return removedText == null ? null : new TextOperation().retain(appliedPosition).delete(removedText);
+    }
+
+    @Override
+    public long getPayloadSize() {
+        return 32 + 2L * (removedText == null ? 0 : removedText.length()); // object headers plus UTF-16 text
+    }
+
+    String getRemovedText() {
+        return removedText;
+    }
+
+    int getAppliedPosition() {
+        return appliedPosition;
+    }
 }
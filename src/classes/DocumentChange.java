@@ -0,0 +1,169 @@
+package classes;
+
+/**
+ * ===========================================================================================
+ * OBSERVER PATTERN: Change event - DocumentChange
+ * ===========================================================================================
+ * Describes one edit of the editor content: at offset, removedText was replaced by
+ * insertedText, producing the given document version. The characters just outside the edited
+ * range are carried along so observers can update running totals from the event alone.
+ * A reset event (setContent, restore, explicit notifyObservers) replaces the whole document;
+ * observers should recompute from getInsertedText() in that case.
+ */
+public final class DocumentChange {
+    /** Widest span then() copies into one edit; farther-apart edits fold into a reset. */
+    static final int MAX_COMBINED_SPAN = 1 << 16;
+
+    private final int offset;
+    private final String removedText;  // null for reset events
+    private final int removedLength;
+    private final String insertedText; // null for reset events until asked for
+    private final long version;
+    private final int charBefore;      // -1 at the start of the document
+    private final int charAfter;       // -1 at the end of the document
+    private final CharSequence document;
+    private String content;
+
+    private DocumentChange(int offset, String removedText, int removedLength, String insertedText,
+                           long version, int charBefore, int charAfter, CharSequence document) {
+        this.offset = offset;
+        this.removedText = removedText;
+        this.removedLength = removedLength;
+        this.insertedText = insertedText;
+        this.version = version;
+        this.charBefore = charBefore;
+        this.charAfter = charAfter;
+        this.document = document;
+    }
+
+    /**
+     * Build an edit event; document is the content after the edit.
+     */
+    static DocumentChange edit(CharSequence document, int offset, String removedText, String insertedText,
+                               long version) {
+        int end = offset + insertedText.length();
+        return new DocumentChange(offset, removedText, removedText.length(), insertedText, version,
+                offset > 0 ? document.charAt(offset - 1) : -1,
+                end < document.length() ? document.charAt(end) : -1,
+                document);
+    }
+
+    /**
+     * Build an event that replaces the whole document of the given previous length.
+     * content may be null when the new document should not be turned into a String up front.
+     */
+    static DocumentChange reset(CharSequence document, String content, int previousLength, long version) {
+        DocumentChange change = new DocumentChange(0, null, previousLength, content, version, -1, -1, document);
+        change.content = content;
+        return change;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public int getRemovedLength() {
+        return removedLength;
+    }
+
+    /**
+     * Text that was replaced, or null for reset events.
+     */
+    public String getRemovedText() {
+        return removedText;
+    }
+
+    /**
+     * Text that was inserted; for reset events this is the whole document, built on first use.
+     */
+    public String getInsertedText() {
+        return insertedText != null ? insertedText : getContent();
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Character just before the edited range, or -1 at the start of the document.
+     */
+    public int getCharBefore() {
+        return charBefore;
+    }
+
+    /**
+     * Character just after the inserted text, or -1 at the end of the document.
+     */
+    public int getCharAfter() {
+        return charAfter;
+    }
+
+    public boolean isReset() {
+        return removedText == null;
+    }
+
+    /**
+     * The document after this change.
+     */
+    public CharSequence getDocument() {
+        return document;
+    }
+
+    /**
+     * The whole document as a String, built once and shared by every observer of this event.
+     */
+    public String getContent() {
+        if (content == null) {
+            content = document.toString();
+        }
+        return content;
+    }
+
+    /**
+     * Combine this change with one that was applied right after it into a single change.
+     * next.getDocument() must still be the current content; the cost is proportional to the
+     * span covering both edits. When that span is wider than MAX_COMBINED_SPAN the result is a
+     * reset instead, so combining edits at both ends of a large document stays cheap.
+     */
+    DocumentChange then(DocumentChange next) {
+        CharSequence current = next.document;
+        if (isReset() || next.isReset() || span(next) > MAX_COMBINED_SPAN) {
+            int between = next.isReset()
+                    ? next.removedLength
+                    : current.length() - next.insertedText.length() + next.removedLength;
+            int previousLength = isReset() ? removedLength : between - insertedText.length() + removedLength;
+            return reset(current, null, previousLength, next.version);
+        }
+
+        // Span covered by both edits, in coordinates of the document between the two edits
+        int thisEnd = offset + insertedText.length();
+        int nextEnd = next.offset + next.removedLength;
+        int start = Math.min(offset, next.offset);
+        int end = Math.max(thisEnd, nextEnd);
+
+        // Outside next's range the intermediate document equals the current one
+        int nextInsertedEnd = next.offset + next.insertedText.length();
+        String prefix = getText(current, start, next.offset);
+        String suffix = getText(current, nextInsertedEnd, nextInsertedEnd + (end - nextEnd));
+        String intermediate = prefix + next.removedText + suffix;
+
+        String removed = intermediate.substring(0, offset - start) + removedText
+                + intermediate.substring(thisEnd - start);
+        String inserted = prefix + next.insertedText + suffix;
+        return edit(current, start, removed, inserted, next.version);
+    }
+
+    /**
+     * Characters covered by this edit and the next one, which then() would copy; both must be
+     * edits.
+     */
+    int span(DocumentChange next) {
+        int start = Math.min(offset, next.offset);
+        int end = Math.max(offset + insertedText.length(), next.offset + next.removedLength);
+        return end - start;
+    }
+
+    private static String getText(CharSequence text, int start, int end) {
+        return start >= end ? "" : text.subSequence(start, end).toString();
+    }
+}
@@ -0,0 +1,301 @@
+package classes;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * ===========================================================================================
+ * SERVICE: DocumentManager
+ * ===========================================================================================
+ * Hosts many headless Editor instances in one process. Each document has its own serial
+ * queue of operations; all queues share one small pool of worker threads, so an idle
+ * document costs no thread and operations on different documents run in parallel.
+ * Documents that have not been used for a while are hibernated: their text is written to
+ * a UTF-8 file in the storage directory and the Editor is dropped. The next operation maps
+ * the file back in, so waking costs a memory mapping rather than reading the whole text.
+ * Hibernation keeps the text only; the undo/redo history and observers are not kept.
+ */
+public class DocumentManager implements AutoCloseable {
+    private final Path storage;
+    private final long idleNanos;
+    private final ExecutorService workers;
+    private final ScheduledExecutorService sweeper;
+    private final ConcurrentHashMap<String, ManagedDocument> documents = new ConcurrentHashMap<>();
+
+    /**
+     * Manager with one worker per core that hibernates documents idle for idleMillis.
+     */
+    public DocumentManager(Path storage, long idleMillis) throws IOException {
+        this(storage, idleMillis, Runtime.getRuntime().availableProcessors());
+    }
+
+    public DocumentManager(Path storage, long idleMillis, int threads) throws IOException {
+        this.storage = Files.createDirectories(storage);
+        this.idleNanos = TimeUnit.MILLISECONDS.toNanos(idleMillis);
+        this.workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "document-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "document-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(idleMillis / 2, 10);
+        sweeper.scheduleWithFixedDelay(this::hibernateIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    // ===========================================================================================
+    // PUBLIC API: Document lifecycle
+    // ===========================================================================================
+
+    /**
+     * Open a document, creating it empty unless a hibernated copy exists in the storage directory.
+     * Opening a document that is already open does nothing. Opening a document that is being
+     * closed waits on its queue until the close has written the file, then opens it again.
+     */
+    public CompletableFuture<Void> open(String id) {
+        ManagedDocument document = documents.computeIfAbsent(id, key -> new ManagedDocument(key, fileFor(key)));
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        document.queue.execute(() -> {
+            if (document.closed) {
+                // Closed while this was queued; the entry is gone, so this opens a new one from the file
+                open(id).whenComplete((ignored, failure) -> {
+                    if (failure == null) result.complete(null); else result.completeExceptionally(failure);
+                });
+                return;
+            }
+            try {
+                document.resident();
+                result.complete(null);
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Hibernate the document and stop managing it. Its file stays in the storage directory,
+     * so opening the same id later brings the text back. The document stays registered until
+     * its file is written, so no second copy can read the file half-written; closing it again
+     * meanwhile returns the same future. If the file cannot be written the document stays open.
+     */
+    public CompletableFuture<Void> close(String id) {
+        ManagedDocument document = documents.get(id);
+        if (document == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Document is not open: " + id));
+        }
+        synchronized (document) {
+            if (document.closing == null) {
+                document.closing = run(document, () -> {
+                    try {
+                        document.hibernate();
+                    } catch (RuntimeException e) {
+                        synchronized (document) {
+                            document.closing = null;
+                        }
+                        throw e;
+                    }
+                    document.closed = true;
+                    documents.remove(id, document);
+                });
+            }
+            return document.closing;
+        }
+    }
+
+    /**
+     * Hibernate the document now; it is woken again by the next operation.
+     */
+    public CompletableFuture<Void> evict(String id) {
+        ManagedDocument document = documents.get(id);
+        if (document == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Document is not open: " + id));
+        }
+        return run(document, document::hibernate);
+    }
+
+    /**
+     * Queue hibernation for every resident document that has been idle longer than the limit.
+     * Returns how many were queued; called periodically by the manager itself.
+     */
+    public int hibernateIdle() {
+        long now = System.nanoTime();
+        int queued = 0;
+        for (ManagedDocument document : documents.values()) {
+            if (document.editor != null && now - document.lastUsed > idleNanos) {
+                run(document, () -> {
+                    // Used again while the hibernation was waiting in the queue
+                    if (System.nanoTime() - document.lastUsed > idleNanos) document.hibernate();
+                });
+                queued++;
+            }
+        }
+        return queued;
+    }
+
+    // ===========================================================================================
+    // PUBLIC API: Operations, serialized per document
+    // ===========================================================================================
+
+    /**
+     * Run an operation on the document's queue and complete with its result. Operations on
+     * the same document run one at a time in submission order.
+     */
+    public <T> CompletableFuture<T> submit(String id, Function<Editor, T> operation) {
+        ManagedDocument document = documents.get(id);
+        if (document == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Document is not open: " + id));
+        }
+        CompletableFuture<T> result = new CompletableFuture<>();
+        document.queue.execute(() -> {
+            try {
+                result.complete(operation.apply(document.resident()));
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    public CompletableFuture<Void> execute(String id, Consumer<Editor> operation) {
+        return submit(id, editor -> {
+            operation.accept(editor);
+            return null;
+        });
+    }
+
+    /**
+     * Latest published snapshot of a resident document, without queuing; a hibernated
+     * document is woken through its queue first.
+     */
+    public DocumentSnapshot snapshot(String id) {
+        ManagedDocument document = documents.get(id);
+        Editor editor = document == null ? null : document.editor;
+        return editor != null ? editor.snapshot() : submit(id, Editor::snapshot).join();
+    }
+
+    public Set<String> getDocumentIds() {
+        return documents.keySet();
+    }
+
+    public int getOpenCount() {
+        return documents.size();
+    }
+
+    /**
+     * Number of open documents currently held in memory (not hibernated).
+     */
+    public int getResidentCount() {
+        int resident = 0;
+        for (ManagedDocument document : documents.values()) {
+            if (document.editor != null) resident++;
+        }
+        return resident;
+    }
+
+    /**
+     * Hibernate and close every document, then stop the worker threads.
+     */
+    @Override
+    public void close() {
+        sweeper.shutdown();
+        List<CompletableFuture<Void>> closing = new ArrayList<>();
+        for (String id : documents.keySet()) {
+            closing.add(close(id));
+        }
+        try {
+            CompletableFuture.allOf(closing.toArray(new CompletableFuture<?>[0])).join();
+        } finally {
+            workers.shutdown();
+        }
+    }
+
+    // ===========================================================================================
+    // INTERNALS
+    // ===========================================================================================
+
+    private CompletableFuture<Void> run(ManagedDocument document, Runnable step) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        document.queue.execute(() -> {
+            try {
+                step.run();
+                result.complete(null);
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    private Path fileFor(String id) {
+        return storage.resolve(URLEncoder.encode(id, StandardCharsets.UTF_8) + ".txt");
+    }
+
+    /**
+     * One hosted document. Its fields are only changed by tasks on its own queue.
+     */
+    private final class ManagedDocument {
+        final String id;
+        final Path file;
+        final SerialQueue queue = new SerialQueue(workers);
+        volatile Editor editor; // null while hibernated
+        volatile long lastUsed = System.nanoTime();
+        CompletableFuture<Void> closing; // Set by close() under the document's lock
+        boolean closed;
+
+        ManagedDocument(String id, Path file) {
+            this.id = id;
+            this.file = file;
+        }
+
+        Editor resident() {
+            if (closed) {
+                throw new IllegalStateException("Document is closed: " + id);
+            }
+            if (editor == null) {
+                Editor woken = new Editor();
+                if (Files.exists(file)) {
+                    try {
+                        woken.openFile(file);
+                    } catch (IOException e) {
+                        woken.close();
+                        throw new UncheckedIOException("Could not wake document " + id, e);
+                    }
+                }
+                editor = woken;
+            }
+            lastUsed = System.nanoTime();
+            return editor;
+        }
+
+        void hibernate() {
+            Editor resident = editor;
+            if (resident == null) return;
+            try {
+                resident.saveFile(file);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not hibernate document " + id, e);
+            }
+            editor = null;
+            resident.close();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package classes;
+
+import interfaces.TextView;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+
+/**
+ * ===========================================================================================
+ * CONCURRENCY: DocumentSnapshot
+ * ===========================================================================================
+ * Immutable content of the editor at one version. Snapshots share the piece tree with the
+ * live buffer, so taking one copies nothing, and any number of threads can read one while
+ * the editor keeps changing. The String form is built at most once per snapshot.
+ */
+public final class DocumentSnapshot implements TextView {
+    private final TextView text;
+    private final long version;
+    private volatile String content;
+
+    DocumentSnapshot(TextView text, long version, String content) {
+        this.text = text;
+        this.version = version;
+        this.content = content;
+    }
+
+    /**
+     * Editor version this snapshot was taken at (see Editor.getVersion()).
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public int length() {
+        return text.length();
+    }
+
+    @Override
+    public char charAt(int index) {
+        return text.charAt(index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return text.subSequence(start, end);
+    }
+
+    @Override
+    public String getText(int start, int end) {
+        return text.getText(start, end);
+    }
+
+    @Override
+    public void writeTo(WritableByteChannel out, Charset charset) throws IOException {
+        text.writeTo(out, charset);
+    }
+
+    @Override
+    public int getLineCount() {
+        return text.getLineCount();
+    }
+
+    @Override
+    public int getLineOfOffset(int offset) {
+        return text.getLineOfOffset(offset);
+    }
+
+    @Override
+    public int getLineStartOffset(int line) {
+        return text.getLineStartOffset(line);
+    }
+
+    @Override
+    public String toString() {
+        String result = content;
+        if (result == null) {
+            result = text.toString();
+            content = result;
+        }
+        return result;
+    }
+}
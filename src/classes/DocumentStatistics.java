@@ -0,0 +1,459 @@
+package classes;
+
+import interfaces.Observer;
+import interfaces.StatisticsObserver;
+import interfaces.TextView;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * ===========================================================================================
+ * OBSERVER PATTERN: Concrete Observer - DocumentStatistics
+ * ===========================================================================================
+ * Statistics engine: line, word and unique-word counts, the most frequent words and a reading
+ * time estimate, published to StatisticsObservers as an immutable TextStatistics after every
+ * change. The document is cut into chunks of about CHUNK_SIZE chars, preferably just after
+ * whitespace so words do not straddle chunks. Each chunk keeps a summary (length, newlines,
+ * word starts) and the summaries add up to the totals. A reset summarizes the whole document
+ * in parallel on the fork-join pool; an edit only rescans the chunks it touched, before and
+ * after the edit, and applies the difference to the word frequencies. The words ranked by
+ * frequency are kept in a sorted set, so the top words are read off its head.
+ * Frequencies depend only on the text, never on where the cuts fall: a summary leaves the
+ * words open at either end uncounted and merging two summaries joins the open word at the
+ * cut, so a word longer than a chunk (or a fork-join leaf) is still counted whole.
+ * All state is confined to the thread that delivers the editor's notifications.
+ */
+public class DocumentStatistics implements Observer {
+    private static final int CHUNK_SIZE = 4096;  // Target chunk length in chars
+    private static final int TASK_SIZE = 1 << 20; // Chars one fork-join leaf summarizes sequentially
+    private static final Comparator<WordCount> RANKING =
+            Comparator.comparingInt((WordCount word) -> -word.count).thenComparing(word -> word.word);
+
+    private final int topWordCount;
+    private final List<StatisticsObserver> observers = new CopyOnWriteArrayList<>();
+    private final List<Chunk> chunks = new ArrayList<>();
+    private int[] lengthIndex = new int[1]; // Fenwick tree over the chunk lengths
+    private Map<String, WordCount> counts = new HashMap<>();
+    private final TreeSet<WordCount> ranking = new TreeSet<>(RANKING);
+    private int length;
+    private int newlines;
+    private int words;
+    private boolean initialized; // False until the first notification brings the whole document
+    private volatile TextStatistics statistics = new TextStatistics(-1, 0, 1, 0, 0, List.of());
+
+    /**
+     * @param topWordCount How many of the most frequent words each TextStatistics lists
+     */
+    public DocumentStatistics(int topWordCount) {
+        if (topWordCount < 0) {
+            throw new IllegalArgumentException("Top word count cannot be negative: " + topWordCount);
+        }
+        this.topWordCount = topWordCount;
+    }
+
+    public void attach(StatisticsObserver observer) {
+        if (!observers.contains(observer)) {
+            observers.add(observer);
+        }
+    }
+
+    public void detach(StatisticsObserver observer) {
+        observers.remove(observer);
+    }
+
+    /**
+     * The latest results; safe to call from any thread.
+     */
+    public TextStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Summarize a whole document in parallel, outside of any editor.
+     */
+    public static TextStatistics of(CharSequence document, int topWordCount) {
+        DocumentStatistics engine = new DocumentStatistics(topWordCount);
+        engine.rebuild(document);
+        engine.publish(-1);
+        return engine.statistics;
+    }
+
+    // ===========================================================================================
+    // OBSERVER PATTERN: Follow every editor change
+    // ===========================================================================================
+
+    @Override
+    public void update(String content) {
+        rebuild(content != null ? content : "");
+        publish(-1);
+    }
+
+    @Override
+    public void update(DocumentChange change) {
+        if (change.isReset() || !initialized) {
+            rebuild(change.getDocument());
+        } else {
+            edit(change);
+        }
+        publish(change.getVersion());
+    }
+
+    private void publish(long version) {
+        List<Map.Entry<String, Integer>> top = new ArrayList<>(Math.min(topWordCount, ranking.size()));
+        for (WordCount word : ranking) {
+            if (top.size() == topWordCount) break;
+            top.add(Map.entry(word.word, word.count));
+        }
+        statistics = new TextStatistics(version, length, newlines + 1, words, counts.size(), top);
+        for (StatisticsObserver observer : observers) {
+            observer.statisticsChanged(statistics);
+        }
+    }
+
+    // ===========================================================================================
+    // FULL SUMMARY: Fork-join over the whole document
+    // ===========================================================================================
+
+    private void rebuild(CharSequence document) {
+        Summary summary = document.length() == 0
+                ? new Summary(new ArrayList<>(), new HashMap<>(), "", null)
+                : ForkJoinPool.commonPool().invoke(new SummarizeTask(document, 0, document.length()));
+        chunks.clear();
+        chunks.addAll(summary.chunks);
+        rebuildLengthIndex();
+        counts = summary.closeWords();
+        ranking.clear();
+        ranking.addAll(counts.values());
+        length = document.length();
+        newlines = 0;
+        words = 0;
+        for (Chunk chunk : chunks) {
+            newlines += chunk.newlines;
+            words += chunk.words;
+        }
+        initialized = true;
+    }
+
+    private static final class SummarizeTask extends RecursiveTask<Summary> {
+        private static final long serialVersionUID = 1L;
+
+        private final transient CharSequence document;
+        private final int from;
+        private final int to;
+
+        SummarizeTask(CharSequence document, int from, int to) {
+            this.document = document;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Summary compute() {
+            int middle = to - from <= TASK_SIZE ? to : boundary(document, from + (to - from) / 2, to);
+            if (middle >= to) {
+                String text = read(document, from, to);
+                List<Chunk> chunks = new ArrayList<>();
+                summarize(text, 0, from > 0 ? document.charAt(from - 1) : -1, chunks);
+                return Summary.of(text, chunks);
+            }
+            SummarizeTask left = new SummarizeTask(document, from, middle);
+            left.fork();
+            Summary right = new SummarizeTask(document, middle, to).compute();
+            return left.join().append(right);
+        }
+    }
+
+    /**
+     * Chunks and word frequencies of a stretch of text. The text before its first whitespace
+     * (head) and after its last one (tail) may be pieces of words running on into the
+     * neighbouring text, so they are not counted yet; tail is null when the text has no
+     * whitespace at all and head is all of it.
+     */
+    private static final class Summary {
+        final List<Chunk> chunks;
+        final Map<String, WordCount> counts;
+        final String head;
+        final String tail;
+
+        Summary(List<Chunk> chunks, Map<String, WordCount> counts, String head, String tail) {
+            this.chunks = chunks;
+            this.counts = counts;
+            this.head = head;
+            this.tail = tail;
+        }
+
+        static Summary of(String text, List<Chunk> chunks) {
+            Map<String, WordCount> counts = new HashMap<>();
+            int first = 0;
+            while (first < text.length() && !WordCountView.isSpace(text.charAt(first))) first++;
+            if (first == text.length()) {
+                return new Summary(chunks, counts, text, null);
+            }
+            int last = text.length();
+            while (!WordCountView.isSpace(text.charAt(last - 1))) last--;
+            scanWords(text, first, last, counts, 1);
+            return new Summary(chunks, counts, text.substring(0, first), text.substring(last));
+        }
+
+        // Merge the summary of the text right after this one; the smaller word map is folded in,
+        // and the word open across the cut is carried on, or counted once it is closed
+        Summary append(Summary next) {
+            chunks.addAll(next.chunks);
+            Map<String, WordCount> into = counts.size() >= next.counts.size() ? counts : next.counts;
+            Map<String, WordCount> from = into == counts ? next.counts : counts;
+            for (WordCount word : from.values()) {
+                WordCount existing = into.putIfAbsent(word.word, word);
+                if (existing != null) existing.count += word.count;
+            }
+            if (tail == null) {
+                return new Summary(chunks, into, head + next.head, next.tail);
+            }
+            if (next.tail == null) {
+                return new Summary(chunks, into, head, tail + next.head);
+            }
+            String joined = tail + next.head;
+            addWord(joined, 0, joined.length(), into, 1);
+            return new Summary(chunks, into, head, next.tail);
+        }
+
+        // The frequencies of the whole document, whose ends close the words left open there
+        Map<String, WordCount> closeWords() {
+            addWord(head, 0, head.length(), counts, 1);
+            if (tail != null) addWord(tail, 0, tail.length(), counts, 1);
+            return counts;
+        }
+    }
+
+    // ===========================================================================================
+    // INCREMENTAL UPDATE: Rescan only the chunks an edit touched
+    // ===========================================================================================
+
+    private void edit(DocumentChange change) {
+        CharSequence document = change.getDocument();
+        int offset = change.getOffset();
+        String removed = change.getRemovedText();
+        String inserted = change.getInsertedText();
+
+        // The chunks covering the edited range, in offsets from before the edit
+        int first = 0;
+        int next = 0;
+        int start = 0;
+        int end = 0;
+        if (!chunks.isEmpty()) {
+            first = chunkAt(Math.min(offset, length - 1));
+            int last = removed.isEmpty() ? first : chunkAt(offset + removed.length() - 1);
+            start = startOf(first);
+            end = startOf(last) + chunks.get(last).length;
+            next = last + 1;
+        }
+        end += inserted.length() - removed.length(); // Now in offsets after the edit
+
+        // Take in the next chunk when the edit left a word running into it, or left the range small
+        boolean joinedWord = false;
+        while (next < chunks.size() && (end - start < CHUNK_SIZE / 2
+                || (!joinedWord && !WordCountView.isSpace(document.charAt(end - 1))))) {
+            joinedWord = end - start >= CHUNK_SIZE / 2;
+            end += chunks.get(next++).length;
+        }
+
+        String current = read(document, start, end);
+        int before = start > 0 ? document.charAt(start - 1) : -1;
+
+        List<Chunk> replacement = new ArrayList<>();
+        summarize(current, 0, before, replacement);
+        List<Chunk> replaced = chunks.subList(first, next);
+        for (Chunk chunk : replaced) {
+            newlines -= chunk.newlines;
+            words -= chunk.words;
+        }
+        for (Chunk chunk : replacement) {
+            newlines += chunk.newlines;
+            words += chunk.words;
+        }
+
+        // Frequencies depend only on the text, so only the words overlapping the edit differ
+        int wordStart = offset;
+        while (wordStart > 0 && !WordCountView.isSpace(document.charAt(wordStart - 1))) wordStart--;
+        int insertedEnd = offset + inserted.length();
+        int wordEnd = insertedEnd;
+        while (wordEnd < document.length() && !WordCountView.isSpace(document.charAt(wordEnd))) wordEnd++;
+        String prefix = read(document, wordStart, offset);
+        String suffix = read(document, insertedEnd, wordEnd);
+        Map<String, WordCount> difference = new HashMap<>();
+        String previous = prefix + removed + suffix;
+        scanWords(previous, 0, previous.length(), difference, -1);
+        String edited = prefix + inserted + suffix;
+        scanWords(edited, 0, edited.length(), difference, 1);
+
+        if (replaced.size() == replacement.size()) {
+            for (int i = 0; i < replacement.size(); i++) {
+                addLength(first + i, replacement.get(i).length - replaced.get(i).length);
+                replaced.set(i, replacement.get(i));
+            }
+        } else {
+            replaced.clear();
+            replaced.addAll(replacement);
+            rebuildLengthIndex();
+        }
+        length = document.length();
+
+        for (WordCount delta : difference.values()) {
+            if (delta.count == 0) continue;
+            WordCount word = counts.get(delta.word);
+            if (word == null) {
+                word = new WordCount(delta.word);
+                counts.put(word.word, word);
+            } else {
+                ranking.remove(word);
+            }
+            word.count += delta.count;
+            if (word.count > 0) {
+                ranking.add(word);
+            } else {
+                counts.remove(word.word);
+            }
+        }
+    }
+
+    // ===========================================================================================
+    // CHUNK INDEX: Fenwick tree over chunk lengths, O(log n) offset lookups
+    // ===========================================================================================
+
+    private void rebuildLengthIndex() {
+        lengthIndex = new int[chunks.size() + 1];
+        for (int i = 1; i < lengthIndex.length; i++) {
+            lengthIndex[i] += chunks.get(i - 1).length;
+            int parent = i + (i & -i);
+            if (parent < lengthIndex.length) lengthIndex[parent] += lengthIndex[i];
+        }
+    }
+
+    private void addLength(int index, int delta) {
+        for (int i = index + 1; i < lengthIndex.length; i += i & -i) {
+            lengthIndex[i] += delta;
+        }
+    }
+
+    // Offset of the first char of a chunk
+    private int startOf(int index) {
+        int start = 0;
+        for (int i = index; i > 0; i -= i & -i) {
+            start += lengthIndex[i];
+        }
+        return start;
+    }
+
+    // Index of the chunk containing the offset (0 <= offset < length)
+    private int chunkAt(int offset) {
+        int index = 0;
+        for (int step = Integer.highestOneBit(chunks.size()); step > 0; step >>= 1) {
+            if (index + step <= chunks.size() && lengthIndex[index + step] <= offset) {
+                index += step;
+                offset -= lengthIndex[index];
+            }
+        }
+        return index;
+    }
+
+    // ===========================================================================================
+    // SCANNING: Chunk summaries and word frequencies
+    // ===========================================================================================
+
+    /**
+     * Cut text[from..] into chunks, adding their summaries to chunks. before is the character
+     * preceding the text (-1 at the start of the document).
+     */
+    private static void summarize(String text, int from, int before, List<Chunk> chunks) {
+        while (from < text.length()) {
+            int to = boundary(text, Math.min(from + CHUNK_SIZE, text.length()), text.length());
+            if (text.length() - to < CHUNK_SIZE / 2) {
+                to = text.length(); // Fold a short tail into this chunk
+            }
+            chunks.add(new Chunk(to - from, countNewlines(text, from, to),
+                    WordCountView.countWordStarts(before, text.subSequence(from, to), -1)));
+            before = text.charAt(to - 1);
+            from = to;
+        }
+    }
+
+    /**
+     * First position at or after position that follows whitespace, searching at most one chunk
+     * ahead; limit when there is none.
+     */
+    private static int boundary(CharSequence text, int position, int limit) {
+        int end = Math.min(limit, position + CHUNK_SIZE);
+        while (position < end && !WordCountView.isSpace(text.charAt(position - 1))) {
+            position++;
+        }
+        return position;
+    }
+
+    private static int countNewlines(String text, int from, int to) {
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            if (text.charAt(i) == '\n') count++;
+        }
+        return count;
+    }
+
+    private static void scanWords(String text, int from, int to, Map<String, WordCount> counts, int sign) {
+        int wordStart = -1;
+        for (int i = from; i < to; i++) {
+            boolean space = WordCountView.isSpace(text.charAt(i));
+            if (!space && wordStart < 0) {
+                wordStart = i;
+            } else if (space && wordStart >= 0) {
+                addWord(text, wordStart, i, counts, sign);
+                wordStart = -1;
+            }
+        }
+        if (wordStart >= 0) {
+            addWord(text, wordStart, to, counts, sign);
+        }
+    }
+
+    // Count a word lower-cased and without leading or trailing punctuation
+    private static void addWord(String text, int start, int end, Map<String, WordCount> counts, int sign) {
+        while (start < end && !Character.isLetterOrDigit(text.charAt(start))) start++;
+        while (end > start && !Character.isLetterOrDigit(text.charAt(end - 1))) end--;
+        if (start == end) return;
+        String word = text.substring(start, end).toLowerCase(Locale.ROOT);
+        counts.computeIfAbsent(word, WordCount::new).count += sign;
+    }
+
+    private static String read(CharSequence document, int from, int to) {
+        return document instanceof TextView
+                ? ((TextView) document).getText(from, to)
+                : document.subSequence(from, to).toString();
+    }
+
+    private static final class Chunk {
+        final int length;
+        final int newlines;
+        final int words; // Word starts inside the chunk, given the character before it
+
+        Chunk(int length, int newlines, int words) {
+            this.length = length;
+            this.newlines = newlines;
+            this.words = words;
+        }
+    }
+
+    private static final class WordCount {
+        final String word;
+        int count;
+
+        WordCount(String word) {
+            this.word = word;
+        }
+    }
+}
@@ -0,0 +1,357 @@
+package classes;
+
+import interfaces.TextBuffer;
+import interfaces.TextView;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * ===========================================================================================
+ * CRASH RECOVERY: EditJournal
+ * ===========================================================================================
+ * Write-ahead journal of every change applied to the document (offset, removed length,
+ * inserted text, version) on top of the last full snapshot. Appending costs O(edit size):
+ * records are buffered in memory before the document changes, and a background thread
+ * writes and fsyncs them in batches. A change that cannot be replayed as a delta (a reset)
+ * is journaled as a marker record.
+ * A checkpoint writes a new snapshot on the same background thread, then drops the journal
+ * records it covers; edits made meanwhile stay in the journal. Recovery maps the snapshot and
+ * replays the records newer than it, stopping at the first torn record or at a reset marker
+ * whose snapshot never reached the disk.
+ */
+class EditJournal {
+    private static final int SNAPSHOT_MAGIC = 0x45445331; // "EDS1"
+    static final int SNAPSHOT_HEADER_BYTES = 12;          // magic + version
+    private static final int FLUSH_THRESHOLD = 1 << 20;   // Write inline once this much is buffered
+    private static final long SYNC_INTERVAL_MILLIS = 200;
+    private static final long CHECKPOINT_BYTES = 64L << 20;
+    private static final int RESET = -1; // Offset of a reset marker record
+
+    private final Path snapshotFile;
+    private final Path journalFile;
+    private FileChannel channel;
+    private final ScheduledExecutorService syncer; // Batched fsyncs and checkpoints
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private long journalBytes;   // Bytes already written to the journal file
+    private long droppedBytes;   // Bytes checkpoints have cut off the front of the journal file
+    private long checkpointedTo; // Journal position (counting dropped bytes) of the last checkpoint
+    private IOException failure; // First background error, reported on the next append
+
+    EditJournal(Path snapshotFile, Path journalFile) throws IOException {
+        this.snapshotFile = snapshotFile;
+        this.journalFile = journalFile;
+        this.channel = FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        this.journalBytes = channel.size();
+        this.syncer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "editor-journal");
+            thread.setDaemon(true);
+            return thread;
+        });
+        syncer.scheduleWithFixedDelay(this::syncQuietly, SYNC_INTERVAL_MILLIS, SYNC_INTERVAL_MILLIS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Buffer the records of edits that are about to be applied in this order, numbered from
+     * firstVersion; they reach the disk with the next batched fsync. Throws before buffering
+     * anything if the journal has failed, so the caller can leave the document unchanged.
+     */
+    synchronized void append(long firstVersion, List<TextEdit> edits) {
+        checkWritable();
+        try {
+            ByteArrayOutputStream records = new ByteArrayOutputStream();
+            long version = firstVersion;
+            for (TextEdit edit : edits) {
+                writeRecord(records, version++, edit.getPosition(), edit.getDeleteLength(), edit.getInsertText());
+            }
+            records.writeTo(pending);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Journal write failed", e);
+        }
+    }
+
+    /**
+     * Buffer a marker for a reset that is about to replace the document at the given version.
+     * Until the checkpoint taken after the reset is on disk, recovery stops at the marker.
+     */
+    synchronized void appendReset(long version) {
+        checkWritable();
+        try {
+            writeRecord(pending, version, RESET, 0, "");
+        } catch (IOException e) {
+            throw new UncheckedIOException("Journal write failed", e);
+        }
+    }
+
+    // Report a background failure, and write a large backlog inline, before a new record is buffered
+    private void checkWritable() {
+        if (failure != null) {
+            throw new UncheckedIOException("Journal write failed", failure);
+        }
+        if (pending.size() >= FLUSH_THRESHOLD) {
+            try {
+                sync();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Journal write failed", e);
+            }
+        }
+    }
+
+    private static void writeRecord(ByteArrayOutputStream to, long version, int offset, int removedLength,
+                                    String inserted) throws IOException {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(32 + 2 * inserted.length());
+        DataOutputStream out = new DataOutputStream(payload);
+        out.writeLong(version);
+        out.writeInt(offset);
+        out.writeInt(removedLength);
+        out.writeInt(inserted.length());
+        out.writeChars(inserted);
+
+        CRC32 crc = new CRC32();
+        crc.update(payload.toByteArray());
+        DataOutputStream record = new DataOutputStream(to);
+        record.writeInt(payload.size());
+        record.writeInt((int) crc.getValue());
+        payload.writeTo(record);
+    }
+
+    /**
+     * Whether the journal has grown enough since the last checkpoint that a fresh snapshot is
+     * cheaper than replaying it.
+     */
+    synchronized boolean shouldCheckpoint() {
+        return end() - checkpointedTo > CHECKPOINT_BYTES;
+    }
+
+    // Position after the last buffered record, counting the bytes checkpoints have dropped
+    private long end() {
+        return droppedBytes + journalBytes + pending.size();
+    }
+
+    /**
+     * Write the buffered records and fsync them. A failed write is retried from the same
+     * position by the next sync.
+     */
+    synchronized void sync() throws IOException {
+        if (pending.size() == 0) return;
+        ByteBuffer bytes = ByteBuffer.wrap(pending.toByteArray());
+        while (bytes.hasRemaining()) {
+            channel.write(bytes, journalBytes + bytes.position());
+        }
+        channel.force(false);
+        journalBytes += bytes.limit();
+        pending = new ByteArrayOutputStream();
+    }
+
+    /**
+     * Write a snapshot of text (which must not change, e.g. TextBuffer.snapshot()) at the given
+     * version on the background thread, then drop the journal records buffered so far; records
+     * appended in the meantime are kept. Returns at once; the future completes when both steps
+     * are done, and a failure is also reported by the next append.
+     * A crash in between is harmless: recovery skips records the snapshot already has.
+     */
+    synchronized Future<?> checkpoint(TextView text, long version) {
+        long cut = end();
+        checkpointedTo = cut;
+        return syncer.submit(() -> {
+            try {
+                writeSnapshot(text, version);
+                truncateTo(cut);
+            } catch (IOException | RuntimeException e) {
+                synchronized (this) {
+                    if (failure == null) failure = e instanceof IOException ? (IOException) e : new IOException(e);
+                }
+                throw e;
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Wait for a checkpoint started by checkpoint().
+     */
+    static void await(Future<?> checkpoint) throws IOException {
+        try {
+            checkpoint.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a journal checkpoint");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IOException("Journal checkpoint failed", cause);
+        }
+    }
+
+    private void writeSnapshot(TextView text, long version) throws IOException {
+        Path temp = Files.createTempFile(snapshotFile.toAbsolutePath().getParent(),
+                snapshotFile.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                ByteBuffer header = ByteBuffer.allocate(SNAPSHOT_HEADER_BYTES);
+                header.putInt(SNAPSHOT_MAGIC).putLong(version).flip();
+                while (header.hasRemaining()) {
+                    out.write(header);
+                }
+                text.writeTo(out, StandardCharsets.UTF_8);
+                out.force(false);
+            }
+            Files.move(temp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // Drop the records before the given journal position. Records after it were appended while the
+    // snapshot was written; they are few, and are copied into a new journal file that replaces the old
+    private synchronized void truncateTo(long cut) throws IOException {
+        sync();
+        long from = cut - droppedBytes;
+        if (from == journalBytes) {
+            channel.truncate(0);
+            channel.force(false);
+        } else {
+            Path temp = Files.createTempFile(journalFile.toAbsolutePath().getParent(),
+                    journalFile.getFileName().toString(), ".tmp");
+            try {
+                try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                    long position = from;
+                    while (position < journalBytes) {
+                        position += channel.transferTo(position, journalBytes - position, out);
+                    }
+                    out.force(false);
+                }
+                Files.move(temp, journalFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            channel.close();
+            channel = FileChannel.open(journalFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        journalBytes -= from;
+        droppedBytes += from;
+    }
+
+    /**
+     * Let running checkpoints finish, write the buffered records and close the journal.
+     * Reports a checkpoint or background write that failed.
+     */
+    void close() throws IOException {
+        syncer.shutdown();
+        try {
+            while (!syncer.awaitTermination(1, TimeUnit.MINUTES)) {
+                // A checkpoint of a very large document is still being written
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while closing the journal");
+        }
+        synchronized (this) {
+            try {
+                sync();
+            } finally {
+                channel.close();
+            }
+            if (failure != null) throw failure;
+        }
+    }
+
+    private synchronized void syncQuietly() {
+        try {
+            sync();
+        } catch (IOException e) {
+            if (failure == null) failure = e;
+        }
+    }
+
+    // ===========================================================================================
+    // RECOVERY
+    // ===========================================================================================
+
+    /**
+     * Version stored in a snapshot header, or -1 if the file is missing.
+     */
+    static long readSnapshotVersion(Path snapshotFile) throws IOException {
+        if (!Files.exists(snapshotFile)) return -1;
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(snapshotFile))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Not an editor snapshot: " + snapshotFile);
+            }
+            return in.readLong();
+        }
+    }
+
+    /**
+     * Apply every intact record newer than fromVersion to the buffer, trim a torn tail off the
+     * journal, and return the version of the last applied record (or fromVersion).
+     */
+    static long replay(Path journalFile, long fromVersion, TextBuffer buffer) throws IOException {
+        if (!Files.exists(journalFile)) return fromVersion;
+
+        long version = fromVersion;
+        long validBytes = 0;
+        try (FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 1 << 16));
+            while (true) {
+                byte[] payload;
+                try {
+                    int length = in.readInt();
+                    int checksum = in.readInt();
+                    if (length < 20 || length > channel.size()) break;
+                    payload = new byte[length];
+                    in.readFully(payload);
+                    CRC32 crc = new CRC32();
+                    crc.update(payload);
+                    if ((int) crc.getValue() != checksum) break;
+                } catch (EOFException e) {
+                    break;
+                }
+
+                DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+                long recordVersion = record.readLong();
+                int offset = record.readInt();
+                int removedLength = record.readInt();
+                int insertedLength = record.readInt();
+                if (recordVersion > version) {
+                    if (offset == RESET) break; // The snapshot taken after this reset was never written
+                    if (offset < 0 || removedLength < 0 || offset + removedLength > buffer.length()) break;
+                    char[] inserted = new char[insertedLength];
+                    for (int i = 0; i < insertedLength; i++) {
+                        inserted[i] = record.readChar();
+                    }
+                    buffer.delete(offset, removedLength);
+                    buffer.insert(offset, new String(inserted));
+                    version = recordVersion;
+                }
+                validBytes += 8 + payload.length;
+            }
+            channel.truncate(validBytes); // Drop a record that was only partly written
+        }
+        return version;
+    }
+}
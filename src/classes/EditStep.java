@@ -0,0 +1,206 @@
+package classes;
+
+/**
+ * ===========================================================================================
+ * BATCH: EditStep
+ * ===========================================================================================
+ * One line of an edit script:
+ * <pre>
+ * insert &lt;position&gt; &lt;text&gt;    text runs to the end of the line; \n \r \t \\ are escapes
+ * delete &lt;position&gt; &lt;length&gt;
+ * undo
+ * redo
+ * </pre>
+ * Blank lines and lines starting with # are comments. A line may start with {@code @<ms> },
+ * the time of the step in milliseconds since a recording started (see TraceRecorder);
+ * replays that do not pace themselves ignore it.
+ */
+public final class EditStep {
+    public enum Kind { INSERT, DELETE, UNDO, REDO }
+
+    private final Kind kind;
+    private final int position;
+    private final int length;
+    private final String text; // Inserted text, null for other kinds
+    private final long time;   // Milliseconds since the recording started, -1 if not recorded
+
+    private EditStep(Kind kind, int position, int length, String text, long time) {
+        this.kind = kind;
+        this.position = position;
+        this.length = length;
+        this.text = text;
+        this.time = time;
+    }
+
+    private EditStep(Kind kind, int position, int length, String text) {
+        this(kind, position, length, text, -1);
+    }
+
+    public static EditStep insert(int position, String text) {
+        return new EditStep(Kind.INSERT, position, text.length(), text);
+    }
+
+    public static EditStep delete(int position, int length) {
+        return new EditStep(Kind.DELETE, position, length, null);
+    }
+
+    public static EditStep undo() {
+        return new EditStep(Kind.UNDO, 0, 0, null);
+    }
+
+    public static EditStep redo() {
+        return new EditStep(Kind.REDO, 0, 0, null);
+    }
+
+    /**
+     * The same step, recorded at the given time.
+     */
+    public EditStep at(long time) {
+        if (time < 0) {
+            throw new IllegalArgumentException("Step time cannot be negative: " + time);
+        }
+        return new EditStep(kind, position, length, text, time);
+    }
+
+    /**
+     * Parse one script line; returns null for blank and comment lines.
+     */
+    public static EditStep parse(String line) {
+        if (line.isBlank() || line.startsWith("#")) return null;
+        try {
+            if (line.startsWith("@")) {
+                int space = line.indexOf(' ');
+                if (space < 0) {
+                    throw new IllegalArgumentException("Timed edit script line without a step: " + line);
+                }
+                EditStep step = parse(line.substring(space + 1));
+                if (step == null) {
+                    throw new IllegalArgumentException("Timed edit script line without a step: " + line);
+                }
+                return step.at(Long.parseLong(line.substring(1, space)));
+            }
+            if (line.startsWith("insert ")) {
+                int space = line.indexOf(' ', 7);
+                if (space < 0) space = line.length();
+                int position = Integer.parseInt(line.substring(7, space));
+                return insert(position, space < line.length() ? unescape(line.substring(space + 1)) : "");
+            }
+            if (line.startsWith("delete ")) {
+                String[] fields = line.substring(7).trim().split(" +");
+                if (fields.length == 2) {
+                    return delete(Integer.parseInt(fields[0]), Integer.parseInt(fields[1]));
+                }
+            } else if (line.trim().equals("undo")) {
+                return undo();
+            } else if (line.trim().equals("redo")) {
+                return redo();
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Bad number in edit script line: " + line, e);
+        }
+        throw new IllegalArgumentException("Not an edit script line: " + line);
+    }
+
+    /**
+     * The script line for this step (without the line break).
+     */
+    public String format() {
+        return time < 0 ? formatStep() : "@" + time + " " + formatStep();
+    }
+
+    private String formatStep() {
+        switch (kind) {
+            case INSERT:
+                return "insert " + position + " " + escape(text);
+            case DELETE:
+                return "delete " + position + " " + length;
+            case UNDO:
+                return "undo";
+            default:
+                return "redo";
+        }
+    }
+
+    /**
+     * Apply the step to the editor through its normal command API.
+     */
+    public void applyTo(Editor editor) {
+        switch (kind) {
+            case INSERT:
+                editor.insert(text, position);
+                break;
+            case DELETE:
+                editor.delete(length, position);
+                break;
+            case UNDO:
+                editor.undo();
+                break;
+            case REDO:
+                editor.redo();
+                break;
+        }
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public int getPosition() {
+        return position;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * Milliseconds since the recording started, or -1 for a step that was not recorded.
+     */
+    public long getTime() {
+        return time;
+    }
+
+    @Override
+    public String toString() {
+        return format();
+    }
+
+    private static String escape(String text) {
+        StringBuilder sb = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default: sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String unescape(String text) {
+        if (text.indexOf('\\') < 0) return text;
+        StringBuilder sb = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c != '\\' || i + 1 == text.length()) {
+                sb.append(c);
+                continue;
+            }
+            char next = text.charAt(++i);
+            switch (next) {
+                case 'n': sb.append('\n'); break;
+                case 'r': sb.append('\r'); break;
+                case 't': sb.append('\t'); break;
+                default: sb.append(next);
+            }
+        }
+        return sb.toString();
+    }
+}
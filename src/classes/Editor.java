@@ -4,8 +4,29 @@ import interfaces.EditorState;
 import interfaces.Subject;
 import interfaces.Observer;
 import interfaces.Command;
+import interfaces.TextBuffer;
+import interfaces.TextView;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * ===========================================================================================
@@ -15,18 +36,58 @@ import java.util.List;
  * 1. SUBJECT (Observer Pattern): Notifies observers when content changes
  * 2. ORIGINATOR (Memento Pattern): Creates and restores mementos of its state
  * 3. CONTEXT (State Pattern): Delegates behavior to the current state object
+ *
+ * Thread safety: every change runs under a single writer lock (a compound edit holds it from
+ * begin to end). After each change the editor publishes an immutable, versioned
+ * DocumentSnapshot; read methods called from any thread other than the writer answer from
+ * that snapshot, so readers never block edits and never see half of a compound edit.
  */
-public class Editor implements Subject {
-    private String content;
+public class Editor implements Subject, AutoCloseable {
+    private static final int DEFAULT_HOT_MEMENTOS = 8;
+    private static final int MAX_HELD_SPAN = 4096;    // Held edits closer together are combined into one event
+    private static final int MAX_HELD_CHANGES = 256;  // More held events than this are sent as one reset
+
+    private final TextBuffer buffer;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private volatile DocumentSnapshot published; // Latest complete version, read without locking
+    private String cachedContent; // Lazily built String view of the buffer, dropped on every change
     private List<Observer> observers;
-    private EditorState currentState;
+    private final List<Observer> synchronousObservers = new CopyOnWriteArrayList<>();
+    private volatile EditorState currentState;
     private CommandHistory history;
+    private CompositeCommand openCompound; // Collects edits between begin/endCompoundEdit()
+    private int compoundDepth;
+    private int notificationHolds;
+    private DocumentChange pendingChange; // Latest change made while notifications are held
+    private final List<DocumentChange> heldChanges = new ArrayList<>(); // Held changes before pendingChange
+    private int heldFromLength;           // Length when changes were first held
+    private int suspendDepth;
+    private int suspendedFromLength = -1; // Length when changes were first suspended, -1 if none since
+    private AsyncObserverDispatcher dispatcher; // null while observers are notified synchronously
+    private MappedTextFile openedFile;
+    private volatile Charset fileCharset = StandardCharsets.UTF_8;
+    private EditJournal journal; // null unless crash-recovery journaling is enabled
+    private volatile EditorMetrics metrics; // null while metrics are off
+    private volatile TraceRecorder recorder; // null unless the session is being recorded
+    private CollaborationClient collaboration; // null unless the document is shared
+    private boolean applyingRemote; // Changes made now came from a collaborator, not from here
+    private VersionHistory versions; // null unless version history is enabled
+    private final MementoStore mementos = new MementoStore(DEFAULT_HOT_MEMENTOS);
+    private long version;
 
     public Editor() {
-        this.content = "";
-        this.observers = new ArrayList<>();
+        this(new PieceTableBuffer());
+    }
+
+    /**
+     * Create an editor on top of a specific text buffer implementation.
+     */
+    public Editor(TextBuffer buffer) {
+        this.buffer = buffer;
+        this.observers = new CopyOnWriteArrayList<>(); // Iterated by the async dispatcher
         this.currentState = new InsertState(); // Default state
-        this.history = new CommandHistory();
+        this.history = new CommandHistory(this);
+        this.published = new DocumentSnapshot(buffer.snapshot(), 0, null);
     }
 
     // ===========================================================================================
@@ -37,38 +98,637 @@ public class Editor implements Subject {
      * Insert text at the specified position using the Command pattern.
      */
     public void insert(String text, int position) {
-        Command command = new InsertCommand(this, text, position);
-        history.executeCommand(command);
+        writeLock.lock();
+        try {
+            Command command = new InsertCommand(this, text, position);
+            execute(command);
+            record(EditStep.insert(position, text));
+        } finally {
+            writeLock.unlock();
+        }
     }
 
     /**
      * Delete text of specified length at the specified position using the Command pattern.
      */
     public void delete(int length, int position) {
-        Command command = new DeleteCommand(this, length, position);
-        history.executeCommand(command);
+        writeLock.lock();
+        try {
+            Command command = new DeleteCommand(this, length, position);
+            execute(command);
+            record(EditStep.delete(position, length));
+        } finally {
+            writeLock.unlock();
+        }
     }
 
     /**
      * Undo the last command.
      */
     public void undo() {
-        history.undo();
+        writeLock.lock();
+        try {
+            checkNoCompoundEdit("undo");
+            EditorMetrics timing = metrics;
+            CommandEvent event = timing == null ? null : timing.begin();
+            Command undone = history.undo();
+            if (timing != null && undone != null) {
+                timing.commandFinished(event, undone, EditorMetrics.Phase.UNDO, history);
+            }
+            record(EditStep.undo());
+        } finally {
+            writeLock.unlock();
+        }
     }
 
     /**
      * Redo the last undone command.
      */
     public void redo() {
-        history.redo();
+        writeLock.lock();
+        try {
+            checkNoCompoundEdit("redo");
+            EditorMetrics timing = metrics;
+            CommandEvent event = timing == null ? null : timing.begin();
+            Command redone = history.redo();
+            if (timing != null && redone != null) {
+                timing.commandFinished(event, redone, EditorMetrics.Phase.REDO, history);
+            }
+            record(EditStep.redo());
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // ===========================================================================================
+    // SEARCH: Find and replace-all
+    // ===========================================================================================
+
+    /**
+     * First match at or after from, or null.
+     */
+    public SearchMatch find(TextSearch search, int from) {
+        return search.findNext(view(), from);
+    }
+
+    /**
+     * Every non-overlapping match in the document; large documents are searched in parallel.
+     */
+    public List<SearchMatch> findAll(TextSearch search) {
+        return search.findAll(view());
+    }
+
+    /**
+     * Replace every match in one pass, as a single undoable command with one notification.
+     * Returns the number of replacements; nothing is recorded when there is no match.
+     */
+    public int replaceAll(TextSearch search, String replacement) {
+        writeLock.lock();
+        try {
+            EditorMetrics timing = metrics;
+            CommandEvent event = timing == null ? null : timing.begin(); // Searching is part of the command
+            ReplaceAllCommand command = new ReplaceAllCommand(this, search, replacement);
+            int count = command.prepare();
+            if (count > 0) {
+                perform(command);
+                if (timing != null) {
+                    timing.commandFinished(event, command, EditorMetrics.Phase.EXECUTE, history);
+                }
+            }
+            return count;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Apply many positioned edits at once, e.g. typing at every cursor of a multi-cursor
+     * selection. Edits must be sorted by position and must not overlap; every position refers
+     * to the document before the call, so no offsets need adjusting. They are applied to the
+     * buffer from last to first and form one undo entry; observers get them as edit events
+     * once all are applied. The command keeps each edit's inverse, so undo costs the size of
+     * the edits, not of the document.
+     */
+    public void applyEdits(List<TextEdit> edits) {
+        writeLock.lock();
+        try {
+            int[] starts = new int[edits.size()];
+            String[] removed = new String[edits.size()];
+            String[] inserted = new String[edits.size()];
+            int count = 0;
+            int end = 0; // End of the previous edit's deleted range
+            for (TextEdit edit : edits) {
+                int position = edit.getPosition();
+                if (position < end || position + edit.getDeleteLength() > buffer.length()) {
+                    throw new IllegalArgumentException(edit + " is out of order, overlaps another edit or lies "
+                            + "outside the document (length " + buffer.length() + ")");
+                }
+                end = position + edit.getDeleteLength();
+                if (edit.getDeleteLength() == 0 && edit.getInsertText().isEmpty()) continue;
+                starts[count] = position;
+                removed[count] = buffer.getText(position, end);
+                inserted[count] = edit.getInsertText();
+                count++;
+            }
+            if (count > 0) {
+                execute(ReplaceAllCommand.edits(this, Arrays.copyOf(starts, count), Arrays.copyOf(removed, count),
+                        Arrays.copyOf(inserted, count)));
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // ===========================================================================================
+    // COMPOSITE COMMANDS: Group several edits into one undo step and one notification
+    // ===========================================================================================
+
+    /**
+     * Start collecting edits into one compound command. Edits are applied immediately,
+     * but observers are only notified once the outermost compound edit ends.
+     * Calls may be nested; only the outermost pair creates a history entry.
+     */
+    public void beginCompoundEdit() {
+        writeLock.lock(); // Released by the matching endCompoundEdit()
+        if (compoundDepth++ == 0) {
+            openCompound = new CompositeCommand(this);
+            holdNotifications();
+        }
+    }
+
+    /**
+     * Finish the current compound edit and record it as a single undo step.
+     */
+    public void endCompoundEdit() {
+        if (!writeLock.isHeldByCurrentThread() || compoundDepth == 0) {
+            throw new IllegalStateException("No compound edit in progress!");
+        }
+        try {
+            if (--compoundDepth == 0) {
+                CompositeCommand compound = openCompound;
+                openCompound = null;
+                try {
+                    if (!compound.isEmpty()) {
+                        history.record(compound);
+                        historyChanged();
+                    }
+                } finally {
+                    releaseNotifications();
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Run a group of edits as one compound edit.
+     */
+    public void batch(Runnable edits) {
+        beginCompoundEdit();
+        try {
+            edits.run();
+        } finally {
+            endCompoundEdit();
+        }
+    }
+
+    /**
+     * Set the time window (ms) within which adjacent single-character edits are merged
+     * into one undo step. 0 disables merging.
+     */
+    public void setCoalesceWindow(long millis) {
+        writeLock.lock();
+        try {
+            history.setCoalesceWindow(millis);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void execute(Command command) {
+        EditorMetrics timing = metrics;
+        if (timing == null) {
+            perform(command);
+            return;
+        }
+        CommandEvent event = timing.begin();
+        perform(command);
+        timing.commandFinished(event, command, EditorMetrics.Phase.EXECUTE, history);
+    }
+
+    private void perform(Command command) {
+        if (openCompound != null) {
+            command.execute();
+            openCompound.add(command);
+        } else {
+            history.executeCommand(command);
+        }
+    }
+
+    void checkNoCompoundEdit(String operation) {
+        if (openCompound != null) {
+            throw new IllegalStateException("Cannot " + operation + " during a compound edit!");
+        }
     }
 
     public boolean canUndo() {
-        return history.canUndo();
+        writeLock.lock();
+        try {
+            return history.canUndo();
+        } finally {
+            writeLock.unlock();
+        }
     }
 
     public boolean canRedo() {
-        return history.canRedo();
+        writeLock.lock();
+        try {
+            return history.canRedo();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Bound the undo history by entry count and/or retained bytes, optionally
+     * spilling old entries to disk instead of discarding them.
+     */
+    public void setHistoryPolicy(HistoryPolicy policy) {
+        writeLock.lock();
+        try {
+            history.setPolicy(policy);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Release history resources such as the spill file.
+     */
+    @Override
+    public void close() {
+        writeLock.lock();
+        try {
+            history.close();
+            setAsyncNotifications(false);
+            try {
+                disableJournal();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not flush the journal", e);
+            } finally {
+                closeOpenedFile();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // ===========================================================================================
+    // METRICS: Command latency, observer time, history size
+    // ===========================================================================================
+
+    /**
+     * Start measuring commands and observers; returns the (possibly already running) metrics.
+     */
+    public EditorMetrics enableMetrics() {
+        writeLock.lock();
+        try {
+            if (metrics == null) {
+                EditorMetrics enabled = new EditorMetrics(this);
+                enabled.historyChanged(history);
+                metrics = enabled;
+            }
+            return metrics;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Stop measuring; metrics already handed out keep their values.
+     */
+    public void disableMetrics() {
+        writeLock.lock();
+        try {
+            metrics = null;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * The running metrics, or null while they are off.
+     */
+    public EditorMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Record every insert, delete, undo and redo from now on as a timed edit script; null
+     * stops recording. The caller closes the recorder.
+     */
+    public void setTraceRecorder(TraceRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    // Called under the writer lock, so steps are recorded in the order they ran
+    private void record(EditStep step) {
+        TraceRecorder tracing = recorder;
+        if (tracing != null) {
+            tracing.record(step);
+        }
+    }
+
+    // ===========================================================================================
+    // FILE I/O: Memory-mapped open and streaming save
+    // ===========================================================================================
+
+    /**
+     * Open a UTF-8 file. See openFile(Path, Charset).
+     */
+    public void openFile(Path file) throws IOException {
+        openFile(file, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Replace the document with a memory-mapped file. The mapping becomes the read-only original
+     * buffer: unedited regions are decoded on demand and never copied into a String.
+     * Like setContent(), this clears the undo/redo history.
+     */
+    public void openFile(Path file, Charset charset) throws IOException {
+        writeLock.lock();
+        try {
+            MappedTextFile mapped = MappedTextFile.open(file, charset);
+            try {
+                journalReset();
+            } catch (RuntimeException e) {
+                mapped.close();
+                throw e;
+            }
+            closeOpenedFile();
+            openedFile = mapped;
+            fileCharset = charset;
+
+            discardHistory();
+            int previousLength = buffer.length();
+            buffer.load(mapped);
+            cachedContent = null;
+            contentChanged(journal(DocumentChange.reset(eventDocument(), null, previousLength, ++version)));
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Save the document in the charset it was opened with (UTF-8 by default).
+     * Unedited ranges are copied from the mapped file with transferTo. The data goes to a
+     * temporary file that then replaces the target, so saving over the opened file is safe.
+     * The temporary file takes the target's POSIX permissions, and its owner and group where
+     * the process may set them, so replacing the file does not change who can read it. A new
+     * file gets the default permissions (0666 minus the umask), as with a plain FileWriter.
+     * Writes the latest published snapshot, so a background autosave does not block edits.
+     */
+    public void saveFile(Path file) throws IOException {
+        Path target = file.toAbsolutePath();
+        Path temp = null;
+        try {
+            FileChannel out = null;
+            while (out == null) {
+                // Not Files.createTempFile: that makes the file owner-only (0600) whatever the umask
+                int suffix = ThreadLocalRandom.current().nextInt(1 << 30);
+                temp = target.resolveSibling("." + target.getFileName() + "." + suffix + ".tmp");
+                try {
+                    out = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+                } catch (FileAlreadyExistsException e) {
+                    temp = null;
+                }
+            }
+            try (FileChannel channel = out) {
+                view().writeTo(channel, fileCharset);
+                channel.force(false);
+            }
+            copyPermissions(target, temp);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            if (temp != null) Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void copyPermissions(Path from, Path to) throws IOException {
+        PosixFileAttributeView source = Files.getFileAttributeView(from, PosixFileAttributeView.class);
+        PosixFileAttributeView copy = Files.getFileAttributeView(to, PosixFileAttributeView.class);
+        if (source == null || copy == null || !Files.exists(from)) return;
+        PosixFileAttributes attributes = source.readAttributes();
+        try {
+            copy.setOwner(attributes.owner());
+        } catch (IOException | SecurityException e) {
+            // Only privileged processes may give files away; the saving user keeps ownership
+        }
+        try {
+            copy.setGroup(attributes.group());
+        } catch (IOException | SecurityException e) {
+            // Not a member of the target's group
+        }
+        copy.setPermissions(attributes.permissions());
+    }
+
+    // ===========================================================================================
+    // CRASH RECOVERY: Write-ahead journal on top of a snapshot
+    // ===========================================================================================
+
+    /**
+     * Start journaling every change. The current document is written as the first snapshot;
+     * afterwards each edit only appends its delta (fsynced in batches) before it is applied,
+     * and a new snapshot is written in the background after every reset and once the journal
+     * grows large. If the journal cannot be written, edits fail and leave the document as it was.
+     */
+    public void enableJournal(Path snapshotFile, Path journalFile) throws IOException {
+        writeLock.lock();
+        try {
+            disableJournal();
+            journal = new EditJournal(snapshotFile, journalFile);
+            EditJournal.await(journal.checkpoint(buffer.snapshot(), version));
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Rebuild the document after a crash: map the last snapshot, replay the journal on top of it,
+     * and keep journaling to the same files. The undo/redo history starts empty.
+     */
+    public void recover(Path snapshotFile, Path journalFile) throws IOException {
+        writeLock.lock();
+        try {
+            disableJournal();
+            discardHistory();
+            int previousLength = buffer.length();
+            long snapshotVersion = EditJournal.readSnapshotVersion(snapshotFile);
+            if (snapshotVersion >= 0) {
+                MappedTextFile mapped = MappedTextFile.open(snapshotFile, StandardCharsets.UTF_8,
+                        EditJournal.SNAPSHOT_HEADER_BYTES);
+                closeOpenedFile();
+                openedFile = mapped;
+                fileCharset = StandardCharsets.UTF_8;
+                buffer.load(mapped);
+            } else {
+                buffer.setText("");
+                snapshotVersion = 0;
+            }
+            version = EditJournal.replay(journalFile, snapshotVersion, buffer);
+            cachedContent = null;
+            journal = new EditJournal(snapshotFile, journalFile);
+            contentChanged(DocumentChange.reset(eventDocument(), null, previousLength, version));
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Write a full snapshot now and restart the journal from it. Edits can continue while the
+     * snapshot is written; this call returns once it is on disk.
+     */
+    public void checkpoint() throws IOException {
+        Future<?> written;
+        writeLock.lock();
+        try {
+            if (journal == null) return;
+            written = journal.checkpoint(buffer.snapshot(), version);
+        } finally {
+            writeLock.unlock();
+        }
+        EditJournal.await(written);
+    }
+
+    /**
+     * Flush pending journal records and stop journaling.
+     */
+    public void disableJournal() throws IOException {
+        writeLock.lock();
+        try {
+            if (journal != null) {
+                EditJournal closing = journal;
+                journal = null;
+                closing.close();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Journal records are buffered before the buffer changes, so a journal failure leaves the
+    // document, history and observers as they were
+    private void journalEdits(List<TextEdit> edits) {
+        if (journal != null) journal.append(version + 1, edits);
+    }
+
+    // Reset events cannot be replayed as deltas: the journal marks them, and the new snapshot
+    // that captures them is written in the background once the change is made (see journal())
+    private void journalReset() {
+        if (journal != null) journal.appendReset(version + 1);
+    }
+
+    // After a change: start a background checkpoint after a reset, or once the journal is large
+    private DocumentChange journal(DocumentChange change) {
+        if (journal != null && (change.isReset() || journal.shouldCheckpoint())) {
+            journal.checkpoint(buffer.snapshot(), version);
+        }
+        return change;
+    }
+
+    // ===========================================================================================
+    // COLLABORATION: Sharing the document with other editors through a CollaborationClient
+    // ===========================================================================================
+
+    /**
+     * Replace the document with the shared content and report every later change to the client.
+     * Like setContent(), this clears the undo/redo history.
+     */
+    void startCollaboration(CollaborationClient client, String content) {
+        writeLock.lock();
+        try {
+            checkNoCompoundEdit("join a collaboration");
+            collaboration = null;
+            setContent(content);
+            collaboration = client;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    void stopCollaboration() {
+        writeLock.lock();
+        try {
+            collaboration = null;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Run a step while holding the writer lock, so no local edit can interleave with it.
+     */
+    void runLocked(Runnable step) {
+        writeLock.lock();
+        try {
+            step.run();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Apply an edit made by another collaborator: one notification, no history entry, and the
+     * edit is queued for the undo/redo history (see CommandHistory.rebase) so undo only ever
+     * reverts this editor's own changes.
+     */
+    void applyRemote(TextOperation operation) {
+        writeLock.lock();
+        try {
+            checkNoCompoundEdit("apply a remote edit");
+            holdNotifications();
+            try {
+                applyingRemote = true;
+                try {
+                    operation.applyTo(this);
+                } finally {
+                    applyingRemote = false;
+                }
+                // Before observers run, as they may edit again on top of the merged document
+                history.rebase(operation);
+            } finally {
+                releaseNotifications();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void closeOpenedFile() {
+        if (openedFile != null) {
+            try {
+                openedFile.close(); // The mapping itself stays readable for snapshots still in use
+            } catch (IOException e) {
+                // Nothing to recover: the channel is only needed for saving
+            }
+            openedFile = null;
+        }
+    }
+
+    private void discardHistory() {
+        history.clear();
+        if (openCompound != null) {
+            openCompound = new CompositeCommand(this);
+        }
+        historyChanged();
+    }
+
+    private void historyChanged() {
+        EditorMetrics timing = metrics;
+        if (timing != null) {
+            timing.historyChanged(history);
+        }
     }
 
     // ===========================================================================================
@@ -76,17 +736,198 @@ public class Editor implements Subject {
     // ===========================================================================================
 
     public String getContent() {
-        return content;
+        if (!writeLock.isHeldByCurrentThread()) {
+            return published.toString();
+        }
+        if (cachedContent == null) {
+            cachedContent = buffer.toString();
+        }
+        return cachedContent;
     }
 
     /**
-     * Set content and notify observers.
-     * This method is called by State objects when performing operations
-     * and by the restore() method when applying a memento.
+     * Replace the whole content and notify observers.
+     * The document is replaced outside the command history, so the undo/redo history is cleared:
+     * its deltas no longer describe this document.
      */
     public void setContent(String content) {
-        this.content = content;
-        notifyObservers(); // OBSERVER PATTERN: Notify all observers of the change
+        writeLock.lock();
+        try {
+            discardHistory();
+            replaceContent(content);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Replace the whole content with one reset event, without touching the history
+    private void replaceContent(String content) {
+        writeLock.lock();
+        try {
+            journalReset();
+            int previousLength = buffer.length();
+            buffer.setText(content);
+            cachedContent = content;
+            // OBSERVER PATTERN: Notify all observers of the change
+            contentChanged(journal(DocumentChange.reset(eventDocument(), content, previousLength, ++version)));
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Insert text into the buffer without copying the document, then notify observers.
+     * Called by State objects; the position must already be clamped to the document.
+     */
+    public void applyInsert(String text, int position) {
+        writeLock.lock();
+        try {
+            journalEdits(List.of(TextEdit.insert(position, text)));
+            buffer.insert(position, text);
+            cachedContent = null;
+            contentChanged(journal(DocumentChange.edit(eventDocument(), position, "", text, ++version)));
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Delete a range from the buffer without copying the document, then notify observers.
+     * Called by State objects; the range must already be clamped to the document.
+     */
+    public void applyDelete(int length, int position) {
+        writeLock.lock();
+        try {
+            String removed = buffer.getText(position, position + length);
+            journalEdits(List.of(TextEdit.delete(position, length)));
+            buffer.delete(position, length);
+            cachedContent = null;
+            contentChanged(journal(DocumentChange.edit(eventDocument(), position, removed, "", ++version)));
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Apply replacements at several places as separate edits, e.g. every match of a
+     * replace-all. Edits are sorted by position, do not overlap and refer to the document
+     * before the call; they are applied from last to first, so no position needs adjusting.
+     * Observers get one edit event per replacement once all of them are applied.
+     * Called by State objects; the edits must already lie inside the document.
+     */
+    public void applyReplacements(List<TextEdit> edits) {
+        writeLock.lock();
+        try {
+            List<TextEdit> applied = new ArrayList<>(edits);
+            Collections.reverse(applied);
+            journalEdits(applied); // All of them or none, before anything changes
+            holdNotifications();
+            try {
+                for (TextEdit edit : applied) {
+                    int position = edit.getPosition();
+                    String removed = buffer.getText(position, position + edit.getDeleteLength());
+                    if (!removed.isEmpty()) buffer.delete(position, removed.length());
+                    if (!edit.getInsertText().isEmpty()) buffer.insert(position, edit.getInsertText());
+                    cachedContent = null;
+                    contentChanged(journal(DocumentChange.edit(eventDocument(), position, removed,
+                            edit.getInsertText(), ++version)));
+                }
+            } finally {
+                releaseNotifications();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Number of changes applied to the document so far.
+     */
+    public long getVersion() {
+        return writeLock.isHeldByCurrentThread() ? version : published.getVersion();
+    }
+
+    public int getLength() {
+        return view().length();
+    }
+
+    /**
+     * Read the characters in [start, end) without building the whole document.
+     */
+    public String getText(int start, int end) {
+        return view().getText(start, end);
+    }
+
+    // ===========================================================================================
+    // LINES: Zero-based line / column lookups, O(log n) on the buffer's line index
+    // ===========================================================================================
+
+    /**
+     * Number of lines; lines are separated by '\n' and an empty document has one line.
+     */
+    public int getLineCount() {
+        return view().getLineCount();
+    }
+
+    /**
+     * Zero-based line containing the offset (0 <= offset <= getLength()).
+     */
+    public int getLineOfOffset(int offset) {
+        return view().getLineOfOffset(offset);
+    }
+
+    /**
+     * Zero-based column of the offset within its line.
+     */
+    public int getColumnOfOffset(int offset) {
+        TextView view = view();
+        return offset - view.getLineStartOffset(view.getLineOfOffset(offset));
+    }
+
+    /**
+     * Offset of the first character of a zero-based line.
+     */
+    public int getLineStartOffset(int line) {
+        return view().getLineStartOffset(line);
+    }
+
+    /**
+     * Offset just past the last character of a line, not counting its '\n'.
+     */
+    public int getLineEndOffset(int line) {
+        TextView view = view();
+        return line + 1 < view.getLineCount() ? view.getLineStartOffset(line + 1) - 1 : view.length();
+    }
+
+    /**
+     * Offset of a zero-based (line, column) position; the column is clamped to the line.
+     */
+    public int getOffset(int line, int column) {
+        TextView view = view();
+        int start = view.getLineStartOffset(line);
+        int end = line + 1 < view.getLineCount() ? view.getLineStartOffset(line + 1) - 1 : view.length();
+        return start + Math.max(0, Math.min(column, end - start));
+    }
+
+    /**
+     * Read-only view of the live text buffer; only valid on the thread that is editing.
+     * Other threads should use snapshot().
+     */
+    public CharSequence getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Immutable snapshot of the latest complete version of the document. Lock-free and O(1):
+     * any thread may read it for as long as it likes while edits continue.
+     */
+    public DocumentSnapshot snapshot() {
+        return published;
+    }
+
+    // The writer (or a thread inside a compound edit) reads the live buffer, everyone else the snapshot
+    private TextView view() {
+        return writeLock.isHeldByCurrentThread() ? buffer : published;
     }
 
     // ===========================================================================================
@@ -95,17 +936,163 @@ public class Editor implements Subject {
 
     /**
      * Create a memento containing the current state.
+     * Full snapshots are for explicit checkpoints; commands keep their own deltas for undo.
+     * Outside a compound edit this is O(1): the memento keeps the published snapshot.
+     * Saving may compress the oldest memento that is still on the heap (see getMementoStore()).
      */
     public EditorMemento save() {
-        return new EditorMemento(content);
+        EditorMemento memento = new EditorMemento(writeLock.isHeldByCurrentThread() ? getContent() : published);
+        mementos.add(memento);
+        return memento;
     }
 
     /**
-     * Restore state from a memento.
+     * Where this editor's mementos live: the most recent on the heap, older ones compressed.
+     */
+    public MementoStore getMementoStore() {
+        return mementos;
+    }
+
+    /**
+     * Restore state from a memento. Restoring a checkpoint is itself an undoable command.
      */
     public void restore(EditorMemento memento) {
-        if (memento != null) {
-            setContent(memento.getContent());
+        writeLock.lock();
+        try {
+            if (memento != null) {
+                execute(new RestoreCommand(this, memento));
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // ===========================================================================================
+    // VERSIONS: Jumping back to any earlier version of the document
+    // ===========================================================================================
+
+    /**
+     * Keep every version of the document from now on, so restoreVersion() can return to any
+     * of them. A checkpoint is kept every checkpointInterval versions; only the newest
+     * maxVersions versions are kept (plus at most one checkpoint interval more).
+     */
+    public void enableVersionHistory(int checkpointInterval, int maxVersions) {
+        writeLock.lock();
+        try {
+            versions = new VersionHistory(checkpointInterval, maxVersions, buffer, version);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public void disableVersionHistory() {
+        writeLock.lock();
+        try {
+            versions = null;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Oldest version restoreVersion() can return to, or -1 while version history is off.
+     */
+    public long getOldestVersion() {
+        writeLock.lock();
+        try {
+            return versions == null ? -1 : versions.getOldestVersion();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Make the document what it was at an earlier version (see getVersion() and
+     * DocumentSnapshot.getVersion()). Whatever the distance, this costs a binary search over
+     * the checkpoints plus at most one checkpoint interval of deltas, and observers get one
+     * reset event. The jump produces a new version and is itself an undoable command.
+     */
+    public void restoreVersion(long target) {
+        writeLock.lock();
+        try {
+            checkVersionKept(target);
+            if (target != version) {
+                execute(new RestoreVersionCommand(this, target));
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * The edits that turn version from into version to (see TextDiff), both kept by the
+     * version history. The document itself does not change.
+     */
+    public List<TextEdit> diffVersions(long from, long to) {
+        writeLock.lock();
+        try {
+            return TextDiff.diff(versionText(from), versionText(to));
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * What changed between two kept versions, line by line (see TextDiff.format()).
+     */
+    public String compareVersions(long from, long to) {
+        writeLock.lock();
+        try {
+            TextView before = versionText(from);
+            return TextDiff.format(before, TextDiff.diff(before, versionText(to)));
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Rebuild a kept version as a snapshot, then put the current one back (both O(1) swaps)
+    private TextView versionText(long target) {
+        checkVersionKept(target);
+        TextView current = buffer.snapshot();
+        if (target == version) return current;
+        try {
+            versions.rewind(buffer, target);
+            return buffer.snapshot();
+        } finally {
+            buffer.restore(current);
+        }
+    }
+
+    private void checkVersionKept(long target) {
+        if (versions == null) {
+            throw new IllegalStateException("Version history is not enabled");
+        }
+        if (target < versions.getOldestVersion() || target > version) {
+            throw new IllegalArgumentException("Version " + target + " is not kept (versions "
+                    + versions.getOldestVersion() + " to " + version + " are)");
+        }
+    }
+
+    /**
+     * Rebuild a kept version as the next version, outside the command history
+     * (used by RestoreVersionCommand).
+     */
+    void jumpToVersion(long target) {
+        writeLock.lock();
+        try {
+            if (versions == null) {
+                throw new IllegalStateException("Version history is not enabled");
+            }
+            if (target < versions.getOldestVersion()) { // Undo/redo of a jump older than the kept versions
+                throw new IllegalStateException("Version " + target + " is no longer kept");
+            }
+            journalReset();
+            int previousLength = buffer.length();
+            versions.rewind(buffer, target);
+            cachedContent = null;
+            contentChanged(journal(DocumentChange.reset(eventDocument(), null, previousLength, ++version)));
+        } finally {
+            writeLock.unlock();
         }
     }
 
@@ -138,15 +1125,184 @@ public class Editor implements Subject {
         }
     }
 
+    /**
+     * Attach an observer that is always notified on the editing thread as part of the edit,
+     * even when asynchronous notifications are enabled. Meant for views that mirror the text
+     * and must apply every change in order; whatever they do adds to the cost of each edit.
+     */
+    public void attachSynchronous(Observer observer) {
+        if (!synchronousObservers.contains(observer)) {
+            synchronousObservers.add(observer);
+        }
+    }
+
     @Override
     public void detach(Observer observer) {
         observers.remove(observer);
+        synchronousObservers.remove(observer);
+    }
+
+    /**
+     * Defer notifications until the matching releaseNotifications() call.
+     */
+    void holdNotifications() {
+        notificationHolds++;
+    }
+
+    /**
+     * Publish once and send the changes made while notifications were held, if any.
+     */
+    void releaseNotifications() {
+        if (--notificationHolds > 0) return;
+        if (collaboration != null) {
+            collaboration.flushChanges(); // Collaborators get the held changes as one operation too
+        }
+        if (pendingChange != null) {
+            DocumentChange[] earlier = heldChanges.toArray(new DocumentChange[0]);
+            DocumentChange change = pendingChange;
+            heldChanges.clear();
+            pendingChange = null;
+            publish();
+            for (DocumentChange held : earlier) {
+                notifyObservers(held);
+            }
+            notifyObservers(change);
+        }
     }
 
+    /**
+     * Keep a change until notifications are released. Nearby edits are combined into one
+     * event (the cost of combining is their span); edits farther apart stay separate events,
+     * each with its own snapshot, and past MAX_HELD_CHANGES they collapse into a single reset.
+     */
+    private void hold(DocumentChange change) {
+        if (pendingChange == null) {
+            heldFromLength = lengthBefore(change);
+            pendingChange = change;
+        } else if (pendingChange.isReset() || change.isReset() || pendingChange.span(change) <= MAX_HELD_SPAN) {
+            pendingChange = pendingChange.then(change);
+        } else if (heldChanges.size() < MAX_HELD_CHANGES) {
+            heldChanges.add(pendingChange);
+            pendingChange = change;
+        } else {
+            heldChanges.clear();
+            pendingChange = DocumentChange.reset(eventDocument(), null, heldFromLength, version);
+        }
+    }
+
+    // Document length before the change was applied; only valid while it is the latest change
+    private int lengthBefore(DocumentChange change) {
+        return change.isReset()
+                ? change.getRemovedLength()
+                : buffer.length() - change.getInsertedText().length() + change.getRemovedLength();
+    }
+
+    /**
+     * Stop publishing snapshots and notifying observers until the matching resumeNotifications().
+     * Unlike holdNotifications(), changes are not combined into one delta (which costs the
+     * span of the edits); observers get a single reset event at the end instead.
+     * Must be called by the thread that holds the writer lock until the matching resume.
+     */
+    void suspendNotifications() {
+        suspendDepth++;
+    }
+
+    void resumeNotifications() {
+        if (--suspendDepth == 0 && suspendedFromLength >= 0) {
+            int previousLength = suspendedFromLength;
+            suspendedFromLength = -1;
+            publish();
+            notifyObservers(DocumentChange.reset(eventDocument(), null, previousLength, version));
+        }
+    }
+
+    private void contentChanged(DocumentChange change) {
+        if (versions != null) {
+            versions.record(change, buffer);
+        }
+        if (collaboration != null && !applyingRemote) {
+            collaboration.localChange(change, buffer.length(), notificationHolds > 0);
+        }
+        if (suspendDepth > 0) {
+            if (suspendedFromLength < 0) {
+                suspendedFromLength = lengthBefore(change);
+            }
+            return;
+        }
+        if (notificationHolds > 0) {
+            hold(change);
+        } else {
+            publish();
+            notifyObservers(change);
+        }
+    }
+
+    // Make the current content visible to readers on other threads; costs a few small objects
+    private void publish() {
+        published = new DocumentSnapshot(buffer.snapshot(), version, cachedContent);
+    }
+
+    /**
+     * Send every observer a reset event carrying the whole current content.
+     */
     @Override
     public void notifyObservers() {
+        notifyObservers(DocumentChange.reset(eventDocument(), getContent(), buffer.length(), version));
+    }
+
+    /**
+     * Send every observer the given change event, or queue it for the background worker
+     * when asynchronous notifications are enabled. Synchronous observers are called first.
+     */
+    public void notifyObservers(DocumentChange change) {
+        EditorMetrics timing = metrics;
+        for (Observer observer : synchronousObservers) {
+            EditorMetrics.notify(timing, observer, change);
+        }
+        if (dispatcher != null) {
+            dispatcher.dispatch(change);
+            return;
+        }
         for (Observer observer : observers) {
-            observer.update(content);
+            EditorMetrics.notify(timing, observer, change);
+        }
+    }
+
+    /**
+     * Deliver notifications on a background worker instead of inside each edit.
+     * Bursts of edits reach observers as one combined change; observers that touch Swing
+     * components must hand their results to the EDT themselves.
+     */
+    public void setAsyncNotifications(boolean async) {
+        writeLock.lock();
+        try {
+            if (async && dispatcher == null) {
+                dispatcher = new AsyncObserverDispatcher(observers, () -> metrics);
+            } else if (!async && dispatcher != null) {
+                dispatcher.flush();
+                dispatcher.shutdown();
+                dispatcher = null;
+            }
+        } finally {
+            writeLock.unlock();
         }
     }
+
+    public boolean isAsyncNotifications() {
+        return dispatcher != null;
+    }
+
+    /**
+     * Wait until observers have seen every change made so far (no-op in synchronous mode).
+     */
+    public void flushNotifications() {
+        if (dispatcher != null) {
+            dispatcher.flush();
+        }
+    }
+
+    // Asynchronous and held events are read after later edits, so they get an immutable snapshot
+    private CharSequence eventDocument() {
+        return dispatcher != null || notificationHolds > 0 ? buffer.snapshot() : buffer;
+    }
 }
@@ -1,20 +1,74 @@
 package classes;
 
+import java.nio.ByteBuffer;
+
 /**
  * ===========================================================================================
  * MEMENTO PATTERN: Memento class
  * ===========================================================================================
- * Purpose: Store a snapshot of the classes.Editor's text content state for undo/redo operations.
+ * Purpose: Store a full snapshot of the classes.Editor's text content as an explicit checkpoint.
+ * Commands undo through their own deltas; mementos are only taken when a caller asks for one.
  * This is an immutable object that preserves the editor's state at a specific point in time.
+ * The content may be an immutable DocumentSnapshot, in which case saving copies nothing and
+ * the String is only built if the memento is restored.
+ * Once a MementoStore decides the memento is cold, its content is only kept compressed off
+ * the heap and is inflated again on the next read. A snapshot is streamed into the compressor
+ * a chunk at a time and then let go, so the pieces it pinned can be collected once the
+ * document has moved on.
  */
 class EditorMemento {
-    private final String content;
+    private final int length;
+    private CharSequence content;  // null while the memento is cold
+    private ByteBuffer compressed; // Off-heap copy, made the first time the memento goes cold
+    private MementoStore store;
 
-    public EditorMemento(String content) {
+    public EditorMemento(CharSequence content) {
         this.content = content;
+        this.length = content.length();
     }
 
     public String getContent() {
-        return content;
+        String text;
+        long nanos;
+        synchronized (this) {
+            if (content != null) {
+                return content.toString();
+            }
+            long start = System.nanoTime();
+            text = MementoStore.inflate(compressed, length);
+            nanos = System.nanoTime() - start;
+            content = text;
+        }
+        store.warmedUp(this, nanos); // Outside our lock: the store locks the mementos it cools down
+        return text;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Whether the content is currently only kept compressed.
+     */
+    synchronized boolean isCold() {
+        return content == null;
+    }
+
+    synchronized void setStore(MementoStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Drop the on-heap content (String or snapshot), compressing it first unless a compressed
+     * copy already exists.
+     */
+    synchronized void coolDown() {
+        if (content == null) return;
+        if (compressed == null) {
+            long start = System.nanoTime();
+            compressed = MementoStore.deflate(content);
+            store.compressed(2L * length, compressed.capacity(), System.nanoTime() - start);
+        }
+        content = null;
     }
 }
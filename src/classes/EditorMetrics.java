@@ -0,0 +1,184 @@
+package classes;
+
+import interfaces.Command;
+import interfaces.Observer;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ===========================================================================================
+ * METRICS: EditorMetrics
+ * ===========================================================================================
+ * Hot-path measurements of one Editor, enabled with Editor.enableMetrics():
+ * latency per command type and phase (execute / undo / redo), time spent in each observer
+ * class, undo/redo depth and retained history bytes, and the document size. Every command
+ * is also emitted as a CommandEvent for Java Flight Recorder.
+ * Queries are lock-free and may come from any thread. While metrics are off the editor only
+ * pays for one null check per command and per observer call.
+ */
+public final class EditorMetrics {
+    public enum Phase { EXECUTE, UNDO, REDO }
+
+    private final Editor editor;
+    private final ConcurrentHashMap<Class<?>, LatencyHistogram[]> commands = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Class<?>, LatencyHistogram> observers = new ConcurrentHashMap<>();
+    private volatile int undoDepth;
+    private volatile int redoDepth;
+    private volatile long historyBytes;
+
+    EditorMetrics(Editor editor) {
+        this.editor = editor;
+    }
+
+    // ===========================================================================================
+    // PUBLIC API: Queries
+    // ===========================================================================================
+
+    /**
+     * Latency of a command type (simple class name, e.g. "InsertCommand") in one phase,
+     * or null if no such command has run yet.
+     */
+    public LatencyHistogram getCommandLatency(String commandType, Phase phase) {
+        for (Map.Entry<Class<?>, LatencyHistogram[]> entry : commands.entrySet()) {
+            if (entry.getKey().getSimpleName().equals(commandType)) {
+                return entry.getValue()[phase.ordinal()];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Time spent in update() by observers of the given class (simple name), or null.
+     */
+    public LatencyHistogram getObserverLatency(String observerType) {
+        for (Map.Entry<Class<?>, LatencyHistogram> entry : observers.entrySet()) {
+            if (entry.getKey().getSimpleName().equals(observerType)) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Undo entries (spilled ones included) after the last measured command or history change.
+     */
+    public int getUndoDepth() {
+        return undoDepth;
+    }
+
+    public int getRedoDepth() {
+        return redoDepth;
+    }
+
+    /**
+     * Bytes retained by the in-memory history after the last measured command.
+     */
+    public long getHistoryBytes() {
+        return historyBytes;
+    }
+
+    /**
+     * Characters in the latest published version of the document.
+     */
+    public int getDocumentLength() {
+        return editor.snapshot().length();
+    }
+
+    /**
+     * Clear the histograms; the gauges keep their values.
+     */
+    public void reset() {
+        commands.clear();
+        observers.clear();
+    }
+
+    /**
+     * All measurements as a table, command types and observers sorted by name.
+     */
+    public String report() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("document %d chars; undo depth %d, redo depth %d, history %d bytes%n",
+                getDocumentLength(), undoDepth, redoDepth, historyBytes));
+        sb.append(String.format("%-32s %10s %10s %10s %10s %10s%n", "", "count", "mean us", "p50 us", "p99 us", "max us"));
+        Map<String, LatencyHistogram> rows = new TreeMap<>();
+        for (Map.Entry<Class<?>, LatencyHistogram[]> entry : commands.entrySet()) {
+            for (Phase phase : Phase.values()) {
+                rows.put("command " + entry.getKey().getSimpleName() + " " + phase.name().toLowerCase(),
+                        entry.getValue()[phase.ordinal()]);
+            }
+        }
+        for (Map.Entry<Class<?>, LatencyHistogram> entry : observers.entrySet()) {
+            rows.put("observer " + entry.getKey().getSimpleName(), entry.getValue());
+        }
+        for (Map.Entry<String, LatencyHistogram> row : rows.entrySet()) {
+            LatencyHistogram histogram = row.getValue();
+            if (histogram.getCount() == 0) continue;
+            sb.append(String.format("%-32s %10d %10.2f %10.2f %10.2f %10.2f%n", row.getKey(), histogram.getCount(),
+                    histogram.getMean() / 1e3, histogram.getPercentile(50) / 1e3,
+                    histogram.getPercentile(99) / 1e3, histogram.getMax() / 1e3));
+        }
+        return sb.toString();
+    }
+
+    // ===========================================================================================
+    // RECORDING: Called by the editor
+    // ===========================================================================================
+
+    /**
+     * Start timing a command; the returned event goes to commandFinished().
+     */
+    CommandEvent begin() {
+        CommandEvent event = new CommandEvent();
+        event.begin();
+        event.startNanos = System.nanoTime();
+        return event;
+    }
+
+    void commandFinished(CommandEvent event, Command command, Phase phase, CommandHistory history) {
+        long nanos = System.nanoTime() - event.startNanos;
+        commands.computeIfAbsent(command.getClass(), type -> newHistograms())[phase.ordinal()].record(nanos);
+        historyChanged(history);
+        event.end();
+        if (event.shouldCommit()) {
+            event.command = command.getClass().getSimpleName();
+            event.phase = phase.name();
+            event.documentLength = editor.getBuffer().length();
+            event.undoDepth = undoDepth;
+            event.historyBytes = historyBytes;
+            event.commit();
+        }
+    }
+
+    void historyChanged(CommandHistory history) {
+        undoDepth = history.getUndoDepth();
+        redoDepth = history.getRedoDepth();
+        historyBytes = history.getRetainedBytes();
+    }
+
+    /**
+     * Deliver a change to an observer, timing it when metrics are enabled.
+     */
+    static void notify(EditorMetrics metrics, Observer observer, DocumentChange change) {
+        if (metrics == null) {
+            observer.update(change);
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            observer.update(change);
+        } finally {
+            metrics.observers.computeIfAbsent(observer.getClass(), type -> new LatencyHistogram())
+                    .record(System.nanoTime() - start);
+        }
+    }
+
+    private static LatencyHistogram[] newHistograms() {
+        LatencyHistogram[] histograms = new LatencyHistogram[Phase.values().length];
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+        return histograms;
+    }
+}
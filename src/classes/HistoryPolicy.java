@@ -0,0 +1,59 @@
+package classes;
+
+import java.nio.file.Path;
+
+/**
+ * ===========================================================================================
+ * COMMAND PATTERN: HistoryPolicy
+ * ===========================================================================================
+ * Limits how much undo history the CommandHistory keeps in memory: both limits apply to
+ * the undo entries only. When a limit is exceeded the oldest undo entries are either spilled
+ * to an append-only file (and paged back in when undo reaches them) or, without a spill
+ * file, discarded. Redo entries are never evicted, so undoing any number of steps can always
+ * be redone; they are bounded by how far the user has undone and cleared by the next edit.
+ * A limit of 0 means "no limit".
+ */
+public class HistoryPolicy {
+    private final int maxEntries;
+    private final long maxBytes;
+    private final Path spillFile;
+
+    public HistoryPolicy(int maxEntries, long maxBytes, Path spillFile) {
+        if (maxEntries < 0 || maxBytes < 0) {
+            throw new IllegalArgumentException("History limits must not be negative");
+        }
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.spillFile = spillFile;
+    }
+
+    public HistoryPolicy(int maxEntries, long maxBytes) {
+        this(maxEntries, maxBytes, null);
+    }
+
+    /**
+     * Keep every entry in memory (the original behaviour).
+     */
+    public static HistoryPolicy unbounded() {
+        return new HistoryPolicy(0, 0, null);
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * File that receives evicted entries, or null to discard them.
+     */
+    public Path getSpillFile() {
+        return spillFile;
+    }
+
+    boolean isExceeded(int entries, long bytes) {
+        return (maxEntries > 0 && entries > maxEntries) || (maxBytes > 0 && bytes > maxBytes);
+    }
+}
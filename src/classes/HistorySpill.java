@@ -0,0 +1,125 @@
+package classes;
+
+import interfaces.Command;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * ===========================================================================================
+ * COMMAND PATTERN: HistorySpill
+ * ===========================================================================================
+ * On-disk stack of the oldest undo entries. Records are only ever appended to the end of
+ * the file; paging the newest record back in trims it off the tail again, so the file
+ * never holds more than the entries that are currently spilled. Each record also keeps the
+ * collaborators' edits its entry has not been transformed over yet (see CommandHistory).
+ */
+class HistorySpill {
+    private final Path file;
+    private final FileChannel channel;
+    private final Editor editor;
+    private long[] offsets = new long[16]; // Start offset of every record, oldest first
+    private int count;
+
+    HistorySpill(Path file, Editor editor) {
+        this.file = file;
+        this.editor = editor;
+        try {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open history spill file " + file, e);
+        }
+    }
+
+    boolean isEmpty() {
+        return count == 0;
+    }
+
+    int size() {
+        return count;
+    }
+
+    /**
+     * Append a command that is newer than every entry already spilled, with the remote edits
+     * applied since it.
+     */
+    void push(Command command, List<TextOperation> remote) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            CommandCodec.write(out, command);
+            out.writeInt(remote.size());
+            for (TextOperation operation : remote) {
+                operation.write(out, true);
+            }
+
+            long offset = channel.size();
+            ByteBuffer record = ByteBuffer.wrap(bytes.toByteArray());
+            while (record.hasRemaining()) {
+                channel.write(record, offset + record.position());
+            }
+
+            if (count == offsets.length) {
+                offsets = Arrays.copyOf(offsets, count * 2);
+            }
+            offsets[count++] = offset;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write history spill file " + file, e);
+        }
+    }
+
+    /**
+     * Read back the newest spilled command and drop it from the file; its remote edits are
+     * added to remote.
+     */
+    Command pop(List<TextOperation> remote) {
+        if (count == 0) return null;
+        try {
+            long offset = offsets[--count];
+            ByteBuffer record = ByteBuffer.allocate((int) (channel.size() - offset));
+            while (record.hasRemaining()) {
+                if (channel.read(record, offset + record.position()) < 0) break;
+            }
+            channel.truncate(offset);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(record.array()));
+            Command command = CommandCodec.read(in, editor);
+            for (int i = in.readInt(); i > 0; i--) {
+                remote.add(TextOperation.read(in));
+            }
+            return command;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read history spill file " + file, e);
+        }
+    }
+
+    void clear() {
+        count = 0;
+        try {
+            channel.truncate(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot clear history spill file " + file, e);
+        }
+    }
+
+    void close() {
+        count = 0;
+        try {
+            channel.close();
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot close history spill file " + file, e);
+        }
+    }
+}
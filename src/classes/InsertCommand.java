@@ -6,34 +6,82 @@ import interfaces.Command;
  * ===========================================================================================
  * COMMAND PATTERN: Concrete Command - InsertCommand
  * ===========================================================================================
- * Encapsulates an insert operation. Uses Memento pattern to save state before execution.
+ * Encapsulates an insert operation. Keeps only its own delta (position and inserted text),
+ * so undo removes exactly that range instead of restoring a snapshot of the whole document.
  */
 class InsertCommand implements Command {
     private Editor editor;
     private String text;
     private int position;
-    private EditorMemento memento; // Memento pattern: stores state before execution
+    private int appliedPosition = -1; // Position the text actually landed at, -1 until executed
+    private boolean typing;           // Built only from single typed characters
 
     public InsertCommand(Editor editor, String text, int position) {
         this.editor = editor;
         this.text = text;
         this.position = position;
+        this.typing = text.length() == 1;
+    }
+
+    /**
+     * Rebuild a command that has already been executed (used when paging history back in).
+     */
+    static InsertCommand executed(Editor editor, String text, int appliedPosition) {
+        InsertCommand command = new InsertCommand(editor, text, appliedPosition);
+        command.appliedPosition = appliedPosition;
+        return command;
     }
 
     @Override
     public void execute() {
-        // MEMENTO PATTERN: Save the current state before making changes
-        memento = editor.save();
+        // Remember the clamped position so the inverse delta matches what the state applied
+        int target = Math.max(0, Math.min(position, editor.getLength()));
 
         // Delegate to the current state to perform the insertion
-        editor.getState().insertText(editor, text, position);
+        editor.getState().insertText(editor, text, target);
+        appliedPosition = target;
     }
 
     @Override
     public void undo() {
-        // MEMENTO PATTERN: Restore the previous state
-        if (memento != null) {
-            editor.restore(memento);
+        // Inverse delta: remove the inserted text again
+        if (appliedPosition >= 0 && !text.isEmpty()) {
+            editor.applyDelete(text.length(), appliedPosition);
         }
     }
+
+    /**
+     * Absorb a single typed character that lands right after this command's text, if this
+     * command is itself a run of typed characters: a paste never absorbs the typing after it.
+     * A newline always starts a new undo step.
+     */
+    @Override
+    public boolean mergeWith(Command next) {
+        if (!(next instanceof InsertCommand) || !typing || appliedPosition < 0) return false;
+        InsertCommand insert = (InsertCommand) next;
+        if (insert.text.length() != 1 || insert.text.equals("\n")) return false;
+        if (insert.appliedPosition != appliedPosition + text.length()) return false;
+
+        text = text + insert.text;
+        position = appliedPosition;
+        return true;
+    }
+
+    @Override
+    public TextOperation toOperation() {
+        return appliedPosition < 0 ? null : new TextOperation().retain(appliedPosition).insert(text);
+    }
+
+    @Override
+    public long getPayloadSize() {
+        return 32 + 2L * text.length(); // object headers plus UTF-16 text
+    }
+
+    String getText() {
+        return text;
+    }
+
+    int getAppliedPosition() {
+        return appliedPosition;
+    }
 }
@@ -11,25 +11,23 @@ import interfaces.EditorState;
 public class InsertState implements EditorState {
     @Override
     public void insertText(Editor editor, String text, int position) {
-        // Perform the actual insertion by modifying the editor's content
-        String content = editor.getContent();
+        // Perform the actual insertion by modifying the editor's buffer in place
+        int length = editor.getLength();
         if (position < 0) position = 0;
-        if (position > content.length()) position = content.length();
+        if (position > length) position = length;
 
-        String newContent = content.substring(0, position) + text + content.substring(position);
-        editor.setContent(newContent);
+        editor.applyInsert(text, position);
     }
 
     @Override
     public void deleteText(Editor editor, int length, int position) {
-        // Perform the actual deletion by modifying the editor's content
-        String content = editor.getContent();
+        // Perform the actual deletion by modifying the editor's buffer in place
+        int contentLength = editor.getLength();
         if (position < 0) position = 0;
-        if (position >= content.length() || length <= 0) return;
+        if (position >= contentLength || length <= 0) return;
 
-        int endPosition = Math.min(position + length, content.length());
-        String newContent = content.substring(0, position) + content.substring(endPosition);
-        editor.setContent(newContent);
+        int endPosition = Math.min(position + length, contentLength);
+        editor.applyDelete(endPosition - position, position);
     }
 
     @Override
@@ -0,0 +1,139 @@
+package classes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ===========================================================================================
+ * COLLABORATION: LoopbackTransport
+ * ===========================================================================================
+ * In-process transport between a CollaborationServer and its clients, for tests and demos.
+ * Every connection has one FIFO queue in each direction, like a network socket; messages
+ * only move when the caller delivers them, so tests decide how connections interleave.
+ */
+public final class LoopbackTransport {
+    private final CollaborationServer server;
+    private final List<Connection> connections = new ArrayList<>();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong messagesSent = new AtomicLong();
+
+    public LoopbackTransport(CollaborationServer server) {
+        this.server = server;
+    }
+
+    /**
+     * Connect an editor to the server; its content is replaced by the shared document.
+     */
+    public synchronized CollaborationClient connect(Editor editor) {
+        Connection connection = new Connection();
+        synchronized (server) { // Join at a revision that matches the content
+            connection.id = server.connect(message -> connection.toClient.add(count(message)));
+            connection.client = new CollaborationClient(editor, message -> connection.toServer.add(count(message)),
+                    server.getRevision(), server.getContent());
+        }
+        connections.add(connection);
+        return connection.client;
+    }
+
+    /**
+     * Disconnect a client, dropping the messages still queued for it.
+     */
+    public synchronized void disconnect(CollaborationClient client) {
+        for (Connection connection : connections) {
+            if (connection.client == client) {
+                server.disconnect(connection.id);
+                client.close();
+                connections.remove(connection);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Deliver the next message of one randomly chosen non-empty queue.
+     * Returns false when nothing is waiting.
+     */
+    public synchronized boolean deliverNext(Random random) {
+        List<Queue<byte[]>> waiting = new ArrayList<>();
+        for (Connection connection : connections) {
+            if (!connection.toServer.isEmpty()) waiting.add(connection.toServer);
+            if (!connection.toClient.isEmpty()) waiting.add(connection.toClient);
+        }
+        if (waiting.isEmpty()) return false;
+        deliver(waiting.get(random.nextInt(waiting.size())));
+        return true;
+    }
+
+    /**
+     * Deliver messages until every queue is empty; returns how many were delivered.
+     */
+    public synchronized int deliverAll() {
+        int delivered = 0;
+        boolean progress = true;
+        while (progress) {
+            progress = false;
+            for (Connection connection : new ArrayList<>(connections)) {
+                while (!connection.toServer.isEmpty()) {
+                    deliver(connection.toServer);
+                    delivered++;
+                    progress = true;
+                }
+                while (!connection.toClient.isEmpty()) {
+                    deliver(connection.toClient);
+                    delivered++;
+                    progress = true;
+                }
+            }
+        }
+        return delivered;
+    }
+
+    public synchronized int getPendingMessages() {
+        int pending = 0;
+        for (Connection connection : connections) {
+            pending += connection.toServer.size() + connection.toClient.size();
+        }
+        return pending;
+    }
+
+    /**
+     * Total size of every message sent in either direction.
+     */
+    public long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    public long getMessagesSent() {
+        return messagesSent.get();
+    }
+
+    // A message leaves its queue only once it has been handled, so a failed delivery can be retried
+    private void deliver(Queue<byte[]> queue) {
+        byte[] message = queue.peek();
+        for (Connection connection : connections) {
+            if (queue == connection.toServer) {
+                server.receive(connection.id, message);
+            } else if (queue == connection.toClient) {
+                connection.client.receive(message);
+            }
+        }
+        queue.poll();
+    }
+
+    private byte[] count(byte[] message) {
+        bytesSent.addAndGet(message.length);
+        messagesSent.incrementAndGet();
+        return message;
+    }
+
+    private static final class Connection {
+        final Queue<byte[]> toServer = new ConcurrentLinkedQueue<>();
+        final Queue<byte[]> toClient = new ConcurrentLinkedQueue<>();
+        int id;
+        CollaborationClient client;
+    }
+}
@@ -0,0 +1,379 @@
+package classes;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * ===========================================================================================
+ * FILE I/O: MappedTextFile
+ * ===========================================================================================
+ * Read-only CharSequence over a memory-mapped text file, used as the "original" buffer of a
+ * piece table. Characters are decoded on demand from the mapped bytes, so untouched regions
+ * stay in the page cache and are never turned into a Java String.
+ * Supports ISO-8859-1 / US-ASCII (one byte per char) and UTF-8. For UTF-8 files that are not
+ * pure ASCII, the byte offset of every 1024th char is kept so any position is found quickly.
+ */
+public final class MappedTextFile implements CharSequence, Closeable {
+    private static final int SEGMENT_BITS = 30; // A single mapping cannot exceed 2 GB
+    private static final long SEGMENT_MASK = (1L << SEGMENT_BITS) - 1;
+    private static final int CHECKPOINT_BITS = 10;
+    private static final int CHECKPOINT_MASK = (1 << CHECKPOINT_BITS) - 1;
+
+    private final Path path;
+    private final Charset charset;
+    private final FileChannel channel;
+    private final MappedByteBuffer[] segments;
+    private final long base; // File offset of the first text byte (after any header)
+    private final long byteLength;
+    private final int length;
+    private final long[] checkpoints; // byteOffset << 1 | (1 when the char is a low surrogate); null for 1 byte/char
+
+    private MappedTextFile(Path path, Charset charset, FileChannel channel, MappedByteBuffer[] segments,
+                           long base, long byteLength, int length, long[] checkpoints) {
+        this.path = path;
+        this.charset = charset;
+        this.channel = channel;
+        this.segments = segments;
+        this.base = base;
+        this.byteLength = byteLength;
+        this.length = length;
+        this.checkpoints = checkpoints;
+    }
+
+    /**
+     * Map a file read-only. The file must not be modified while it is open.
+     */
+    public static MappedTextFile open(Path path, Charset charset) throws IOException {
+        return open(path, charset, 0);
+    }
+
+    /**
+     * Map the text that starts after a header of headerBytes bytes.
+     */
+    public static MappedTextFile open(Path path, Charset charset, long headerBytes) throws IOException {
+        boolean utf8 = charset.equals(StandardCharsets.UTF_8);
+        if (!utf8 && !charset.equals(StandardCharsets.ISO_8859_1) && !charset.equals(StandardCharsets.US_ASCII)) {
+            throw new IllegalArgumentException("Unsupported charset for mapped files: " + charset);
+        }
+
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long byteLength = Math.max(channel.size() - headerBytes, 0);
+            MappedByteBuffer[] segments = new MappedByteBuffer[(int) ((byteLength + SEGMENT_MASK) >>> SEGMENT_BITS)];
+            for (int i = 0; i < segments.length; i++) {
+                long start = (long) i << SEGMENT_BITS;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, headerBytes + start,
+                        Math.min(byteLength - start, 1L << SEGMENT_BITS));
+            }
+
+            if (!utf8) {
+                checkLength(byteLength, path);
+                return new MappedTextFile(path, charset, channel, segments, headerBytes, byteLength, (int) byteLength, null);
+            }
+            return new MappedTextFile(path, charset, channel, segments, headerBytes, byteLength, 0, null).indexUtf8();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public Charset getCharset() {
+        return charset;
+    }
+
+    public long getByteLength() {
+        return byteLength;
+    }
+
+    // ===========================================================================================
+    // CHAR SEQUENCE: Decoding on demand
+    // ===========================================================================================
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("index " + index + ", length " + length);
+        }
+        if (checkpoints == null) {
+            return (char) (byteAt(index) & 0xFF);
+        }
+        StringBuilder sb = new StringBuilder(1);
+        decodeUtf8(index, index + 1, sb);
+        return sb.charAt(0);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + length);
+        }
+        StringBuilder sb = new StringBuilder(end - start);
+        appendTo(sb, start, end);
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return subSequence(0, length).toString();
+    }
+
+    /**
+     * Decode the chars in [start, end) into sb.
+     */
+    void appendTo(StringBuilder sb, int start, int end) {
+        if (checkpoints == null) {
+            for (int i = start; i < end; i++) {
+                sb.append((char) (byteAt(i) & 0xFF));
+            }
+        } else {
+            decodeUtf8(start, end, sb);
+        }
+    }
+
+    // ===========================================================================================
+    // ZERO-COPY SAVE
+    // ===========================================================================================
+
+    /**
+     * Byte offset where the char at index starts, or -1 if index splits a surrogate pair.
+     */
+    long byteOffset(int index) {
+        if (checkpoints == null || index == length) {
+            return checkpoints == null ? index : byteLength;
+        }
+        long checkpoint = checkpoints[index >>> CHECKPOINT_BITS];
+        long position = checkpoint >>> 1;
+        int charIndex = index & ~CHECKPOINT_MASK;
+        if ((checkpoint & 1) != 0) {
+            if (charIndex == index) return -1;
+            position += sequenceLength(position);
+            charIndex++;
+        }
+        while (charIndex < index) {
+            int sequence = sequenceLength(position);
+            int chars = sequence == 4 ? 2 : 1;
+            if (chars == 2 && charIndex + 1 == index) return -1;
+            charIndex += chars;
+            position += sequence;
+        }
+        return position;
+    }
+
+    /**
+     * Copy the bytes holding chars [start, end) straight from the file to out (no decoding).
+     * Returns false when a boundary falls inside a surrogate pair and the caller must encode.
+     * Once the file is closed (the editor opened another one, but a version checkpoint still
+     * refers to this text) the bytes are written from the mapping, which stays valid.
+     */
+    boolean transferTo(int start, int end, WritableByteChannel out) throws IOException {
+        long from = byteOffset(start);
+        long to = byteOffset(end);
+        if (from < 0 || to < 0) return false;
+        while (from < to) {
+            if (channel.isOpen()) {
+                try {
+                    from += channel.transferTo(base + from, to - from, out);
+                    continue;
+                } catch (ClosedChannelException e) {
+                    // Closed by the editor before the transfer started; a transfer cut short by a close
+                    // may have written part of its bytes, and out being closed is the caller's error
+                    if (channel.isOpen() || e instanceof AsynchronousCloseException) throw e;
+                }
+            }
+            ByteBuffer segment = segments[(int) (from >>> SEGMENT_BITS)].duplicate();
+            int offset = (int) (from & SEGMENT_MASK);
+            segment.position(offset).limit(offset + (int) Math.min(to - from, segment.capacity() - offset));
+            while (segment.hasRemaining()) {
+                from += out.write(segment);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // ===========================================================================================
+    // LINE INDEX
+    // ===========================================================================================
+
+    /**
+     * Number of '\n' in each block of 1024 chars, counted on the raw bytes: in every supported
+     * charset a newline is the single byte 0x0A, which never appears inside a UTF-8 sequence.
+     */
+    int[] newlinesPerBlock() {
+        int[] counts = new int[(length + CHECKPOINT_MASK) >>> CHECKPOINT_BITS];
+        for (int i = 0; i < counts.length; i++) {
+            long from = checkpoints == null ? (long) i << CHECKPOINT_BITS : checkpoints[i] >>> 1;
+            long to = i + 1 == counts.length ? byteLength
+                    : checkpoints == null ? (long) (i + 1) << CHECKPOINT_BITS : checkpoints[i + 1] >>> 1;
+            counts[i] = countNewlineBytes(from, to);
+        }
+        return counts;
+    }
+
+    private int countNewlineBytes(long from, long to) {
+        int count = 0;
+        while (from < to) {
+            MappedByteBuffer segment = segments[(int) (from >>> SEGMENT_BITS)];
+            int offset = (int) (from & SEGMENT_MASK);
+            int end = (int) Math.min(offset + (to - from), segment.limit());
+            from += end - offset;
+            // Eight bytes at once: count the zero bytes of word ^ 0x0A0A...
+            for (; offset + 8 <= end; offset += 8) {
+                long word = segment.getLong(offset) ^ 0x0A0A0A0A0A0A0A0AL;
+                long low = (word & 0x7F7F7F7F7F7F7F7FL) + 0x7F7F7F7F7F7F7F7FL;
+                count += Long.bitCount(~(low | word | 0x7F7F7F7F7F7F7F7FL));
+            }
+            for (; offset < end; offset++) {
+                if (segment.get(offset) == '\n') count++;
+            }
+        }
+        return count;
+    }
+
+    // ===========================================================================================
+    // UTF-8 HELPERS
+    // ===========================================================================================
+
+    private byte byteAt(long position) {
+        return segments[(int) (position >>> SEGMENT_BITS)].get((int) (position & SEGMENT_MASK));
+    }
+
+    /**
+     * One pass over the bytes to count chars and record checkpoints.
+     * Pure ASCII files end up with the one byte per char fast path.
+     */
+    private MappedTextFile indexUtf8() throws IOException {
+        long[] found = new long[16];
+        int count = 0;
+        long chars = 0;
+        long position = 0;
+        while (position < byteLength) {
+            // Fast path: eight ASCII bytes at once
+            MappedByteBuffer segment = segments[(int) (position >>> SEGMENT_BITS)];
+            int offset = (int) (position & SEGMENT_MASK);
+            if (offset + 8 <= segment.limit() && (segment.getLong(offset) & 0x8080808080808080L) == 0) {
+                long nextCheckpoint = (chars + CHECKPOINT_MASK) & ~(long) CHECKPOINT_MASK;
+                if (nextCheckpoint < chars + 8) {
+                    if (count == found.length) found = Arrays.copyOf(found, count * 2);
+                    found[count++] = (position + nextCheckpoint - chars) << 1;
+                }
+                chars += 8;
+                position += 8;
+                continue;
+            }
+
+            int sequence = sequenceLength(position);
+            int n = sequence == 4 ? 2 : 1;
+            for (int k = 0; k < n; k++) {
+                if (((chars + k) & CHECKPOINT_MASK) == 0) {
+                    if (count == found.length) found = Arrays.copyOf(found, count * 2);
+                    found[count++] = position << 1 | k;
+                }
+            }
+            chars += n;
+            position += sequence;
+        }
+        checkLength(chars, path);
+        long[] index = chars == byteLength ? null : Arrays.copyOf(found, count);
+        return new MappedTextFile(path, charset, channel, segments, base, byteLength, (int) chars, index);
+    }
+
+    private void decodeUtf8(int start, int end, StringBuilder sb) {
+        long checkpoint = checkpoints[start >>> CHECKPOINT_BITS];
+        long position = checkpoint >>> 1;
+        int charIndex = start & ~CHECKPOINT_MASK;
+        int pendingLow = -1;
+        if ((checkpoint & 1) != 0) {
+            int sequence = sequenceLength(position);
+            pendingLow = Character.lowSurrogate(codePointAt(position, sequence));
+            position += sequence;
+        }
+        while (charIndex < end) {
+            char c;
+            if (pendingLow >= 0) {
+                c = (char) pendingLow;
+                pendingLow = -1;
+            } else {
+                int sequence = sequenceLength(position);
+                int codePoint = codePointAt(position, sequence);
+                position += sequence;
+                if (Character.isSupplementaryCodePoint(codePoint)) {
+                    c = Character.highSurrogate(codePoint);
+                    pendingLow = Character.lowSurrogate(codePoint);
+                } else {
+                    c = (char) codePoint;
+                }
+            }
+            if (charIndex >= start) sb.append(c);
+            charIndex++;
+        }
+    }
+
+    /**
+     * Length of the well-formed UTF-8 sequence at position; malformed bytes count as 1.
+     */
+    private int sequenceLength(long position) {
+        int lead = byteAt(position) & 0xFF;
+        int sequence;
+        if (lead < 0x80) return 1;
+        else if (lead >= 0xC2 && lead < 0xE0) sequence = 2;
+        else if (lead >= 0xE0 && lead < 0xF0) sequence = 3;
+        else if (lead >= 0xF0 && lead < 0xF5) sequence = 4;
+        else return 1;
+
+        if (position + sequence > byteLength) return 1;
+        for (int i = 1; i < sequence; i++) {
+            if ((byteAt(position + i) & 0xC0) != 0x80) return 1;
+        }
+        int codePoint = decode(position, sequence);
+        if ((sequence == 3 && (codePoint < 0x800 || Character.isSurrogate((char) codePoint)))
+                || (sequence == 4 && (codePoint < 0x10000 || codePoint > Character.MAX_CODE_POINT))) {
+            return 1;
+        }
+        return sequence;
+    }
+
+    private int codePointAt(long position, int sequence) {
+        int lead = byteAt(position) & 0xFF;
+        if (sequence == 1) return lead < 0x80 ? lead : 0xFFFD;
+        return decode(position, sequence);
+    }
+
+    private int decode(long position, int sequence) {
+        int codePoint = byteAt(position) & (0xFF >> (sequence + 1));
+        for (int i = 1; i < sequence; i++) {
+            codePoint = (codePoint << 6) | (byteAt(position + i) & 0x3F);
+        }
+        return codePoint;
+    }
+
+    private static void checkLength(long chars, Path path) throws IOException {
+        if (chars > Integer.MAX_VALUE - 8) {
+            throw new IOException("File too large for the editor (more than 2^31 chars): " + path);
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package classes;
+
+import interfaces.TextView;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * ===========================================================================================
+ * MEMENTO PATTERN: MementoStore
+ * ===========================================================================================
+ * Tiered storage for the editor's mementos. The most recent ones (by creation or last use)
+ * keep their content on the heap; older ones are Deflate-compressed into direct ByteBuffers,
+ * so a long session full of checkpoints neither grows the heap nor lengthens GC pauses.
+ * Saving a memento never copies the document: it holds the editor's DocumentSnapshot until
+ * it goes cold, and only then is the text read out, chunk by chunk, into the compressor.
+ * A cold memento is inflated when it is read again (for instance when it is restored) and
+ * becomes recent again; its compressed copy is kept, so cooling it down a second time is
+ * free. The store only holds weak references: mementos nobody uses any more are collected
+ * as usual, and their off-heap memory with them.
+ */
+public final class MementoStore {
+    private static final int CHUNK_CHARS = 32 * 1024;
+
+    private final ArrayDeque<WeakReference<EditorMemento>> hot = new ArrayDeque<>(); // Oldest first
+    private int hotLimit;
+    private long compressions;
+    private long rawBytes;        // UTF-16 size of everything compressed so far
+    private long compressedBytes; // and its compressed size
+    private final LatencyHistogram compressLatency = new LatencyHistogram();
+    private final LatencyHistogram restoreLatency = new LatencyHistogram();
+
+    MementoStore(int hotLimit) {
+        setHotLimit(hotLimit);
+    }
+
+    /**
+     * Number of recent mementos kept uncompressed on the heap.
+     */
+    public synchronized void setHotLimit(int hotLimit) {
+        if (hotLimit < 0) {
+            throw new IllegalArgumentException("Hot memento limit cannot be negative: " + hotLimit);
+        }
+        this.hotLimit = hotLimit;
+        coolDown();
+    }
+
+    public synchronized int getHotLimit() {
+        return hotLimit;
+    }
+
+    /**
+     * Mementos currently kept on the heap (some may already be unreachable).
+     */
+    public synchronized int getHotCount() {
+        return hot.size();
+    }
+
+    /**
+     * Compressed size over UTF-16 size of every memento compressed so far; 1 before any.
+     */
+    public synchronized double getCompressionRatio() {
+        return rawBytes == 0 ? 1 : (double) compressedBytes / rawBytes;
+    }
+
+    public synchronized long getCompressions() {
+        return compressions;
+    }
+
+    /**
+     * Time to compress a memento as it goes cold.
+     */
+    public LatencyHistogram getCompressLatency() {
+        return compressLatency;
+    }
+
+    /**
+     * Time to inflate a cold memento when it is read again.
+     */
+    public LatencyHistogram getRestoreLatency() {
+        return restoreLatency;
+    }
+
+    public synchronized String report() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%d hot mementos (limit %d); %d compressed, %d -> %d bytes (ratio %.3f)%n",
+                hot.size(), hotLimit, compressions, rawBytes, compressedBytes, getCompressionRatio()));
+        sb.append(String.format("%-10s %10s %10s %10s %10s %10s%n", "", "count", "mean us", "p50 us", "p99 us", "max us"));
+        appendRow(sb, "compress", compressLatency);
+        appendRow(sb, "restore", restoreLatency);
+        return sb.toString();
+    }
+
+    private static void appendRow(StringBuilder sb, String name, LatencyHistogram histogram) {
+        if (histogram.getCount() == 0) return;
+        sb.append(String.format("%-10s %10d %10.2f %10.2f %10.2f %10.2f%n", name, histogram.getCount(),
+                histogram.getMean() / 1e3, histogram.getPercentile(50) / 1e3, histogram.getPercentile(99) / 1e3,
+                histogram.getMax() / 1e3));
+    }
+
+    // ===========================================================================================
+    // TIERS: Called by Editor and EditorMemento
+    // ===========================================================================================
+
+    /**
+     * Track a new memento as the most recent one, cooling down the oldest beyond the limit.
+     */
+    synchronized void add(EditorMemento memento) {
+        memento.setStore(this);
+        hot.addLast(new WeakReference<>(memento));
+        coolDown();
+    }
+
+    /**
+     * A cold memento was inflated and is on the heap again.
+     */
+    synchronized void warmedUp(EditorMemento memento, long nanos) {
+        restoreLatency.record(nanos);
+        hot.addLast(new WeakReference<>(memento));
+        coolDown();
+    }
+
+    private void coolDown() {
+        while (hot.size() > hotLimit) {
+            EditorMemento oldest = hot.pollFirst().get();
+            if (oldest != null) {
+                oldest.coolDown();
+            }
+        }
+        for (Iterator<WeakReference<EditorMemento>> it = hot.iterator(); it.hasNext(); ) {
+            if (it.next().get() == null) it.remove();
+        }
+    }
+
+    /**
+     * Called by a memento going cold for the first time.
+     */
+    synchronized void compressed(long raw, int compressed, long nanos) {
+        compressions++;
+        rawBytes += raw;
+        compressedBytes += compressed;
+        compressLatency.record(nanos);
+    }
+
+    // ===========================================================================================
+    // CODEC: Deflate to and from direct buffers
+    // ===========================================================================================
+
+    // Chars are compressed as raw UTF-16 so any char sequence, even a split surrogate pair, survives.
+    // A TextView is read a chunk at a time, never as one String
+    static ByteBuffer deflate(CharSequence text) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            ByteBuffer input = ByteBuffer.allocate(CHUNK_CHARS * 2);
+            byte[] chunk = new byte[CHUNK_CHARS * 2];
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.min(text.length(), CHUNK_CHARS));
+            for (int from = 0; from < text.length(); from += CHUNK_CHARS) {
+                int to = Math.min(text.length(), from + CHUNK_CHARS);
+                input.clear();
+                CharBuffer chars = input.asCharBuffer();
+                if (text instanceof TextView) {
+                    chars.put(((TextView) text).getText(from, to));
+                } else {
+                    chars.append(text, from, to);
+                }
+                input.limit((to - from) * 2);
+                deflater.setInput(input);
+                while (!deflater.needsInput()) {
+                    out.write(chunk, 0, deflater.deflate(chunk));
+                }
+            }
+            deflater.finish();
+            while (!deflater.finished()) {
+                out.write(chunk, 0, deflater.deflate(chunk));
+            }
+            ByteBuffer offHeap = ByteBuffer.allocateDirect(out.size());
+            offHeap.put(out.toByteArray()).flip();
+            return offHeap;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    static String inflate(ByteBuffer compressed, int length) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed.duplicate());
+            char[] text = new char[length];
+            ByteBuffer output = ByteBuffer.allocate(CHUNK_CHARS * 2);
+            int filled = 0;
+            while (filled < length) {
+                output.clear().limit(Math.min(length - filled, CHUNK_CHARS) * 2);
+                while (output.hasRemaining()) {
+                    if (inflater.inflate(output) == 0 && (inflater.finished() || inflater.needsInput())) {
+                        throw new IllegalStateException("Compressed memento is truncated");
+                    }
+                }
+                output.flip();
+                int count = output.remaining() / 2;
+                output.asCharBuffer().get(text, filled, count);
+                filled += count;
+            }
+            return new String(text);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Compressed memento is corrupt", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
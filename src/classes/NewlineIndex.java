@@ -0,0 +1,143 @@
+package classes;
+
+import java.util.Arrays;
+
+/**
+ * ===========================================================================================
+ * LINE INDEX: NewlineIndex
+ * ===========================================================================================
+ * Counts of '\n' over an append-only character source (the original or the add buffer of a
+ * piece table), kept per block of 1024 chars. Counting the newlines of any range or finding
+ * the k-th newline then needs a binary search over the blocks plus a scan of at most two
+ * blocks, instead of a scan of the whole range.
+ */
+final class NewlineIndex {
+    static final int BLOCK_BITS = 10; // Same as the checkpoint spacing of MappedTextFile
+    private static final int BLOCK_SIZE = 1 << BLOCK_BITS;
+    private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+
+    private final CharSequence text;
+    private int[] blockStarts; // Newlines before the first char of each block
+    private int length;        // Chars indexed so far
+    private int newlines;      // Newlines in [0, length)
+
+    /**
+     * Index the whole text; for a mapped file the bytes are counted without decoding them.
+     */
+    NewlineIndex(CharSequence text) {
+        this.text = text;
+        if (text instanceof MappedTextFile) {
+            int[] perBlock = ((MappedTextFile) text).newlinesPerBlock();
+            blockStarts = new int[Math.max(perBlock.length, 1)];
+            for (int i = 0; i < perBlock.length; i++) {
+                blockStarts[i] = newlines;
+                newlines += perBlock[i];
+            }
+            length = text.length();
+        } else {
+            blockStarts = new int[Math.max((text.length() + BLOCK_MASK) >>> BLOCK_BITS, 1)];
+            extend(text.length());
+        }
+    }
+
+    private NewlineIndex(CharSequence text, int[] blockStarts, int length, int newlines) {
+        this.text = text;
+        this.blockStarts = blockStarts;
+        this.length = length;
+        this.newlines = newlines;
+    }
+
+    /**
+     * Index the chars appended to the text since the last call.
+     */
+    void extend(int newLength) {
+        for (int i = length; i < newLength; i++) {
+            if ((i & BLOCK_MASK) == 0) {
+                int block = i >>> BLOCK_BITS;
+                if (block == blockStarts.length) {
+                    blockStarts = Arrays.copyOf(blockStarts, block * 2);
+                }
+                blockStarts[block] = newlines;
+            }
+            if (text.charAt(i) == '\n') newlines++;
+        }
+        length = newLength;
+    }
+
+    /**
+     * Read-only copy over frozenText (the same chars); entries it reads are never rewritten.
+     */
+    NewlineIndex freeze(CharSequence frozenText) {
+        return new NewlineIndex(frozenText, blockStarts, length, newlines);
+    }
+
+    /**
+     * Newlines in [start, end).
+     */
+    int count(int start, int end) {
+        if (end - start <= BLOCK_SIZE && !(text instanceof MappedTextFile)) {
+            return scan(text, start, Math.min(end, length));
+        }
+        return countBefore(end) - countBefore(start);
+    }
+
+    /**
+     * Position of the k-th newline (k >= 1) at or after start; it must exist.
+     */
+    int find(int start, int k) {
+        int target = countBefore(start) + k;
+        int low = 0;
+        int high = ((length + BLOCK_MASK) >>> BLOCK_BITS) - 1;
+        while (low < high) { // Last block that starts with fewer than target newlines before it
+            int mid = (low + high + 1) >>> 1;
+            if (blockStarts[mid] < target) low = mid;
+            else high = mid - 1;
+        }
+
+        int from = low << BLOCK_BITS;
+        CharSequence chars = block(from);
+        int seen = blockStarts[low];
+        for (int i = 0; i < chars.length(); i++) {
+            if (chars.charAt(i) == '\n' && ++seen == target) return from + i;
+        }
+        throw new IndexOutOfBoundsException("newline " + k + " after " + start + " does not exist");
+    }
+
+    private int countBefore(int index) {
+        if (index >= length) return newlines;
+        int block = index >>> BLOCK_BITS;
+        int from = block << BLOCK_BITS;
+        if (from == index) return blockStarts[block];
+        if (text instanceof MappedTextFile) {
+            return blockStarts[block] + scan(block(from), 0, index - from);
+        }
+        // Scan from whichever end of the block is closer
+        int to = from + BLOCK_SIZE;
+        if (to < length && to - index < index - from) {
+            return blockStarts[block + 1] - scan(text, index, to);
+        }
+        return blockStarts[block] + scan(text, from, index);
+    }
+
+    private static int scan(CharSequence chars, int start, int end) {
+        int count = 0;
+        for (int i = start; i < end; i++) {
+            if (chars.charAt(i) == '\n') count++;
+        }
+        return count;
+    }
+
+    /**
+     * The chars of the block starting at from; decoded in one go for a mapped file, where
+     * charAt would decode from the previous checkpoint on every call.
+     */
+    private CharSequence block(int from) {
+        int to = Math.min(from + BLOCK_SIZE, length);
+        if (text instanceof MappedTextFile) {
+            StringBuilder sb = new StringBuilder(to - from);
+            ((MappedTextFile) text).appendTo(sb, from, to);
+            return sb;
+        }
+        return text.subSequence(from, to);
+    }
+}
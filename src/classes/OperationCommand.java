@@ -0,0 +1,50 @@
+package classes;
+
+import interfaces.Command;
+
+/**
+ * ===========================================================================================
+ * COMMAND PATTERN: Concrete Command - OperationCommand
+ * ===========================================================================================
+ * A history entry that has been rebased over edits from other collaborators. Whatever command
+ * it came from, it is now a text operation on the merged document: execute applies it and
+ * undo applies its inverse, so only this editor's own changes are reverted.
+ */
+class OperationCommand implements Command {
+    private Editor editor;
+    private TextOperation operation; // Covers the whole document and keeps its deleted text
+
+    OperationCommand(Editor editor, TextOperation operation) {
+        this.editor = editor;
+        this.operation = operation;
+    }
+
+    @Override
+    public void execute() {
+        apply(operation);
+    }
+
+    @Override
+    public void undo() {
+        apply(operation.invert());
+    }
+
+    private void apply(TextOperation edit) {
+        editor.holdNotifications();
+        try {
+            edit.applyTo(editor);
+        } finally {
+            editor.releaseNotifications();
+        }
+    }
+
+    @Override
+    public TextOperation toOperation() {
+        return operation;
+    }
+
+    @Override
+    public long getPayloadSize() {
+        return 16 + operation.getPayloadSize();
+    }
+}
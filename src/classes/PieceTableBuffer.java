@@ -0,0 +1,638 @@
+package classes;
+
+import interfaces.TextBuffer;
+import interfaces.TextView;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * ===========================================================================================
+ * STRATEGY PATTERN: Concrete Text Buffer - PieceTableBuffer
+ * ===========================================================================================
+ * Stores the document as a piece table: an immutable "original" buffer, an append-only
+ * "add" buffer, and an ordered sequence of pieces that point into one of the two.
+ * The pieces are kept in a treap ordered by document offset, so finding, splitting and
+ * joining pieces costs O(log n) and an edit never copies the document itself.
+ * Tree nodes are never modified after construction; edits build new paths from the root.
+ * Every node also carries the number of newlines in its subtree, so mapping between offsets
+ * and line numbers walks one path of the tree as well.
+ */
+public class PieceTableBuffer implements TextBuffer {
+    private CharSequence original;
+    private NewlineIndex originalLines;
+    private AddBuffer added;
+    private Piece root;
+
+    public PieceTableBuffer() {
+        this("");
+    }
+
+    public PieceTableBuffer(CharSequence text) {
+        setText(text);
+    }
+
+    // ===========================================================================================
+    // TEXT BUFFER: Editing
+    // ===========================================================================================
+
+    @Override
+    public void insert(int position, CharSequence text) {
+        checkPosition(position, length());
+        if (text.length() == 0) return;
+
+        Piece[] parts = split(root, position);
+        int start = added.length();
+        added.append(text);
+        int newlines = added.lines.count(start, added.length());
+
+        // Typing usually continues right after the previous insert: grow that piece instead of adding one
+        Piece left = parts[0];
+        Piece last = last(left);
+        if (last != null && last.added && last.start + last.length == start) {
+            left = extendLast(left, text.length(), newlines);
+        } else {
+            left = merge(left, new Piece(true, start, text.length(), newlines, randomPriority(), null, null));
+        }
+        root = merge(left, parts[1]);
+    }
+
+    @Override
+    public void delete(int position, int length) {
+        checkPosition(position, length());
+        checkPosition(position + length, length());
+        if (length == 0) return;
+
+        Piece[] head = split(root, position);
+        Piece[] tail = split(head[1], length);
+        root = merge(head[0], tail[1]);
+    }
+
+    /**
+     * A String with any char beyond Latin-1 takes two bytes for every char, so such text is
+     * copied into the same compact chunks as the add buffer instead.
+     */
+    @Override
+    public void setText(CharSequence text) {
+        String content = text.toString();
+        load(isLatin1(content) ? content : AddBuffer.copyOf(content));
+    }
+
+    private static boolean isLatin1(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) > 0xFF) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void load(CharSequence text) {
+        original = text;
+        originalLines = new NewlineIndex(text);
+        added = new AddBuffer();
+        root = original.length() == 0
+                ? null
+                : new Piece(false, 0, original.length(), originalLines.count(0, original.length()),
+                randomPriority(), null, null);
+    }
+
+    /**
+     * Stream the pieces in order; pieces of a mapped original are copied from the file as bytes.
+     */
+    @Override
+    public void writeTo(WritableByteChannel out, Charset charset) throws IOException {
+        writePieces(original, added, root, new TextFileWriter(out, charset));
+    }
+
+    /**
+     * The buffer unedited text is read from: a String, compact chunks for text beyond Latin-1
+     * (see setText), or a MappedTextFile after loading a file.
+     */
+    public CharSequence getOriginal() {
+        return original;
+    }
+
+    // ===========================================================================================
+    // CHAR SEQUENCE: Reading
+    // ===========================================================================================
+
+    @Override
+    public int length() {
+        return size(root);
+    }
+
+    @Override
+    public char charAt(int index) {
+        return charAt(original, added, root, index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return getText(start, end);
+    }
+
+    @Override
+    public String getText(int start, int end) {
+        return getText(original, added, root, start, end);
+    }
+
+    @Override
+    public String toString() {
+        return getText(0, length());
+    }
+
+    /**
+     * Immutable view of the current content. Costs O(1): the piece tree is never modified in
+     * place and both source buffers only grow, so the view shares them with the live buffer.
+     */
+    @Override
+    public TextView snapshot() {
+        return new Snapshot(this, original, originalLines, added, root);
+    }
+
+    /**
+     * Take back content captured by this buffer's snapshot() in O(1): the buffer returns to
+     * that piece tree and to the source buffers it reads from. The add buffer only grows, so
+     * text appended since the snapshot is never overwritten, just no longer referenced.
+     * Snapshots of other buffers are copied.
+     */
+    @Override
+    public void restore(TextView snapshot) {
+        if (snapshot instanceof Snapshot && ((Snapshot) snapshot).owner == this) {
+            Snapshot taken = (Snapshot) snapshot;
+            original = taken.original;
+            originalLines = taken.originalLines;
+            added = taken.source;
+            root = taken.root;
+        } else {
+            setText(snapshot);
+        }
+    }
+
+    // ===========================================================================================
+    // LINE INDEX: Offset <-> line mapping in O(log n)
+    // ===========================================================================================
+
+    @Override
+    public int getLineCount() {
+        return newlines(root) + 1;
+    }
+
+    @Override
+    public int getLineOfOffset(int offset) {
+        return getLineOfOffset(originalLines, added, root, offset);
+    }
+
+    @Override
+    public int getLineStartOffset(int line) {
+        return getLineStartOffset(originalLines, added, root, line);
+    }
+
+    /**
+     * Memory taken by the text added since the document was loaded (useful to monitor growth).
+     */
+    public long getAddedBytes() {
+        return added.getChunkBytes();
+    }
+
+    /**
+     * Number of pieces currently describing the document (useful to monitor fragmentation).
+     */
+    public int getPieceCount() {
+        return count(root);
+    }
+
+    // ===========================================================================================
+    // PIECE TREE: Treap helpers
+    // ===========================================================================================
+
+    private static char charAt(CharSequence original, AddBuffer added, Piece root, int index) {
+        if (index < 0 || index >= size(root)) {
+            throw new IndexOutOfBoundsException("index " + index + ", length " + size(root));
+        }
+        Piece node = root;
+        while (true) {
+            int leftSize = size(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index < leftSize + node.length) {
+                int sourceIndex = node.start + index - leftSize;
+                return node.added ? added.charAt(sourceIndex) : original.charAt(sourceIndex);
+            } else {
+                index -= leftSize + node.length;
+                node = node.right;
+            }
+        }
+    }
+
+    private static String getText(CharSequence original, AddBuffer added, Piece root, int start, int end) {
+        checkPosition(start, size(root));
+        checkPosition(end, size(root));
+        if (start > end) {
+            throw new IndexOutOfBoundsException("start " + start + " > end " + end);
+        }
+        StringBuilder sb = new StringBuilder(end - start);
+        appendRange(original, added, root, start, end, sb);
+        return sb.toString();
+    }
+
+    private static void appendRange(CharSequence original, AddBuffer added, Piece node, int start, int end,
+                                    StringBuilder sb) {
+        // start and end are relative to this subtree
+        while (node != null && start < end) {
+            int leftSize = size(node.left);
+            if (start < leftSize) {
+                appendRange(original, added, node.left, start, Math.min(end, leftSize), sb);
+            }
+            int from = Math.max(start - leftSize, 0);
+            int to = Math.min(end - leftSize, node.length);
+            if (from < to) {
+                if (node.added) {
+                    added.appendTo(sb, node.start + from, node.start + to);
+                } else if (original instanceof MappedTextFile) {
+                    ((MappedTextFile) original).appendTo(sb, node.start + from, node.start + to);
+                } else {
+                    sb.append(original, node.start + from, node.start + to);
+                }
+            }
+            start -= leftSize + node.length;
+            end -= leftSize + node.length;
+            if (start < 0) start = 0;
+            node = node.right;
+        }
+    }
+
+    private static int getLineOfOffset(NewlineIndex originalLines, AddBuffer added, Piece root, int offset) {
+        checkPosition(offset, size(root));
+        int line = 0;
+        Piece node = root;
+        while (node != null) {
+            int leftSize = size(node.left);
+            if (offset <= leftSize) {
+                node = node.left;
+                continue;
+            }
+            line += newlines(node.left);
+            offset -= leftSize;
+            if (offset <= node.length) {
+                return line + lines(originalLines, added, node).count(node.start, node.start + offset);
+            }
+            line += node.newlines;
+            offset -= node.length;
+            node = node.right;
+        }
+        return line;
+    }
+
+    private static int getLineStartOffset(NewlineIndex originalLines, AddBuffer added, Piece root, int line) {
+        if (line < 0 || line > newlines(root)) {
+            throw new IndexOutOfBoundsException("line " + line + ", line count " + (newlines(root) + 1));
+        }
+        if (line == 0) return 0;
+
+        // Find the line-th newline; the line starts right after it
+        int offset = 0;
+        Piece node = root;
+        while (true) {
+            int leftNewlines = newlines(node.left);
+            if (line <= leftNewlines) {
+                node = node.left;
+                continue;
+            }
+            line -= leftNewlines;
+            offset += size(node.left);
+            if (line <= node.newlines) {
+                return offset + lines(originalLines, added, node).find(node.start, line) - node.start + 1;
+            }
+            line -= node.newlines;
+            offset += node.length;
+            node = node.right;
+        }
+    }
+
+    private static void writePieces(CharSequence original, AddBuffer added, Piece node, TextFileWriter writer)
+            throws IOException {
+        while (node != null) {
+            writePieces(original, added, node.left, writer);
+            if (node.added) {
+                writer.write(added, node.start, node.start + node.length);
+            } else {
+                writer.write(original, node.start, node.start + node.length);
+            }
+            node = node.right;
+        }
+    }
+
+    /**
+     * Split a tree into the first k characters and the rest, cutting a piece if needed.
+     */
+    private Piece[] split(Piece node, int k) {
+        if (node == null) return new Piece[]{null, null};
+
+        int leftSize = size(node.left);
+        if (k <= leftSize) {
+            Piece[] parts = split(node.left, k);
+            return new Piece[]{parts[0], node.withChildren(parts[1], node.right)};
+        }
+        if (k >= leftSize + node.length) {
+            Piece[] parts = split(node.right, k - leftSize - node.length);
+            return new Piece[]{node.withChildren(node.left, parts[0]), parts[1]};
+        }
+
+        int cut = k - leftSize;
+        int headNewlines = lines(node).count(node.start, node.start + cut);
+        Piece head = new Piece(node.added, node.start, cut, headNewlines, node.priority, node.left, null);
+        Piece tail = new Piece(node.added, node.start + cut, node.length - cut, node.newlines - headNewlines,
+                randomPriority(), null, null);
+        return new Piece[]{head, merge(tail, node.right)};
+    }
+
+    private static Piece merge(Piece a, Piece b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        if (a.priority > b.priority) {
+            return a.withChildren(a.left, merge(a.right, b));
+        }
+        return b.withChildren(merge(a, b.left), b.right);
+    }
+
+    private static Piece last(Piece node) {
+        if (node == null) return null;
+        while (node.right != null) node = node.right;
+        return node;
+    }
+
+    private static Piece extendLast(Piece node, int extra, int extraNewlines) {
+        if (node.right == null) {
+            return new Piece(node.added, node.start, node.length + extra, node.newlines + extraNewlines,
+                    node.priority, node.left, null);
+        }
+        return node.withChildren(node.left, extendLast(node.right, extra, extraNewlines));
+    }
+
+    /**
+     * Newline index of the buffer a piece points into.
+     */
+    private NewlineIndex lines(Piece node) {
+        return lines(originalLines, added, node);
+    }
+
+    private static NewlineIndex lines(NewlineIndex originalLines, AddBuffer added, Piece node) {
+        return node.added ? added.lines : originalLines;
+    }
+
+    private static int size(Piece node) {
+        return node == null ? 0 : node.total;
+    }
+
+    private static int newlines(Piece node) {
+        return node == null ? 0 : node.totalNewlines;
+    }
+
+    private static int count(Piece node) {
+        return node == null ? 0 : 1 + count(node.left) + count(node.right);
+    }
+
+    private static int randomPriority() {
+        return ThreadLocalRandom.current().nextInt();
+    }
+
+    private static void checkPosition(int position, int length) {
+        if (position < 0 || position > length) {
+            throw new IndexOutOfBoundsException("position " + position + ", length " + length);
+        }
+    }
+
+    /**
+     * Immutable treap node describing one run of characters in the original or add buffer.
+     */
+    private static final class Piece {
+        final boolean added;
+        final int start;
+        final int length;
+        final int newlines; // '\n' characters in this piece
+        final int priority;
+        final Piece left;
+        final Piece right;
+        final int total; // characters in this subtree
+        final int totalNewlines; // '\n' characters in this subtree
+
+        Piece(boolean added, int start, int length, int newlines, int priority, Piece left, Piece right) {
+            this.added = added;
+            this.start = start;
+            this.length = length;
+            this.newlines = newlines;
+            this.priority = priority;
+            this.left = left;
+            this.right = right;
+            this.total = length + size(left) + size(right);
+            this.totalNewlines = newlines + PieceTableBuffer.newlines(left) + PieceTableBuffer.newlines(right);
+        }
+
+        Piece withChildren(Piece left, Piece right) {
+            return new Piece(added, start, length, newlines, priority, left, right);
+        }
+    }
+
+    /**
+     * Read-only content captured by snapshot(); safe to read from any thread.
+     */
+    private static final class Snapshot implements TextView {
+        private final PieceTableBuffer owner;
+        private final CharSequence original;
+        private final NewlineIndex originalLines;
+        private final AddBuffer source; // The owner's live add buffer, taken back by restore()
+        private final AddBuffer added;
+        private final Piece root;
+
+        Snapshot(PieceTableBuffer owner, CharSequence original, NewlineIndex originalLines, AddBuffer source,
+                 Piece root) {
+            this.owner = owner;
+            this.original = original;
+            this.originalLines = originalLines;
+            this.source = source;
+            this.added = source.freeze();
+            this.root = root;
+        }
+
+        @Override
+        public int length() {
+            return size(root);
+        }
+
+        @Override
+        public char charAt(int index) {
+            return PieceTableBuffer.charAt(original, added, root, index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return PieceTableBuffer.getText(original, added, root, start, end);
+        }
+
+        @Override
+        public String getText(int start, int end) {
+            return PieceTableBuffer.getText(original, added, root, start, end);
+        }
+
+        @Override
+        public String toString() {
+            return PieceTableBuffer.getText(original, added, root, 0, length());
+        }
+
+        @Override
+        public void writeTo(WritableByteChannel out, Charset charset) throws IOException {
+            writePieces(original, added, root, new TextFileWriter(out, charset));
+        }
+
+        @Override
+        public int getLineCount() {
+            return newlines(root) + 1;
+        }
+
+        @Override
+        public int getLineOfOffset(int offset) {
+            return PieceTableBuffer.getLineOfOffset(originalLines, added, root, offset);
+        }
+
+        @Override
+        public int getLineStartOffset(int line) {
+            return PieceTableBuffer.getLineStartOffset(originalLines, added, root, line);
+        }
+    }
+
+    /**
+     * Append-only character store split into fixed-size chunks, so growing it never
+     * copies what was already written. Characters below length() are never overwritten.
+     * A chunk holds one byte per char while every char in it is Latin-1 (all ASCII text is),
+     * and is widened to UTF-16 the first time another char lands in it, so typical text
+     * takes half the memory of a char[].
+     */
+    private static final class AddBuffer implements CharSequence {
+        private static final int CHUNK_BITS = 14;
+        private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+        private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+        private byte[][] latin = new byte[4][]; // Latin-1 chunks
+        private char[][] wide = new char[4][];  // Widened chunks; exactly one of the two is set per chunk
+        private int length;
+        private NewlineIndex lines = new NewlineIndex(this);
+
+        /**
+         * Compact read-only copy of text.
+         */
+        static AddBuffer copyOf(CharSequence text) {
+            AddBuffer copy = new AddBuffer();
+            copy.append(text);
+            return copy.freeze();
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        void append(CharSequence text) {
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                int chunk = length >>> CHUNK_BITS;
+                if (chunk == latin.length) {
+                    latin = Arrays.copyOf(latin, latin.length * 2);
+                    wide = Arrays.copyOf(wide, wide.length * 2);
+                }
+                byte[] bytes = latin[chunk];
+                if (bytes == null && wide[chunk] == null) {
+                    bytes = new byte[CHUNK_SIZE];
+                    latin[chunk] = bytes;
+                }
+                if (bytes != null && c > 0xFF) {
+                    widen(chunk);
+                    bytes = null;
+                }
+                if (bytes != null) {
+                    bytes[length & CHUNK_MASK] = (byte) c;
+                } else {
+                    wide[chunk][length & CHUNK_MASK] = c;
+                }
+                length++;
+            }
+            lines.extend(length);
+        }
+
+        // Frozen copies share the chunk arrays, so those are copied rather than modified in place
+        private void widen(int chunk) {
+            byte[] bytes = latin[chunk];
+            char[] chars = new char[CHUNK_SIZE];
+            for (int i = 0, written = length & CHUNK_MASK; i < written; i++) {
+                chars[i] = (char) (bytes[i] & 0xFF);
+            }
+            latin = latin.clone();
+            wide = wide.clone();
+            latin[chunk] = null;
+            wide[chunk] = chars;
+        }
+
+        @Override
+        public char charAt(int index) {
+            byte[] bytes = latin[index >>> CHUNK_BITS];
+            return bytes != null
+                    ? (char) (bytes[index & CHUNK_MASK] & 0xFF)
+                    : wide[index >>> CHUNK_BITS][index & CHUNK_MASK];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            StringBuilder sb = new StringBuilder(end - start);
+            appendTo(sb, start, end);
+            return sb.toString();
+        }
+
+        @Override
+        public String toString() {
+            return subSequence(0, length).toString();
+        }
+
+        /**
+         * Read-only copy sharing the written chunks; later appends only touch positions
+         * beyond its length or chunks it does not reference.
+         */
+        AddBuffer freeze() {
+            AddBuffer frozen = new AddBuffer();
+            frozen.latin = latin;
+            frozen.wide = wide;
+            frozen.length = length;
+            frozen.lines = lines.freeze(frozen);
+            return frozen;
+        }
+
+        void appendTo(StringBuilder sb, int start, int end) {
+            while (start < end) {
+                int chunk = start >>> CHUNK_BITS;
+                int offset = start & CHUNK_MASK;
+                int count = Math.min(end - start, CHUNK_SIZE - offset);
+                if (latin[chunk] != null) {
+                    sb.append(new String(latin[chunk], offset, count, StandardCharsets.ISO_8859_1));
+                } else {
+                    sb.append(wide[chunk], offset, count);
+                }
+                start += count;
+            }
+        }
+
+        /**
+         * Bytes taken by the chunks allocated so far.
+         */
+        long getChunkBytes() {
+            long bytes = 0;
+            for (int chunk = 0; chunk < latin.length; chunk++) {
+                if (latin[chunk] != null) bytes += CHUNK_SIZE;
+                if (wide[chunk] != null) bytes += 2L * CHUNK_SIZE;
+            }
+            return bytes;
+        }
+    }
+}
@@ -2,11 +2,15 @@ package classes;
 
 import interfaces.EditorState;
 
+import java.util.List;
+
 /**
  * ===========================================================================================
  * STATE PATTERN: Concrete State - ReadOnlyState
  * ===========================================================================================
  * State where all editing operations are blocked. Throws exceptions when modifications are attempted.
+ * Since the document cannot change, Editor.snapshot() and save() keep handing out the same
+ * immutable snapshot: readers on any thread share it without copying.
  */
 public class ReadOnlyState implements EditorState {
     @Override
@@ -21,6 +25,12 @@ public class ReadOnlyState implements EditorState {
         throw new IllegalStateException("Cannot delete text in Read-Only mode!");
     }
 
+    @Override
+    public void replaceText(Editor editor, List<TextEdit> edits) {
+        // Block the operation and notify the user
+        throw new IllegalStateException("Cannot replace text in Read-Only mode!");
+    }
+
     @Override
     public String getStateName() {
         return "Read-Only Mode";
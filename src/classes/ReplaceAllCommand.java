@@ -0,0 +1,166 @@
+package classes;
+
+import interfaces.Command;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+
+/**
+ * ===========================================================================================
+ * COMMAND PATTERN: Concrete Command - ReplaceAllCommand
+ * ===========================================================================================
+ * Replaces every match of a search, or applies any list of positioned edits (see
+ * Editor.applyEdits), in one step: each match becomes a delete and insert on the buffer,
+ * applied from the last match to the first (see Editor.applyReplacements), and the whole
+ * operation is one undo entry. The document is never copied.
+ * Keeps only the per-match deltas (start, removed text, inserted text); undo puts the removed
+ * texts back the same way, so it costs the size of the matches, not of the document.
+ * Literal searches share a single String for every removed and inserted text.
+ */
+class ReplaceAllCommand implements Command {
+    private Editor editor;
+    private TextSearch search;
+    private String replacement;
+    private int[] starts;       // Match starts in the document before the replacement
+    private String[] removed;
+    private String[] inserted;
+
+    public ReplaceAllCommand(Editor editor, TextSearch search, String replacement) {
+        this.editor = editor;
+        this.search = search;
+        this.replacement = replacement;
+    }
+
+    /**
+     * Command that replaces removed[i] at starts[i] by inserted[i]; starts are ascending and
+     * the ranges do not overlap, all in the document before the command.
+     */
+    static ReplaceAllCommand edits(Editor editor, int[] starts, String[] removed, String[] inserted) {
+        ReplaceAllCommand command = new ReplaceAllCommand(editor, null, null);
+        command.starts = starts;
+        command.removed = removed;
+        command.inserted = inserted;
+        return command;
+    }
+
+    /**
+     * Rebuild a command that has already been executed (used when paging history back in).
+     */
+    static ReplaceAllCommand executed(Editor editor, int[] starts, String[] removed, String[] inserted) {
+        return edits(editor, starts, removed, inserted);
+    }
+
+    /**
+     * Find the matches and their replacements; returns the number of matches.
+     * For regex searches the replacement may refer to groups ($1, ${name}) as in Matcher.
+     */
+    int prepare() {
+        CharSequence document = editor.getBuffer();
+        if (search.isLiteral()) {
+            starts = search.findAllStarts(document);
+            removed = new String[starts.length];
+            inserted = new String[starts.length];
+            Arrays.fill(removed, search.getLiteral());
+            Arrays.fill(inserted, replacement);
+            return starts.length;
+        }
+
+        Matcher matcher = search.matcher(document);
+        StringBuilder sb = new StringBuilder(); // Text before the match and its expansion
+        int count = 0;
+        int[] found = new int[16];
+        String[] foundRemoved = new String[16];
+        String[] foundInserted = new String[16];
+        int appended = 0; // Document offset up to which appendReplacement has copied
+        while (matcher.find()) {
+            if (count == found.length) {
+                found = Arrays.copyOf(found, count * 2);
+                foundRemoved = Arrays.copyOf(foundRemoved, count * 2);
+                foundInserted = Arrays.copyOf(foundInserted, count * 2);
+            }
+            sb.setLength(0);
+            matcher.appendReplacement(sb, replacement);
+            found[count] = matcher.start();
+            foundRemoved[count] = matcher.group();
+            foundInserted[count] = sb.substring(matcher.start() - appended);
+            appended = matcher.end();
+            count++;
+        }
+        starts = Arrays.copyOf(found, count);
+        removed = Arrays.copyOf(foundRemoved, count);
+        inserted = Arrays.copyOf(foundInserted, count);
+        return count;
+    }
+
+    @Override
+    public void execute() {
+        if (starts == null) prepare();
+        editor.getState().replaceText(editor, toEdits(starts, removed, inserted));
+    }
+
+    @Override
+    public void undo() {
+        editor.applyReplacements(inverse(starts, removed, inserted));
+    }
+
+    @Override
+    public TextOperation toOperation() {
+        if (starts == null) return null;
+        TextOperation operation = new TextOperation();
+        int copied = 0;
+        for (int i = 0; i < starts.length; i++) {
+            operation.retain(starts[i] - copied).delete(removed[i]).insert(inserted[i]);
+            copied = starts[i] + removed[i].length();
+        }
+        return operation;
+    }
+
+    @Override
+    public long getPayloadSize() {
+        long size = 32 + 12L * starts.length;
+        for (int i = 0; i < starts.length; i++) {
+            // Literal replacements share one String instance, count it once
+            if (i == 0 || removed[i] != removed[0]) size += 2L * removed[i].length();
+            if (i == 0 || inserted[i] != inserted[0]) size += 2L * inserted[i].length();
+        }
+        return size;
+    }
+
+    int[] getStarts() {
+        return starts;
+    }
+
+    String[] getRemoved() {
+        return removed;
+    }
+
+    String[] getInserted() {
+        return inserted;
+    }
+
+    /**
+     * The edits replacing removed[i] at starts[i] by inserted[i].
+     */
+    static List<TextEdit> toEdits(int[] starts, String[] removed, String[] inserted) {
+        List<TextEdit> edits = new ArrayList<>(starts.length);
+        for (int i = 0; i < starts.length; i++) {
+            edits.add(new TextEdit(starts[i], removed[i].length(), inserted[i]));
+        }
+        return edits;
+    }
+
+    /**
+     * The edits undoing toEdits(): put the removed texts back where the inserted ones ended up.
+     */
+    static List<TextEdit> inverse(int[] starts, String[] removed, String[] inserted) {
+        List<TextEdit> edits = new ArrayList<>(starts.length);
+        int delta = 0;
+        for (int i = 0; i < starts.length; i++) {
+            edits.add(new TextEdit(starts[i] + delta, inserted[i].length(), removed[i]));
+            delta += inserted[i].length() - removed[i].length();
+        }
+        return edits;
+    }
+}
@@ -0,0 +1,80 @@
+package classes;
+
+import interfaces.Command;
+
+import java.util.List;
+
+/**
+ * ===========================================================================================
+ * COMMAND PATTERN: Concrete Command - RestoreCommand
+ * ===========================================================================================
+ * Returns the editor to an explicit checkpoint (an EditorMemento). The first execute diffs
+ * the document against the checkpoint (see TextDiff) and applies the differing ranges as
+ * buffer edits, like ReplaceAllCommand (see Editor.applyReplacements); from then on the command
+ * keeps only those ranges and lets go of the memento. Restoring a checkpoint that differs in
+ * a few lines of a large document costs a few lines in the history, observers get edit events
+ * for those lines, and collaborators receive the same small operation instead of the whole
+ * document. Like undo, restoring bypasses the editor state, so it also works in read-only mode.
+ */
+class RestoreCommand implements Command {
+    private Editor editor;
+    private EditorMemento target; // Only until the first execute
+    private int[] starts;         // Differences from the document the checkpoint replaced
+    private String[] removed;
+    private String[] inserted;
+
+    public RestoreCommand(Editor editor, EditorMemento target) {
+        this.editor = editor;
+        this.target = target;
+    }
+
+    @Override
+    public void execute() {
+        if (starts != null) {
+            editor.applyReplacements(ReplaceAllCommand.toEdits(starts, removed, inserted));
+            return;
+        }
+        CharSequence document = editor.getBuffer();
+        List<TextEdit> edits = TextDiff.diff(document, target.getContent());
+        starts = new int[edits.size()];
+        removed = new String[edits.size()];
+        inserted = new String[edits.size()];
+        for (int i = 0; i < starts.length; i++) {
+            TextEdit edit = edits.get(i);
+            starts[i] = edit.getPosition();
+            removed[i] = document.subSequence(edit.getPosition(), edit.getPosition() + edit.getDeleteLength()).toString();
+            inserted[i] = edit.getInsertText();
+        }
+        target = null;
+        editor.applyReplacements(edits);
+    }
+
+    @Override
+    public void undo() {
+        if (starts != null) {
+            editor.applyReplacements(ReplaceAllCommand.inverse(starts, removed, inserted));
+        }
+    }
+
+    @Override
+    public TextOperation toOperation() {
+        if (starts == null) return null;
+        TextOperation operation = new TextOperation();
+        int copied = 0;
+        for (int i = 0; i < starts.length; i++) {
+            operation.retain(starts[i] - copied).delete(removed[i]).insert(inserted[i]);
+            copied = starts[i] + removed[i].length();
+        }
+        return operation;
+    }
+
+    @Override
+    public long getPayloadSize() {
+        if (starts == null) return 32 + 2L * target.getLength();
+        long size = 32 + 12L * starts.length;
+        for (int i = 0; i < starts.length; i++) {
+            size += 2L * (removed[i].length() + inserted[i].length());
+        }
+        return size;
+    }
+}
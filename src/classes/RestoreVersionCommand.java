@@ -0,0 +1,40 @@
+package classes;
+
+import interfaces.Command;
+
+/**
+ * ===========================================================================================
+ * COMMAND PATTERN: Concrete Command - RestoreVersionCommand
+ * ===========================================================================================
+ * Jumps to an earlier version kept by the editor's version history. Like RestoreCommand it
+ * may replace the whole document, but it keeps no text: undo jumps back to the version it
+ * replaced, which the version history keeps as well (until it grows past its limit).
+ */
+class RestoreVersionCommand implements Command {
+    private final Editor editor;
+    private final long target;
+    private long previous = -1; // Version the jump replaced
+
+    public RestoreVersionCommand(Editor editor, long target) {
+        this.editor = editor;
+        this.target = target;
+    }
+
+    @Override
+    public void execute() {
+        previous = editor.getVersion();
+        editor.jumpToVersion(target);
+    }
+
+    @Override
+    public void undo() {
+        if (previous >= 0) {
+            editor.jumpToVersion(previous);
+        }
+    }
+
+    @Override
+    public long getPayloadSize() {
+        return 32;
+    }
+}
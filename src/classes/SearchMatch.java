@@ -0,0 +1,43 @@
+package classes;
+
+/**
+ * One match found by a TextSearch: the characters in [start, end) of the searched text.
+ */
+public final class SearchMatch {
+    private final int start;
+    private final int end;
+
+    public SearchMatch(int start, int end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    public int getStart() {
+        return start;
+    }
+
+    public int getEnd() {
+        return end;
+    }
+
+    public int getLength() {
+        return end - start;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof SearchMatch)) return false;
+        SearchMatch match = (SearchMatch) other;
+        return start == match.start && end == match.end;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * start + end;
+    }
+
+    @Override
+    public String toString() {
+        return "[" + start + ", " + end + ")";
+    }
+}
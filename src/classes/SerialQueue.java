@@ -0,0 +1,49 @@
+package classes;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ===========================================================================================
+ * CONCURRENCY: SerialQueue
+ * ===========================================================================================
+ * Runs its tasks one at a time, in submission order, on a shared pool. Thousands of queues
+ * can share a few threads: an idle queue holds no thread, and a busy one gives its thread
+ * back after a batch of tasks so other queues are not starved.
+ */
+final class SerialQueue implements Executor {
+    private static final int BATCH = 64;
+
+    private final Executor pool;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger(); // Queued tasks not yet finished
+
+    SerialQueue(Executor pool) {
+        this.pool = pool;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        tasks.add(task);
+        if (pending.getAndIncrement() == 0) {
+            pool.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        for (int budget = BATCH; ; budget--) {
+            try {
+                tasks.poll().run();
+            } catch (RuntimeException e) {
+                // Tasks report their own failures; one failing must not stall the queue
+            }
+            if (pending.decrementAndGet() == 0) return;
+            if (budget == 1) {
+                pool.execute(this::drain);
+                return;
+            }
+        }
+    }
+}
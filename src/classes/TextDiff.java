@@ -0,0 +1,461 @@
+package classes;
+
+import interfaces.TextView;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ===========================================================================================
+ * DIFF: TextDiff
+ * ===========================================================================================
+ * Finds the edits that turn one text into another, as TextEdits ready for Editor.applyEdits()
+ * (ascending, non-overlapping, positions in the old text).
+ * The common prefix and suffix are skipped first, so a local change in a large document only
+ * costs a scan. A rest longer than CHAR_DIFF_LIMIT is first matched line by line with a
+ * histogram diff: it anchors on the longest run of equal lines built around the line that
+ * occurs least often in the old region (at most MAX_OCCURRENCES times) and recurses on both
+ * sides. Everything else is compared char by char with Myers' O((N+M)D) algorithm in linear
+ * space (bisecting on the middle snake), which finds a shortest edit script. Myers gives up
+ * on regions whose cost would exceed MAX_MYERS_WORK and replaces them as a whole, so the
+ * result is always correct but only minimal within that budget.
+ */
+public final class TextDiff {
+    private static final int CHAR_DIFF_LIMIT = 1 << 16;
+    private static final int MAX_OCCURRENCES = 64;
+    private static final long MAX_MYERS_WORK = 1L << 26; // (N + M) * D per region
+    private static final int MIN_MYERS_COST = 256;        // Always affordable, whatever the size
+    private static final int BLOCK = 8192;
+
+    private final int offset;   // Length of the common prefix, where both regions start
+    private final char[] a;     // Old and new text between the common prefix and suffix
+    private final char[] b;
+    private final List<TextEdit> edits = new ArrayList<>();
+    private int pendingA = -1;  // Change being extended: old [pendingA, pendingAEnd)
+    private int pendingAEnd;    // replaced by new [pendingB, pendingBEnd)
+    private int pendingB;
+    private int pendingBEnd;
+
+    private TextDiff(int offset, char[] a, char[] b) {
+        this.offset = offset;
+        this.a = a;
+        this.b = b;
+    }
+
+    /**
+     * The edits that turn before into after.
+     */
+    public static List<TextEdit> diff(CharSequence before, CharSequence after) {
+        int n = before.length();
+        int m = after.length();
+        int prefix = commonPrefix(before, after);
+        int suffix = commonSuffix(before, after, Math.min(n, m) - prefix);
+        TextDiff diff = new TextDiff(prefix, chars(before, prefix, n - suffix), chars(after, prefix, m - suffix));
+        diff.diffLines();
+        diff.flush();
+        return diff.edits;
+    }
+
+    /**
+     * The edits that turn the content of one memento into that of another.
+     */
+    public static List<TextEdit> diff(EditorMemento before, EditorMemento after) {
+        return diff(before.getContent(), after.getContent());
+    }
+
+    // Documents are compared a block at a time: charAt() on a piece table is a tree descent
+    private static int commonPrefix(CharSequence before, CharSequence after) {
+        int limit = Math.min(before.length(), after.length());
+        for (int start = 0; start < limit; start += BLOCK) {
+            int end = Math.min(limit, start + BLOCK);
+            String x = text(before, start, end);
+            String y = text(after, start, end);
+            for (int i = 0; i < x.length(); i++) {
+                if (x.charAt(i) != y.charAt(i)) return start + i;
+            }
+        }
+        return limit;
+    }
+
+    private static int commonSuffix(CharSequence before, CharSequence after, int limit) {
+        int n = before.length();
+        int m = after.length();
+        for (int length = 0; length < limit; length += BLOCK) {
+            int block = Math.min(limit - length, BLOCK);
+            String x = text(before, n - length - block, n - length);
+            String y = text(after, m - length - block, m - length);
+            for (int i = block - 1; i >= 0; i--) {
+                if (x.charAt(i) != y.charAt(i)) return length + block - 1 - i;
+            }
+        }
+        return limit;
+    }
+
+    private static String text(CharSequence text, int start, int end) {
+        if (text instanceof String) return ((String) text).substring(start, end);
+        if (text instanceof TextView) return ((TextView) text).getText(start, end);
+        return text.subSequence(start, end).toString();
+    }
+
+    private static char[] chars(CharSequence text, int start, int end) {
+        return start == end ? new char[0] : text(text, start, end).toCharArray();
+    }
+
+    // ===========================================================================================
+    // LINES: Histogram diff
+    // ===========================================================================================
+
+    private void diffLines() {
+        if (a.length + b.length <= CHAR_DIFF_LIMIT) { // Small enough for an exact char diff
+            diffChars(0, a.length, 0, b.length);
+            return;
+        }
+        Map<String, Integer> ids = new HashMap<>();
+        int[] startsA = lineStarts(a);
+        int[] startsB = lineStarts(b);
+        int[] linesA = lineIds(a, startsA, ids);
+        int[] linesB = lineIds(b, startsB, ids);
+        Histogram histogram = new Histogram(linesA, linesB, ids.size());
+
+        // Regions still to compare, as line ranges {aLo, aHi, bLo, bHi}; the leftmost on top
+        ArrayDeque<int[]> regions = new ArrayDeque<>();
+        regions.push(new int[]{0, linesA.length, 0, linesB.length});
+        while (!regions.isEmpty()) {
+            int[] region = regions.pop();
+            int aLo = region[0], aHi = region[1], bLo = region[2], bHi = region[3];
+            while (aLo < aHi && bLo < bHi && linesA[aLo] == linesB[bLo]) {
+                aLo++;
+                bLo++;
+            }
+            while (aLo < aHi && bLo < bHi && linesA[aHi - 1] == linesB[bHi - 1]) {
+                aHi--;
+                bHi--;
+            }
+            int[] anchor = aLo < aHi && bLo < bHi ? histogram.findAnchor(aLo, aHi, bLo, bHi) : null;
+            if (anchor == null) {
+                diffChars(startsA[aLo], startsA[aHi], startsB[bLo], startsB[bHi]);
+            } else {
+                regions.push(new int[]{anchor[0] + anchor[2], aHi, anchor[1] + anchor[2], bHi});
+                regions.push(new int[]{aLo, anchor[0], bLo, anchor[1]});
+            }
+        }
+    }
+
+    // Offsets where each line starts (lines keep their '\n'), plus the text length at the end
+    private static int[] lineStarts(char[] text) {
+        int count = 1;
+        for (int i = 0; i < text.length - 1; i++) {
+            if (text[i] == '\n') count++;
+        }
+        int[] starts = new int[count + 1];
+        int line = 1;
+        for (int i = 0; i < text.length - 1; i++) {
+            if (text[i] == '\n') starts[line++] = i + 1;
+        }
+        starts[count] = text.length;
+        return starts;
+    }
+
+    private static int[] lineIds(char[] text, int[] starts, Map<String, Integer> ids) {
+        int[] lines = new int[starts.length - 1];
+        for (int i = 0; i < lines.length; i++) {
+            String line = new String(text, starts[i], starts[i + 1] - starts[i]);
+            Integer id = ids.putIfAbsent(line, ids.size());
+            lines[i] = id != null ? id : ids.size() - 1;
+        }
+        return lines;
+    }
+
+    // Occurrences of each line in the old region being matched, indexed by line id
+    private static final class Histogram {
+        private final int[] linesA;
+        private final int[] linesB;
+        private final int[] counts;   // Occurrences of each line id, all 0 between regions
+        private final int[] last;     // Last occurrence of each line id, -1 between regions
+        private final int[] previous; // Previous occurrence of the line at each old index, or -1
+
+        Histogram(int[] linesA, int[] linesB, int lineCount) {
+            this.linesA = linesA;
+            this.linesB = linesB;
+            counts = new int[lineCount];
+            last = new int[lineCount];
+            previous = new int[linesA.length];
+            Arrays.fill(last, -1);
+        }
+
+        /**
+         * The run of equal lines around the rarest old line that also appears in the new
+         * region, as {aStart, bStart, length}; ties go to the longer run. Null when every
+         * shared line is too common to be a reliable anchor.
+         */
+        int[] findAnchor(int aLo, int aHi, int bLo, int bHi) {
+            for (int i = aLo; i < aHi; i++) {
+                counts[linesA[i]]++;
+                previous[i] = last[linesA[i]];
+                last[linesA[i]] = i;
+            }
+            int[] best = null;
+            int bestCount = MAX_OCCURRENCES;
+            for (int j = bLo; j < bHi; ) {
+                int count = counts[linesB[j]];
+                int next = j + 1;
+                if (count > 0 && count <= bestCount) {
+                    for (int i = last[linesB[j]]; i >= 0; i = previous[i]) {
+                        int as = i, bs = j;
+                        while (as > aLo && bs > bLo && linesA[as - 1] == linesB[bs - 1]) {
+                            as--;
+                            bs--;
+                        }
+                        int ae = i + 1, be = j + 1;
+                        while (ae < aHi && be < bHi && linesA[ae] == linesB[be]) {
+                            ae++;
+                            be++;
+                        }
+                        if (best == null || count < bestCount || ae - as > best[2]) {
+                            best = new int[]{as, bs, ae - as};
+                            bestCount = count;
+                        }
+                        next = Math.max(next, be);
+                    }
+                }
+                j = next;
+            }
+            for (int i = aLo; i < aHi; i++) {
+                counts[linesA[i]] = 0;
+                last[linesA[i]] = -1;
+            }
+            return best;
+        }
+    }
+
+    // ===========================================================================================
+    // CHARS: Myers in linear space
+    // ===========================================================================================
+
+    private void diffChars(int aLo, int aHi, int bLo, int bHi) {
+        ArrayDeque<int[]> regions = new ArrayDeque<>();
+        regions.push(new int[]{aLo, aHi, bLo, bHi});
+        while (!regions.isEmpty()) {
+            int[] region = regions.pop();
+            int x0 = region[0], x1 = region[1], y0 = region[2], y1 = region[3];
+            while (x0 < x1 && y0 < y1 && a[x0] == b[y0]) {
+                x0++;
+                y0++;
+            }
+            while (x0 < x1 && y0 < y1 && a[x1 - 1] == b[y1 - 1]) {
+                x1--;
+                y1--;
+            }
+            int[] split = x0 < x1 && y0 < y1 ? middleSnake(x0, x1, y0, y1) : null;
+            if (split == null) {
+                changed(x0, x1, y0, y1);
+            } else {
+                regions.push(new int[]{split[0], x1, split[1], y1});
+                regions.push(new int[]{x0, split[0], y0, split[1]});
+            }
+        }
+    }
+
+    /**
+     * A point {x, y} on a shortest edit path through a[x0, x1) and b[y0, y1), found by running
+     * the forward and the backward search until they overlap. Null if the edit distance is
+     * above the work budget; the region is then replaced as a whole.
+     */
+    private int[] middleSnake(int x0, int x1, int y0, int y1) {
+        int n = x1 - x0;
+        int m = y1 - y0;
+        int maxD = (int) Math.min((n + m + 1) / 2, Math.max(MIN_MYERS_COST, MAX_MYERS_WORK / (n + m)));
+        int vOffset = maxD + 1;
+        int[] forward = new int[2 * vOffset + 2];  // Furthest x reached on each diagonal k = x - y
+        int[] backward = new int[2 * vOffset + 2]; // The same, counted from the ends
+        Arrays.fill(forward, -1);
+        Arrays.fill(backward, -1);
+        forward[vOffset + 1] = 0;
+        backward[vOffset + 1] = 0;
+        int delta = n - m;
+        boolean front = (delta & 1) != 0; // Which search can detect the overlap first
+        int kStart1 = 0, kEnd1 = 0, kStart2 = 0, kEnd2 = 0;
+
+        for (int d = 0; d < maxD; d++) {
+            for (int k = -d + kStart1; k <= d - kEnd1; k += 2) {
+                int index = vOffset + k;
+                int x = k == -d || (k != d && forward[index - 1] < forward[index + 1])
+                        ? forward[index + 1] : forward[index - 1] + 1;
+                int y = x - k;
+                while (x < n && y < m && a[x0 + x] == b[y0 + y]) {
+                    x++;
+                    y++;
+                }
+                forward[index] = x;
+                if (x > n) {
+                    kEnd1 += 2;
+                } else if (y > m) {
+                    kStart1 += 2;
+                } else if (front) {
+                    int other = vOffset + delta - k;
+                    if (other >= 0 && other < backward.length && backward[other] != -1 && x >= n - backward[other]) {
+                        return new int[]{x0 + x, y0 + y};
+                    }
+                }
+            }
+            for (int k = -d + kStart2; k <= d - kEnd2; k += 2) {
+                int index = vOffset + k;
+                int x = k == -d || (k != d && backward[index - 1] < backward[index + 1])
+                        ? backward[index + 1] : backward[index - 1] + 1;
+                int y = x - k;
+                while (x < n && y < m && a[x1 - 1 - x] == b[y1 - 1 - y]) {
+                    x++;
+                    y++;
+                }
+                backward[index] = x;
+                if (x > n) {
+                    kEnd2 += 2;
+                } else if (y > m) {
+                    kStart2 += 2;
+                } else if (!front) {
+                    int other = vOffset + delta - k;
+                    if (other >= 0 && other < forward.length && forward[other] != -1) {
+                        int fx = forward[other];
+                        int fy = vOffset + fx - other;
+                        if (fx >= n - x) {
+                            return new int[]{x0 + fx, y0 + fy};
+                        }
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    // ===========================================================================================
+    // OUTPUT: Adjacent changes merge into one TextEdit
+    // ===========================================================================================
+
+    private void changed(int aFrom, int aTo, int bFrom, int bTo) {
+        if (aFrom == aTo && bFrom == bTo) return;
+        if (pendingA >= 0 && pendingAEnd == aFrom && pendingBEnd == bFrom) {
+            pendingAEnd = aTo;
+            pendingBEnd = bTo;
+            return;
+        }
+        flush();
+        pendingA = aFrom;
+        pendingAEnd = aTo;
+        pendingB = bFrom;
+        pendingBEnd = bTo;
+    }
+
+    private void flush() {
+        if (pendingA < 0) return;
+        edits.add(new TextEdit(offset + pendingA, pendingAEnd - pendingA,
+                new String(b, pendingB, pendingBEnd - pendingB)));
+        pendingA = -1;
+    }
+
+    // ===========================================================================================
+    // DISPLAY: Line-oriented listing of a diff
+    // ===========================================================================================
+
+    /**
+     * A listing of the edits for people, in the style of a unified diff without context: for
+     * each group of changed lines a "@@ -line,count +line,count @@" header (one-based lines),
+     * the old lines prefixed with '-' and the new ones with '+'. Edits touching the same line
+     * are shown together.
+     */
+    public static String format(CharSequence before, List<TextEdit> edits) {
+        StringBuilder sb = new StringBuilder();
+        LineCursor lines = new LineCursor(before);
+        int lineShift = 0; // New line numbers minus old ones, from the groups already listed
+        for (int i = 0; i < edits.size(); ) {
+            TextEdit first = edits.get(i);
+            int startLine = lines.lineOf(first.getPosition());
+            int start = lines.lineStart;
+            int end = hunkEnd(before, first);
+            int group = i + 1;
+            while (group < edits.size() && onCoveredLine(before, edits.get(group).getPosition(), end)) {
+                end = Math.max(end, hunkEnd(before, edits.get(group++)));
+            }
+
+            String oldText = before.subSequence(start, end).toString();
+            StringBuilder newText = new StringBuilder();
+            int copied = start;
+            for (int e = i; e < group; e++) {
+                TextEdit edit = edits.get(e);
+                newText.append(before, copied, edit.getPosition()).append(edit.getInsertText());
+                copied = edit.getPosition() + edit.getDeleteLength();
+            }
+            newText.append(before, copied, end);
+
+            int oldCount = lineCount(oldText);
+            int newCount = lineCount(newText);
+            sb.append(String.format("@@ -%d,%d +%d,%d @@%n", startLine + 1, oldCount,
+                    startLine + 1 + lineShift, newCount));
+            appendLines(sb, '-', oldText);
+            appendLines(sb, '+', newText);
+            lineShift += newCount - oldCount;
+            i = group;
+        }
+        return sb.toString();
+    }
+
+    // End of the last line the edit touches, after its '\n'
+    private static int hunkEnd(CharSequence text, TextEdit edit) {
+        int end = edit.getDeleteLength() > 0 ? edit.getPosition() + edit.getDeleteLength() - 1 : edit.getPosition();
+        while (end < text.length() && text.charAt(end) != '\n') {
+            end++;
+        }
+        return end < text.length() ? end + 1 : end;
+    }
+
+    // Whether the offset lies on a line that ends at or before end (exclusive end of a hunk)
+    private static boolean onCoveredLine(CharSequence text, int offset, int end) {
+        return offset < end || (offset == end && end == text.length() && end > 0 && text.charAt(end - 1) != '\n');
+    }
+
+    private static int lineCount(CharSequence text) {
+        int count = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') count++;
+        }
+        return text.length() == 0 || text.charAt(text.length() - 1) == '\n' ? count : count + 1;
+    }
+
+    private static void appendLines(StringBuilder sb, char sign, CharSequence text) {
+        int start = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') {
+                sb.append(sign).append(text, start, i).append('\n');
+                start = i + 1;
+            }
+        }
+        if (start < text.length()) {
+            sb.append(sign).append(text, start, text.length()).append('\n');
+        }
+    }
+
+    // Line numbers of ascending offsets in one forward scan
+    private static final class LineCursor {
+        private final CharSequence text;
+        private int scanned; // Offset up to which line and lineStart are known
+        private int line;
+        private int lineStart;
+
+        LineCursor(CharSequence text) {
+            this.text = text;
+        }
+
+        int lineOf(int offset) {
+            for (; scanned < offset; scanned++) {
+                if (text.charAt(scanned) == '\n') {
+                    line++;
+                    lineStart = scanned + 1;
+                }
+            }
+            return line;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package classes;
+
+/**
+ * ===========================================================================================
+ * BULK EDITING: TextEdit
+ * ===========================================================================================
+ * One positioned edit for Editor.applyEdits(): delete deleteLength characters at position,
+ * then insert insertText there. Positions always refer to the document before any of the
+ * edits in the same call, so callers (multi-cursor typing, column edits, refactorings) never
+ * adjust offsets for the edits that come before.
+ */
+public final class TextEdit {
+    private final int position;
+    private final int deleteLength;
+    private final String insertText;
+
+    public TextEdit(int position, int deleteLength, String insertText) {
+        if (position < 0 || deleteLength < 0) {
+            throw new IllegalArgumentException("Negative position or length: " + position + ", " + deleteLength);
+        }
+        this.position = position;
+        this.deleteLength = deleteLength;
+        this.insertText = insertText != null ? insertText : "";
+    }
+
+    public static TextEdit insert(int position, String text) {
+        return new TextEdit(position, 0, text);
+    }
+
+    public static TextEdit delete(int position, int length) {
+        return new TextEdit(position, length, "");
+    }
+
+    public int getPosition() {
+        return position;
+    }
+
+    public int getDeleteLength() {
+        return deleteLength;
+    }
+
+    public String getInsertText() {
+        return insertText;
+    }
+
+    @Override
+    public String toString() {
+        return "TextEdit[" + position + ", -" + deleteLength + ", +\"" + insertText + "\"]";
+    }
+}
@@ -0,0 +1,80 @@
+package classes;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * ===========================================================================================
+ * FILE I/O: TextFileWriter
+ * ===========================================================================================
+ * Streams a document to a channel piece by piece: ranges that still come from a mapped file
+ * in the same charset are copied with transferTo, everything else is encoded in small chunks.
+ * The document is never materialized as one String.
+ */
+class TextFileWriter {
+    private static final int CHUNK_CHARS = 8192;
+
+    private final WritableByteChannel out;
+    private final Charset charset;
+    private final CharsetEncoder encoder;
+    private final ByteBuffer bytes;
+
+    TextFileWriter(WritableByteChannel out, Charset charset) {
+        this.out = out;
+        this.charset = charset;
+        this.encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        this.bytes = ByteBuffer.allocate((int) (CHUNK_CHARS * encoder.maxBytesPerChar()) + 16);
+    }
+
+    /**
+     * Write chars [start, end) of a source; mapped sources are copied without decoding when possible.
+     */
+    void write(CharSequence source, int start, int end) throws IOException {
+        if (source instanceof MappedTextFile) {
+            MappedTextFile file = (MappedTextFile) source;
+            if (file.getCharset().equals(charset) && file.transferTo(start, end, out)) {
+                return;
+            }
+        }
+        while (start < end) {
+            int chunkEnd = Math.min(end, start + CHUNK_CHARS);
+            if (chunkEnd < end && Character.isHighSurrogate(source.charAt(chunkEnd - 1))) {
+                chunkEnd++; // Keep surrogate pairs in one chunk
+            }
+            encode(CharBuffer.wrap(source, start, chunkEnd));
+            start = chunkEnd;
+        }
+    }
+
+    // Each chunk is encoded as complete input: chunks never split a surrogate pair,
+    // so a lone surrogate at a piece boundary is replaced like any malformed input
+    private void encode(CharBuffer chars) throws IOException {
+        encoder.reset();
+        CoderResult result;
+        do {
+            result = encoder.encode(chars, bytes, true);
+            if (result.isError()) result.throwException();
+            flushBytes();
+        } while (result.isOverflow());
+        while (encoder.flush(bytes).isOverflow()) {
+            flushBytes();
+        }
+        flushBytes();
+    }
+
+    private void flushBytes() throws IOException {
+        bytes.flip();
+        while (bytes.hasRemaining()) {
+            out.write(bytes);
+        }
+        bytes.clear();
+    }
+}
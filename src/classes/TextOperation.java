@@ -0,0 +1,455 @@
+package classes;
+
+import interfaces.TextBuffer;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ===========================================================================================
+ * COLLABORATION: TextOperation
+ * ===========================================================================================
+ * One edit of a whole document as a sequence of retain / insert / delete components, in the
+ * style of operational transformation. Unchanged stretches are a single retain count, so an
+ * operation is as large as the text it inserts and deletes, never as large as the document.
+ * Deletes may carry the removed text; that is only needed to invert an operation (undo).
+ * Operations are built with the chainable retain/insert/delete methods, which keep the
+ * components canonical: no empty components, no two adjacent ones of the same kind, and an
+ * insert always before a delete at the same position.
+ */
+public final class TextOperation {
+    private static final byte RETAIN = 0;
+    private static final byte INSERT = 1;
+    private static final byte DELETE = 2;
+    private static final byte DELETE_TEXT = 3; // Wire form of a delete that carries its text
+
+    private final List<Component> components = new ArrayList<>();
+    private int baseLength;   // Length of the document the operation applies to
+    private int targetLength; // Length of the document it produces
+
+    // ===========================================================================================
+    // PUBLIC API: Building operations
+    // ===========================================================================================
+
+    /**
+     * Skip over count unchanged characters.
+     */
+    public TextOperation retain(int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Retain count must not be negative: " + count);
+        }
+        return add(new Component(RETAIN, count, null));
+    }
+
+    public TextOperation insert(String text) {
+        return add(new Component(INSERT, text.length(), text));
+    }
+
+    /**
+     * Delete count characters without remembering them; such an operation cannot be inverted.
+     */
+    public TextOperation delete(int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Delete count must not be negative: " + count);
+        }
+        return add(new Component(DELETE, count, null));
+    }
+
+    /**
+     * Delete the given characters, keeping them so the operation can be inverted.
+     */
+    public TextOperation delete(String removedText) {
+        return add(new Component(DELETE, removedText.length(), removedText));
+    }
+
+    /**
+     * Retain the rest of a document of the given length. Operations built for one edit may stop
+     * after their last change; this makes them cover the whole document.
+     */
+    public TextOperation retainRest(int documentLength) {
+        if (documentLength < baseLength) {
+            throw new IllegalArgumentException("Operation covers " + baseLength + " chars, document has " + documentLength);
+        }
+        return retain(documentLength - baseLength);
+    }
+
+    public int getBaseLength() {
+        return baseLength;
+    }
+
+    public int getTargetLength() {
+        return targetLength;
+    }
+
+    /**
+     * Whether the operation leaves the document unchanged.
+     */
+    public boolean isNoop() {
+        return components.isEmpty() || (components.size() == 1 && components.get(0).kind == RETAIN);
+    }
+
+    // ===========================================================================================
+    // PUBLIC API: Operational transformation
+    // ===========================================================================================
+
+    /**
+     * The operation that undoes this one. Every delete must carry its text.
+     */
+    public TextOperation invert() {
+        TextOperation inverse = new TextOperation();
+        for (Component component : components) {
+            if (component.kind == RETAIN) {
+                inverse.retain(component.length);
+            } else if (component.kind == INSERT) {
+                inverse.delete(component.text);
+            } else if (component.text != null) {
+                inverse.insert(component.text);
+            } else {
+                throw new IllegalStateException("Cannot invert a delete that did not keep its text");
+            }
+        }
+        return inverse;
+    }
+
+    /**
+     * One operation with the effect of this one followed by next.
+     */
+    public TextOperation compose(TextOperation next) {
+        if (targetLength != next.baseLength) {
+            throw new IllegalArgumentException("Cannot compose: first produces " + targetLength
+                    + " chars, second expects " + next.baseLength);
+        }
+        TextOperation composed = new TextOperation();
+        Cursor first = new Cursor(this);
+        Cursor second = new Cursor(next);
+        while (first.current != null || second.current != null) {
+            if (first.current != null && first.current.kind == DELETE) {
+                composed.add(first.current);
+                first.next();
+                continue;
+            }
+            if (second.current != null && second.current.kind == INSERT) {
+                composed.add(second.current);
+                second.next();
+                continue;
+            }
+            if (first.current == null || second.current == null) {
+                throw new IllegalStateException("Operation lengths do not match");
+            }
+            int n = Math.min(first.current.length, second.current.length);
+            if (first.current.kind == RETAIN && second.current.kind == RETAIN) {
+                composed.retain(n);
+            } else if (first.current.kind == INSERT && second.current.kind == RETAIN) {
+                composed.add(first.current.head(n));
+            } else if (first.current.kind == RETAIN && second.current.kind == DELETE) {
+                composed.add(second.current.head(n));
+            } // Text inserted by the first and deleted by the second never appears at all
+            first.skip(n);
+            second.skip(n);
+        }
+        return composed;
+    }
+
+    /**
+     * Transform two concurrent operations on the same document. Returns {a', b'} such that
+     * applying a then b' gives the same document as applying b then a'.
+     * When both insert at the same position, a's text ends up first.
+     */
+    public static TextOperation[] transform(TextOperation a, TextOperation b) {
+        if (a.baseLength != b.baseLength) {
+            throw new IllegalArgumentException("Concurrent operations must start from the same document: "
+                    + a.baseLength + " vs " + b.baseLength + " chars");
+        }
+        TextOperation aPrime = new TextOperation();
+        TextOperation bPrime = new TextOperation();
+        Cursor left = new Cursor(a);
+        Cursor right = new Cursor(b);
+        while (left.current != null || right.current != null) {
+            if (left.current != null && left.current.kind == INSERT) {
+                aPrime.add(left.current);
+                bPrime.retain(left.current.length);
+                left.next();
+                continue;
+            }
+            if (right.current != null && right.current.kind == INSERT) {
+                aPrime.retain(right.current.length);
+                bPrime.add(right.current);
+                right.next();
+                continue;
+            }
+            if (left.current == null || right.current == null) {
+                throw new IllegalStateException("Operation lengths do not match");
+            }
+            int n = Math.min(left.current.length, right.current.length);
+            if (left.current.kind == RETAIN && right.current.kind == RETAIN) {
+                aPrime.retain(n);
+                bPrime.retain(n);
+            } else if (left.current.kind == DELETE && right.current.kind == RETAIN) {
+                aPrime.add(left.current.head(n));
+            } else if (left.current.kind == RETAIN && right.current.kind == DELETE) {
+                bPrime.add(right.current.head(n));
+            } // Both deleted the same characters, so neither transformed operation has to
+            left.skip(n);
+            right.skip(n);
+        }
+        return new TextOperation[]{aPrime, bPrime};
+    }
+
+    // ===========================================================================================
+    // APPLYING: One buffer edit per insert / delete component
+    // ===========================================================================================
+
+    /**
+     * Apply to the editor's document directly, bypassing the command history and edit state.
+     */
+    void applyTo(Editor editor) {
+        checkLength(editor.getLength());
+        int position = 0;
+        for (Component component : components) {
+            if (component.kind == RETAIN) {
+                position += component.length;
+            } else if (component.kind == INSERT) {
+                editor.applyInsert(component.text, position);
+                position += component.length;
+            } else {
+                editor.applyDelete(component.length, position);
+            }
+        }
+    }
+
+    void applyTo(TextBuffer buffer) {
+        checkLength(buffer.length());
+        int position = 0;
+        for (Component component : components) {
+            if (component.kind == RETAIN) {
+                position += component.length;
+            } else if (component.kind == INSERT) {
+                buffer.insert(position, component.text);
+                position += component.length;
+            } else {
+                buffer.delete(position, component.length);
+            }
+        }
+    }
+
+    private void checkLength(int documentLength) {
+        if (documentLength != baseLength) {
+            throw new IllegalStateException("Operation expects " + baseLength + " chars, document has " + documentLength);
+        }
+    }
+
+    // ===========================================================================================
+    // SERIALIZATION: Compact binary form for the wire and the history spill
+    // ===========================================================================================
+
+    /**
+     * Write the components; deleted text is only written when asked for (the wire never needs it).
+     */
+    void write(DataOutput out, boolean deletedText) throws IOException {
+        out.writeInt(components.size());
+        for (Component component : components) {
+            if (component.kind == INSERT) {
+                out.writeByte(INSERT);
+                writeText(out, component.text);
+            } else if (component.kind == DELETE && deletedText && component.text != null) {
+                out.writeByte(DELETE_TEXT);
+                writeText(out, component.text);
+            } else {
+                out.writeByte(component.kind);
+                out.writeInt(component.length);
+            }
+        }
+    }
+
+    static TextOperation read(DataInput in) throws IOException {
+        return read(in, in.readInt());
+    }
+
+    /**
+     * Read the components after their count has already been read.
+     */
+    static TextOperation read(DataInput in, int count) throws IOException {
+        TextOperation operation = new TextOperation();
+        for (int i = 0; i < count; i++) {
+            byte kind = in.readByte();
+            switch (kind) {
+                case RETAIN:
+                    operation.retain(in.readInt());
+                    break;
+                case INSERT:
+                    operation.insert(readText(in));
+                    break;
+                case DELETE:
+                    operation.delete(in.readInt());
+                    break;
+                case DELETE_TEXT:
+                    operation.delete(readText(in));
+                    break;
+                default:
+                    throw new IOException("Unknown operation component " + kind);
+            }
+        }
+        return operation;
+    }
+
+    private static void writeText(DataOutput out, String text) throws IOException {
+        out.writeInt(text.length());
+        out.writeChars(text);
+    }
+
+    private static String readText(DataInput in) throws IOException {
+        int length = in.readInt();
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = in.readChar();
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Approximate heap bytes held by the components (used for history budgets).
+     */
+    long getPayloadSize() {
+        long size = 32;
+        for (Component component : components) {
+            size += 24 + (component.text == null ? 0 : 2L * component.text.length());
+        }
+        return size;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof TextOperation)) return false;
+        TextOperation other = (TextOperation) o;
+        return baseLength == other.baseLength && components.equals(other.components);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * baseLength + components.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (Component component : components) {
+            if (sb.length() > 1) sb.append(", ");
+            sb.append(component);
+        }
+        return sb.append(']').toString();
+    }
+
+    // ===========================================================================================
+    // INTERNALS
+    // ===========================================================================================
+
+    private TextOperation add(Component component) {
+        if (component.length == 0) return this;
+        int last = components.size() - 1;
+        Component previous = last >= 0 ? components.get(last) : null;
+        if (component.kind == RETAIN) {
+            baseLength += component.length;
+            targetLength += component.length;
+        } else if (component.kind == INSERT) {
+            targetLength += component.length;
+            if (previous != null && previous.kind == DELETE) {
+                // Keep inserts in front of deletes, so equal edits have equal components
+                Component beforeDelete = last > 0 ? components.get(last - 1) : null;
+                if (beforeDelete != null && beforeDelete.kind == INSERT) {
+                    components.set(last - 1, beforeDelete.append(component));
+                } else {
+                    components.add(last, component);
+                }
+                return this;
+            }
+        } else {
+            baseLength += component.length;
+        }
+        if (previous != null && previous.kind == component.kind) {
+            components.set(last, previous.append(component));
+        } else {
+            components.add(component);
+        }
+        return this;
+    }
+
+    /**
+     * A run of retained, inserted or deleted characters. text is the inserted text, the deleted
+     * text (or null when it was not kept), and always null for retains.
+     */
+    private static final class Component {
+        final byte kind;
+        final int length;
+        final String text;
+
+        Component(byte kind, int length, String text) {
+            this.kind = kind;
+            this.length = length;
+            this.text = text;
+        }
+
+        Component head(int n) {
+            return n == length ? this : new Component(kind, n, text == null ? null : text.substring(0, n));
+        }
+
+        Component tail(int n) {
+            return new Component(kind, length - n, text == null ? null : text.substring(n));
+        }
+
+        Component append(Component next) {
+            String joined = text == null || next.text == null ? null : text + next.text;
+            return new Component(kind, length + next.length, joined);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Component)) return false;
+            Component other = (Component) o;
+            // Deleted text is optional, so deletes compare by length
+            return kind == other.kind && length == other.length
+                    && (kind != INSERT || text.equals(other.text));
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * kind + length) + (kind == INSERT ? text.hashCode() : 0);
+        }
+
+        @Override
+        public String toString() {
+            if (kind == RETAIN) return "retain " + length;
+            if (kind == INSERT) return "insert \"" + text + "\"";
+            return text == null ? "delete " + length : "delete \"" + text + "\"";
+        }
+    }
+
+    /**
+     * Walks the components of an operation, splitting the current one as parts are consumed.
+     */
+    private static final class Cursor {
+        private final List<Component> components;
+        private int index;
+        Component current;
+
+        Cursor(TextOperation operation) {
+            this.components = operation.components;
+            next();
+        }
+
+        void next() {
+            current = index < components.size() ? components.get(index++) : null;
+        }
+
+        void skip(int n) {
+            if (n < current.length) {
+                current = current.tail(n);
+            } else {
+                next();
+            }
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package classes;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * ===========================================================================================
+ * SEARCH: TextSearch
+ * ===========================================================================================
+ * A literal or regular-expression query over any CharSequence (usually a buffer snapshot).
+ * Literal search copies the text out in chunks and scans them with Boyer-Moore-Horspool
+ * (String.indexOf, which the JVM vectorizes, for very short patterns). Documents larger than
+ * a few chunks are searched in parallel on the common fork-join pool.
+ * Regular expressions run in one sequential pass over a window that decodes the text a
+ * block at a time, since a regex match has no bounded length to split chunks by.
+ * Matches never overlap: each one starts at or after the end of the previous one.
+ */
+public final class TextSearch {
+    static final int CHUNK_SIZE = 1 << 20;     // Chars copied out and scanned at once
+    private static final int SHORT_PATTERN = 4; // Below this String.indexOf beats the skip table
+
+    private final String literal; // null for regex searches
+    private final Pattern pattern;
+    private final int[] shifts;   // Boyer-Moore-Horspool bad-character shifts, by low byte
+
+    private TextSearch(String literal, Pattern pattern) {
+        this.literal = literal;
+        this.pattern = pattern;
+        this.shifts = literal == null || literal.length() < SHORT_PATTERN ? null : shiftTable(literal);
+    }
+
+    /**
+     * Search for the exact characters of text.
+     */
+    public static TextSearch literal(String text) {
+        if (text.isEmpty()) {
+            throw new IllegalArgumentException("Search text must not be empty");
+        }
+        return new TextSearch(text, null);
+    }
+
+    public static TextSearch regex(String regex) {
+        return regex(Pattern.compile(regex));
+    }
+
+    public static TextSearch regex(Pattern pattern) {
+        return new TextSearch(null, pattern);
+    }
+
+    public boolean isLiteral() {
+        return literal != null;
+    }
+
+    /**
+     * The literal text, or the regular expression.
+     */
+    public String getPattern() {
+        return literal != null ? literal : pattern.pattern();
+    }
+
+    // ===========================================================================================
+    // PUBLIC API: Finding matches
+    // ===========================================================================================
+
+    /**
+     * First match starting at or after from, or null.
+     */
+    public SearchMatch findNext(CharSequence text, int from) {
+        if (from < 0 || from > text.length()) {
+            throw new IndexOutOfBoundsException("from " + from + ", length " + text.length());
+        }
+        if (literal == null) {
+            Matcher matcher = pattern.matcher(view(text));
+            return matcher.find(from) ? new SearchMatch(matcher.start(), matcher.end()) : null;
+        }
+        int m = literal.length();
+        for (int start = from; start + m <= text.length(); start += CHUNK_SIZE) {
+            int end = Math.min(start + CHUNK_SIZE, text.length() - m + 1);
+            int[] found = scan(text, start, end, true);
+            if (found.length > 0) return new SearchMatch(found[0], found[0] + m);
+        }
+        return null;
+    }
+
+    /**
+     * Every non-overlapping match, in document order.
+     */
+    public List<SearchMatch> findAll(CharSequence text) {
+        List<SearchMatch> matches = new ArrayList<>();
+        if (literal == null) {
+            Matcher matcher = pattern.matcher(view(text));
+            while (matcher.find()) {
+                matches.add(new SearchMatch(matcher.start(), matcher.end()));
+            }
+        } else {
+            for (int start : findAllStarts(text)) {
+                matches.add(new SearchMatch(start, start + literal.length()));
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Start offsets of every non-overlapping literal match, in document order.
+     */
+    int[] findAllStarts(CharSequence text) {
+        int candidates = text.length() - literal.length() + 1;
+        if (candidates <= 0) return new int[0];
+        int[] all = candidates <= 2 * CHUNK_SIZE
+                ? scan(text, 0, candidates, false)
+                : ForkJoinPool.commonPool().invoke(new ChunkSearch(text, 0, candidates));
+        return dropOverlaps(all);
+    }
+
+    /**
+     * Matcher over the text; reads through a block window unless the text is a String.
+     */
+    Matcher matcher(CharSequence text) {
+        return pattern.matcher(view(text));
+    }
+
+    String getLiteral() {
+        return literal;
+    }
+
+    // ===========================================================================================
+    // LITERAL SEARCH: Chunked Boyer-Moore-Horspool
+    // ===========================================================================================
+
+    /**
+     * Every occurrence (overlapping ones included) starting in [from, to).
+     */
+    private int[] scan(CharSequence text, int from, int to, boolean firstOnly) {
+        int m = literal.length();
+        String chunk = text.subSequence(from, to + m - 1).toString();
+        int limit = to - from; // Occurrences must start before this chunk offset
+        int[] found = new int[16];
+        int count = 0;
+        int i = 0;
+        while (i < limit) {
+            int match;
+            if (shifts == null) {
+                match = chunk.indexOf(literal, i);
+                if (match < 0 || match >= limit) break;
+                i = match + 1;
+            } else {
+                char last = chunk.charAt(i + m - 1);
+                match = last == literal.charAt(m - 1) && chunk.startsWith(literal, i) ? i : -1;
+                i += shifts[last & 0xFF];
+                if (match < 0) continue;
+            }
+            if (count == found.length) found = Arrays.copyOf(found, count * 2);
+            found[count++] = from + match;
+            if (firstOnly) break;
+        }
+        return Arrays.copyOf(found, count);
+    }
+
+    private static int[] shiftTable(String literal) {
+        int m = literal.length();
+        int[] shifts = new int[256];
+        Arrays.fill(shifts, m);
+        // Chars sharing a low byte keep the smallest shift, which is always safe
+        for (int i = 0; i < m - 1; i++) {
+            shifts[literal.charAt(i) & 0xFF] = m - 1 - i;
+        }
+        return shifts;
+    }
+
+    /**
+     * Keep the matches a left-to-right search would report, as chunks also see overlapping ones.
+     */
+    private int[] dropOverlaps(int[] starts) {
+        int count = 0;
+        int nextFree = Integer.MIN_VALUE;
+        for (int start : starts) {
+            if (start >= nextFree) {
+                starts[count++] = start;
+                nextFree = start + literal.length();
+            }
+        }
+        return count == starts.length ? starts : Arrays.copyOf(starts, count);
+    }
+
+    /**
+     * Fork-join task splitting the candidate start range into chunks searched in parallel.
+     */
+    private final class ChunkSearch extends RecursiveTask<int[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final CharSequence text;
+        private final int from;
+        private final int to;
+
+        ChunkSearch(CharSequence text, int from, int to) {
+            this.text = text;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected int[] compute() {
+            if (to - from <= CHUNK_SIZE) {
+                return scan(text, from, to, false);
+            }
+            int middle = from + (to - from) / 2;
+            ChunkSearch right = new ChunkSearch(text, middle, to);
+            right.fork();
+            int[] left = new ChunkSearch(text, from, middle).compute();
+            int[] rest = right.join();
+            int[] all = Arrays.copyOf(left, left.length + rest.length);
+            System.arraycopy(rest, 0, all, left.length, rest.length);
+            return all;
+        }
+    }
+
+    // ===========================================================================================
+    // REGEX SEARCH: Block window over the document
+    // ===========================================================================================
+
+    private static CharSequence view(CharSequence text) {
+        return text instanceof String ? text : new Window(text);
+    }
+
+    /**
+     * Keeps one decoded block of the text, so the mostly forward charAt calls of a Matcher
+     * do not each walk the piece tree. Used by one thread at a time.
+     */
+    private static final class Window implements CharSequence {
+        private static final int BLOCK = 1 << 16;
+        private static final int BACKTRACK = 1 << 12; // Chars kept before the requested index
+
+        private final CharSequence text;
+        private String block = "";
+        private int base;
+
+        Window(CharSequence text) {
+            this.text = text;
+        }
+
+        @Override
+        public int length() {
+            return text.length();
+        }
+
+        @Override
+        public char charAt(int index) {
+            int offset = index - base;
+            if (offset < 0 || offset >= block.length()) {
+                if (index < 0 || index >= text.length()) {
+                    throw new IndexOutOfBoundsException("index " + index + ", length " + text.length());
+                }
+                base = Math.max(0, index - BACKTRACK);
+                block = text.subSequence(base, Math.min(base + BLOCK, text.length())).toString();
+                offset = index - base;
+            }
+            return block.charAt(offset);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            if (start >= base && end <= base + block.length()) {
+                return block.substring(start - base, end - base);
+            }
+            return text.subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return text.toString();
+        }
+    }
+}
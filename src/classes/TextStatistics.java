@@ -0,0 +1,79 @@
+package classes;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ===========================================================================================
+ * STATISTICS: TextStatistics
+ * ===========================================================================================
+ * Immutable results of a DocumentStatistics engine for one document version. Words are runs
+ * of non-whitespace, as in WordCountView; for unique words and frequencies each word is
+ * lower-cased and stripped of leading and trailing punctuation.
+ */
+public final class TextStatistics {
+    /**
+     * Average silent reading speed of adult readers.
+     */
+    public static final double WORDS_PER_MINUTE = 238;
+
+    private final long version;
+    private final int characters;
+    private final int lines;
+    private final int words;
+    private final int uniqueWords;
+    private final List<Map.Entry<String, Integer>> topWords;
+
+    TextStatistics(long version, int characters, int lines, int words, int uniqueWords,
+                   List<Map.Entry<String, Integer>> topWords) {
+        this.version = version;
+        this.characters = characters;
+        this.lines = lines;
+        this.words = words;
+        this.uniqueWords = uniqueWords;
+        this.topWords = List.copyOf(topWords);
+    }
+
+    /**
+     * Editor version these statistics describe.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public int getCharacters() {
+        return characters;
+    }
+
+    /**
+     * Number of lines; an empty document has one line.
+     */
+    public int getLines() {
+        return lines;
+    }
+
+    public int getWords() {
+        return words;
+    }
+
+    public int getUniqueWords() {
+        return uniqueWords;
+    }
+
+    /**
+     * The most frequent words with their counts, most frequent first (ties in word order).
+     */
+    public List<Map.Entry<String, Integer>> getTopWords() {
+        return topWords;
+    }
+
+    public double getReadingMinutes() {
+        return words / WORDS_PER_MINUTE;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d chars, %d lines, %d words (%d unique), %.1f min read; top %s",
+                characters, lines, words, uniqueWords, getReadingMinutes(), topWords);
+    }
+}
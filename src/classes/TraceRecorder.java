@@ -0,0 +1,73 @@
+package classes;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * ===========================================================================================
+ * BATCH: TraceRecorder
+ * ===========================================================================================
+ * Records an editing session as a timed edit script (see EditStep): every insert, delete,
+ * undo and redo an Editor runs through its public API, prefixed with the milliseconds since
+ * recording started, so the session can be replayed later at its original pace. The first
+ * line is a comment giving the document length when recording started.
+ * Lines are written through a buffer on the editing thread. If a write fails, recording
+ * stops and close() throws the failure instead of the editor's edits failing.
+ */
+public final class TraceRecorder implements AutoCloseable {
+    private static final String HEADER = "# Edit trace; document length at start: ";
+
+    private final BufferedWriter out;
+    private final long start = System.nanoTime();
+    private long steps;
+    private IOException failure;
+    private boolean closed;
+
+    public TraceRecorder(Path file, int documentLength) throws IOException {
+        out = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+        out.write(HEADER + documentLength);
+        out.newLine();
+    }
+
+    /**
+     * The document length written by a recorder, if the line is its header; -1 otherwise.
+     */
+    public static int parseHeader(String line) {
+        if (!line.startsWith(HEADER)) return -1;
+        try {
+            return Integer.parseInt(line.substring(HEADER.length()).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    synchronized void record(EditStep step) {
+        if (closed || failure != null) return;
+        try {
+            out.write(step.at((System.nanoTime() - start) / 1_000_000).format());
+            out.newLine();
+            steps++;
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    public synchronized long getStepCount() {
+        return steps;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            out.close();
+        } catch (IOException e) {
+            if (failure == null) failure = e;
+        }
+        if (failure != null) throw failure;
+    }
+}
@@ -0,0 +1,191 @@
+package classes;
+
+import interfaces.TextBuffer;
+import interfaces.TextView;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ===========================================================================================
+ * HISTORY: VersionHistory
+ * ===========================================================================================
+ * Every version of the document since it was enabled, for Editor.restoreVersion(). Each
+ * version keeps the delta that produced it, and every checkpointInterval versions (and at
+ * every reset, which has no delta) a checkpoint keeps a buffer snapshot, which the piece table
+ * takes and restores in O(1). Rebuilding any kept version is a binary search for the nearest
+ * checkpoint plus at most checkpointInterval delta applications of O(log n) each; when the
+ * current document or the next checkpoint is closer, the deltas are undone from there instead.
+ * Only the newest maxVersions versions are kept, dropping the oldest a checkpoint at a time.
+ */
+final class VersionHistory {
+    private final int checkpointInterval;
+    private final int maxVersions;
+    private final List<Delta> deltas = new ArrayList<>();           // Versions oldest+1 .. newest
+    private final List<Checkpoint> checkpoints = new ArrayList<>(); // Ascending, the first at oldest
+    private int firstDelta;      // Entries before these indexes were dropped
+    private int firstCheckpoint; // and are removed from the lists in batches
+    private long oldest;
+    private long newest;
+    private long lastReset;      // Newest version with no delta; deltas cannot be undone past it
+
+    VersionHistory(int checkpointInterval, int maxVersions, TextBuffer buffer, long version) {
+        if (checkpointInterval < 1) {
+            throw new IllegalArgumentException("Checkpoint interval must be positive: " + checkpointInterval);
+        }
+        if (maxVersions < checkpointInterval) {
+            throw new IllegalArgumentException("Cannot keep fewer versions (" + maxVersions
+                    + ") than the checkpoint interval (" + checkpointInterval + ")");
+        }
+        this.checkpointInterval = checkpointInterval;
+        this.maxVersions = maxVersions;
+        restart(buffer, version);
+    }
+
+    long getOldestVersion() {
+        return oldest;
+    }
+
+    long getNewestVersion() {
+        return newest;
+    }
+
+    /**
+     * Record the change that produced the buffer's current content.
+     */
+    void record(DocumentChange change, TextBuffer buffer) {
+        long version = change.getVersion();
+        if (version != newest + 1) { // The editor's version moved on without us (recovery)
+            restart(buffer, version);
+            return;
+        }
+        newest = version;
+        if (change.isReset()) {
+            deltas.add(null);
+            checkpoints.add(new Checkpoint(version, buffer.snapshot()));
+            lastReset = version;
+        } else {
+            deltas.add(new Delta(change.getOffset(), change.getRemovedText(), change.getInsertedText()));
+            if (version - checkpoints.get(checkpoints.size() - 1).version >= checkpointInterval) {
+                checkpoints.add(new Checkpoint(version, buffer.snapshot()));
+            }
+        }
+        dropOldVersions();
+    }
+
+    /**
+     * Turn the buffer, which holds the newest version, into the given version.
+     * Returns the number of deltas applied.
+     */
+    int rewind(TextBuffer buffer, long target) {
+        if (target < oldest || target > newest) {
+            throw new IllegalArgumentException("Version " + target + " is not kept (versions "
+                    + oldest + " to " + newest + " are)");
+        }
+        int floor = floorCheckpoint(target);
+        Checkpoint below = checkpoints.get(floor);
+        Checkpoint above = floor + 1 < checkpoints.size() ? checkpoints.get(floor + 1) : null;
+
+        long fromBelow = target - below.version;
+        long fromCurrent = lastReset <= target ? newest - target : Long.MAX_VALUE;
+        long fromAbove = above != null && delta(above.version) != null ? above.version - target : Long.MAX_VALUE;
+
+        if (fromCurrent <= fromBelow && fromCurrent <= fromAbove) {
+            undoDeltas(buffer, newest, target);
+            return (int) fromCurrent;
+        }
+        if (fromAbove < fromBelow) {
+            buffer.restore(above.text);
+            undoDeltas(buffer, above.version, target);
+            return (int) fromAbove;
+        }
+        buffer.restore(below.text);
+        for (long version = below.version + 1; version <= target; version++) {
+            Delta delta = delta(version);
+            buffer.delete(delta.offset, delta.removed.length());
+            buffer.insert(delta.offset, delta.inserted);
+        }
+        return (int) fromBelow;
+    }
+
+    private void undoDeltas(TextBuffer buffer, long from, long target) {
+        for (long version = from; version > target; version--) {
+            Delta delta = delta(version);
+            buffer.delete(delta.offset, delta.inserted.length());
+            buffer.insert(delta.offset, delta.removed);
+        }
+    }
+
+    private Delta delta(long version) {
+        return deltas.get(firstDelta + (int) (version - oldest - 1));
+    }
+
+    // Index of the newest checkpoint at or before the version
+    private int floorCheckpoint(long version) {
+        int low = firstCheckpoint;
+        int high = checkpoints.size() - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (checkpoints.get(middle).version <= version) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    private void restart(TextBuffer buffer, long version) {
+        deltas.clear();
+        checkpoints.clear();
+        firstDelta = 0;
+        firstCheckpoint = 0;
+        checkpoints.add(new Checkpoint(version, buffer.snapshot()));
+        oldest = version;
+        newest = version;
+        lastReset = version;
+    }
+
+    // Keep the first checkpoint as the oldest version, so every kept version can be rebuilt
+    private void dropOldVersions() {
+        while (checkpoints.size() - firstCheckpoint > 1
+                && newest - checkpoints.get(firstCheckpoint + 1).version >= maxVersions) {
+            checkpoints.set(firstCheckpoint++, null);
+            long next = checkpoints.get(firstCheckpoint).version;
+            while (oldest < next) {
+                deltas.set(firstDelta++, null);
+                oldest++;
+            }
+        }
+        if (firstDelta > deltas.size() / 2) {
+            deltas.subList(0, firstDelta).clear();
+            firstDelta = 0;
+        }
+        if (firstCheckpoint > checkpoints.size() / 2) {
+            checkpoints.subList(0, firstCheckpoint).clear();
+            firstCheckpoint = 0;
+        }
+    }
+
+    private static final class Delta {
+        final int offset;
+        final String removed;
+        final String inserted;
+
+        Delta(int offset, String removed, String inserted) {
+            this.offset = offset;
+            this.removed = removed;
+            this.inserted = inserted;
+        }
+    }
+
+    private static final class Checkpoint {
+        final long version;
+        final TextView text;
+
+        Checkpoint(long version, TextView text) {
+            this.version = version;
+            this.text = text;
+        }
+    }
+}
@@ -2,15 +2,21 @@ package classes;
 
 import javax.swing.*;
 import interfaces.Observer;
+import interfaces.TextView;
 
 /**
  * ===========================================================================================
  * OBSERVER PATTERN: Concrete Observer - WordCountView
  * ===========================================================================================
  * Automatically updates to display the current word count whenever the editor content changes.
+ * Keeps a running total: a change only re-counts the word starts inside the edited range,
+ * using the characters around it carried by the DocumentChange.
  */
 public class WordCountView implements Observer {
+    private static final int BLOCK = 8192; // Characters read at a time when recounting a document
+
     private JLabel label;
+    private int wordCount;
 
     public WordCountView(JLabel label) {
         this.label = label;
@@ -18,12 +24,75 @@ public class WordCountView implements Observer {
 
     @Override
     public void update(String content) {
-        int wordCount = 0;
-        if (content != null && !content.trim().isEmpty()) {
-            // Split by whitespace and count non-empty tokens
-            String[] words = content.trim().split("\\s+");
-            wordCount = words.length;
+        wordCount = (content != null) ? countWordStarts(-1, content, -1) : 0;
+        showCount();
+    }
+
+    @Override
+    public void update(DocumentChange change) {
+        if (change.isReset()) {
+            // Count straight from the document so a freshly opened file is never copied into a String
+            wordCount = countDocument(change.getDocument());
+            showCount();
+            return;
         }
-        label.setText("Word Count: " + wordCount);
+        int before = change.getCharBefore();
+        int after = change.getCharAfter();
+        wordCount += countWordStarts(before, change.getInsertedText(), after)
+                - countWordStarts(before, change.getRemovedText(), after);
+        showCount();
+    }
+
+    // Observers may run on the async dispatcher thread; Swing labels are only touched on the EDT
+    private void showCount() {
+        String text = "Word Count: " + wordCount;
+        if (SwingUtilities.isEventDispatchThread()) {
+            label.setText(text);
+        } else {
+            SwingUtilities.invokeLater(() -> label.setText(text));
+        }
+    }
+
+    public int getWordCount() {
+        return wordCount;
+    }
+
+    /**
+     * Count positions where a word starts in text, plus the character after it,
+     * given the character before it (-1 for none). A word is a run of non-whitespace.
+     */
+    static int countWordStarts(int before, CharSequence text, int after) {
+        int count = 0;
+        boolean previousIsSpace = before < 0 || isSpace(before);
+        for (int i = 0; i < text.length(); i++) {
+            boolean space = isSpace(text.charAt(i));
+            if (!space && previousIsSpace) count++;
+            previousIsSpace = space;
+        }
+        if (after >= 0 && !isSpace(after) && previousIsSpace) count++;
+        return count;
+    }
+
+    /**
+     * Count the words of a whole document, reading it in blocks: charAt on a piece table or
+     * a mapped file looks the position up every time, getText copies a block in one pass.
+     */
+    static int countDocument(CharSequence document) {
+        int count = 0;
+        int previous = -1;
+        for (int from = 0; from < document.length(); from += BLOCK) {
+            int to = Math.min(from + BLOCK, document.length());
+            String block = document instanceof TextView
+                    ? ((TextView) document).getText(from, to)
+                    : document.subSequence(from, to).toString();
+            count += countWordStarts(previous, block, -1);
+            previous = block.charAt(block.length() - 1);
+        }
+        return count;
+    }
+
+    // Same character class as the regex \s used for splitting words
+    static boolean isSpace(int c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
     }
 }
@@ -1,5 +1,7 @@
 package interfaces;
 
+import classes.TextOperation;
+
 /**
  * ===========================================================================================
  * COMMAND PATTERN: Command interface
@@ -14,7 +16,32 @@ public interface Command {
     void execute();
 
     /**
-     * Undo the command's operation by restoring the previous state.
+     * Undo the command's operation by applying its inverse delta.
      */
     void undo();
+
+    /**
+     * Approximate number of bytes this command keeps alive while it sits in the history.
+     * Used by history policies that enforce a memory budget.
+     */
+    default long getPayloadSize() {
+        return 0;
+    }
+
+    /**
+     * Try to absorb a command that was executed right after this one, so both are undone
+     * as a single step. Returns false when the two edits cannot be combined.
+     */
+    default boolean mergeWith(Command next) {
+        return false;
+    }
+
+    /**
+     * This executed command's edit as a text operation, so the history can be rebased over
+     * concurrent edits from other collaborators. The operation may stop after its last change.
+     * Returns null when the command cannot be expressed that way.
+     */
+    default TextOperation toOperation() {
+        return null;
+    }
 }
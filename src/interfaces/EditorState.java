@@ -1,6 +1,9 @@
 package interfaces;
 
 import classes.Editor;
+import classes.TextEdit;
+
+import java.util.List;
 
 /**
  * ===========================================================================================
@@ -22,6 +25,14 @@ public interface EditorState {
      */
     void deleteText(Editor editor, int length, int position);
 
+    /**
+     * Apply sorted, non-overlapping replacements in one step (replace-all, multi-cursor edits).
+     * Allowed by default; classes.ReadOnlyState blocks it.
+     */
+    default void replaceText(Editor editor, List<TextEdit> edits) {
+        editor.applyReplacements(edits);
+    }
+
     /**
      * Get the name of the current state for display purposes.
      */
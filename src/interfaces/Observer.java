@@ -1,5 +1,7 @@
 package interfaces;
 
+import classes.DocumentChange;
+
 /**
  * ===========================================================================================
  * OBSERVER PATTERN: Subject and Observer interfaces
@@ -14,4 +16,15 @@ public interface Observer {
      * @param content The new content of the editor
      */
     void update(String content);
+
+    /**
+     * Called with a description of what changed (offset, removed and inserted text, version).
+     * Observers that can work from the delta alone should override this; the default
+     * falls back to update(String) with the whole document.
+     *
+     * @param change The edit that produced the new content
+     */
+    default void update(DocumentChange change) {
+        update(change.getContent());
+    }
 }
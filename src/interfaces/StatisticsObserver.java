@@ -0,0 +1,19 @@
+package interfaces;
+
+import classes.TextStatistics;
+
+/**
+ * ===========================================================================================
+ * OBSERVER PATTERN: Statistics observer interface
+ * ===========================================================================================
+ * Purpose: Let views follow the results of a classes.DocumentStatistics engine without
+ * computing anything themselves.
+ */
+public interface StatisticsObserver {
+    /**
+     * Called on the thread that delivered the editor change, after the statistics were updated.
+     *
+     * @param statistics Immutable results for the document version that was just processed
+     */
+    void statisticsChanged(TextStatistics statistics);
+}
@@ -0,0 +1,53 @@
+package interfaces;
+
+/**
+ * ===========================================================================================
+ * STRATEGY PATTERN: Text buffer interface
+ * ===========================================================================================
+ * Purpose: Hide how the classes.Editor stores its document so the storage can be swapped
+ * (piece table, rope, ...) without touching commands, states or observers.
+ * Implementations must apply inserts and deletes without copying the whole document.
+ */
+public interface TextBuffer extends TextView {
+    /**
+     * Insert text at the specified position (0 <= position <= length()).
+     */
+    void insert(int position, CharSequence text);
+
+    /**
+     * Delete length characters starting at the specified position.
+     * The range must lie inside the buffer.
+     */
+    void delete(int position, int length);
+
+    /**
+     * Replace the whole document with the given text.
+     */
+    void setText(CharSequence text);
+
+    /**
+     * Replace the whole document with text that will never change, without copying it
+     * (e.g. a memory-mapped file). The buffer keeps reading from it for unedited regions.
+     */
+    void load(CharSequence text);
+
+    /**
+     * Immutable view of the current content that stays valid while the buffer keeps changing
+     * and can be read from other threads. Implementations should avoid copying the document.
+     */
+    TextView snapshot();
+
+    /**
+     * Return to content captured earlier by snapshot(). Implementations that can take back
+     * their own snapshot without copying should do so; the default copies the text.
+     */
+    default void restore(TextView snapshot) {
+        setText(snapshot);
+    }
+
+    /**
+     * Return the whole document as a String.
+     */
+    @Override
+    String toString();
+}
@@ -0,0 +1,39 @@
+package interfaces;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+
+/**
+ * ===========================================================================================
+ * READ-ONLY TEXT: TextView
+ * ===========================================================================================
+ * Purpose: The read operations shared by a live text buffer and the immutable snapshots it
+ * hands out, so code that only reads (observers, search, autosave, indexing) works on either.
+ */
+public interface TextView extends CharSequence {
+    /**
+     * Copy the characters in [start, end) into a new String.
+     */
+    String getText(int start, int end);
+
+    /**
+     * Write the whole text to a channel in the given charset without building it as one String.
+     */
+    void writeTo(WritableByteChannel out, Charset charset) throws IOException;
+
+    /**
+     * Number of lines; a text with n '\n' characters has n + 1 lines.
+     */
+    int getLineCount();
+
+    /**
+     * Zero-based line containing the given offset (0 <= offset <= length()).
+     */
+    int getLineOfOffset(int offset);
+
+    /**
+     * Offset of the first character of the given zero-based line.
+     */
+    int getLineStartOffset(int line);
+}